@@ -0,0 +1,131 @@
+package minemarker.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Generators for the (reproducible) minefields and scripts the benchmarks run against
+ * @author steve
+ *
+ */
+final class BenchmarkData
+{
+  private static final String[] MOVES = { "north", "south", "east", "west" };
+  private static final String[] VOLLEYS = { "alpha", "beta", "gamma", "delta" };
+
+  //  Output format character for each depth (index 0 is unused)
+  private static final String   DEPTH_CHARS = ".abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+  /**
+   * Writer that discards everything written to it, so that output can be generated without
+   * it being accumulated or written anywhere
+   */
+  static final class DiscardingWriter extends Writer
+  {
+    @Override
+    public void write(char[] buffer, int offset, int length)
+    {
+    }
+
+    @Override
+    public void write(String string, int offset, int length)
+    {
+    }
+
+    @Override
+    public void flush()
+    {
+    }
+
+    @Override
+    public void close()
+    {
+    }
+  }
+
+  private BenchmarkData()
+  {
+  }
+
+  /**
+   * Generate the content of a square minefield file
+   * @param size width and height of the minefield
+   * @param density probability of each cell holding a mine
+   * @param seed random seed
+   * @return minefield file content, with at least one mine
+   */
+  static byte[] minefield(int size, double density, long seed)
+  {
+    Random random = new Random(seed);
+    StringBuilder result = new StringBuilder(size*(size + 1));
+
+    for(int y = 0; y < size; y++)
+    {
+      for(int x = 0; x < size; x++)
+      {
+        //  The middle cell always holds a mine, so that no field is empty
+        boolean mine = (random.nextDouble() < density || (x == size/2 && y == size/2));
+
+        result.append(mine ? DEPTH_CHARS.charAt(1 + random.nextInt(DEPTH_CHARS.length() - 1)) : '.');
+      }
+      result.append('\n');
+    }
+
+    return result.toString().getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Generate the content of a ship script file
+   * @param length number of turns (lines)
+   * @param seed random seed
+   * @return script file content, with a random volley and/or movement (in either order) on each line
+   */
+  static String script(int length, long seed)
+  {
+    Random random = new Random(seed);
+    StringBuilder result = new StringBuilder();
+
+    for(int turn = 0; turn < length; turn++)
+    {
+      String volley = (random.nextInt(4) == 0 ? null : VOLLEYS[random.nextInt(VOLLEYS.length)]);
+      String move = (random.nextInt(2) == 0 ? null : MOVES[random.nextInt(MOVES.length)]);
+
+      if ( volley != null && move != null )
+      {
+        result.append(random.nextBoolean() ? volley + " " + move : move + " " + volley);
+      }
+      else if ( volley != null )
+      {
+        result.append(volley);
+      }
+      else if ( move != null )
+      {
+        result.append(move);
+      }
+      result.append('\n');
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Write content to a temporary file, which is deleted on exit
+   * @param prefix prefix for the file name
+   * @param content content to write
+   * @return the file written
+   * @throws IOException
+   */
+  static File writeTempFile(String prefix, byte[] content) throws IOException
+  {
+    File file = File.createTempFile(prefix, ".txt");
+
+    file.deleteOnExit();
+    Files.write(file.toPath(), content);
+
+    return file;
+  }
+}
@@ -0,0 +1,111 @@
+package minemarker.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import minemarker.Cuboid;
+import minemarker.Minefield;
+import minemarker.MinefieldEngine;
+import minemarker.MinefieldFileParseException;
+import minemarker.MinefieldFileParser;
+import minemarker.Point;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of clearing mines from each storage engine.  Clearing changes the minefield,
+ * so each invocation clears a freshly parsed one (the parsing not being measured)
+ * @author steve
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClearRegionBenchmark
+{
+  /**
+   * Width and height of the minefield
+   */
+  @Param({ "64", "512" })
+  public int             size;
+  /**
+   * Probability of each cell holding a mine
+   */
+  @Param({ "0.1", "0.5" })
+  public double          density;
+  /**
+   * Storage engine to clear mines from
+   */
+  @Param({ "simple", "column", "packed", "bitmap" })
+  public MinefieldEngine engine;
+
+  private byte[]         mContent;
+  private Cuboid         mRegion;
+  private List<Point>    mColumnTops;
+  private Minefield      mMinefield;
+
+  /**
+   * Generate the minefield, the region to clear (the middle quarter of the field at every
+   * depth), and the columns to clear (an alpha volley from the middle of the field)
+   */
+  @Setup(Level.Trial)
+  public void setUpTrial()
+  {
+    mContent = BenchmarkData.minefield(size, density, 1);
+    mRegion = new Cuboid(new Point(size/4, size/4, 0), new Point(3*size/4, 3*size/4, 52));
+
+    mColumnTops = new ArrayList<>();
+    for(int offset = -1; offset <= 1; offset += 2)
+    {
+      mColumnTops.add(new Point(size/2 + offset, size/2 + 1, 0));
+      mColumnTops.add(new Point(size/2 + offset, size/2 - 1, 0));
+    }
+  }
+
+  /**
+   * Parse a fresh copy of the minefield to clear
+   * @throws MinefieldFileParseException
+   */
+  @Setup(Level.Invocation)
+  public void setUpInvocation() throws MinefieldFileParseException
+  {
+    mMinefield = MinefieldFileParser.parseBytes(mContent, engine);
+  }
+
+  /**
+   * @return the cleared minefield
+   */
+  @Benchmark
+  public Minefield clearRegion()
+  {
+    mMinefield.clearRegion(mRegion);
+
+    return mMinefield;
+  }
+
+  /**
+   * @return the cleared minefield
+   */
+  @Benchmark
+  public Minefield clearColumns()
+  {
+    mMinefield.clearColumns(mColumnTops);
+
+    return mMinefield;
+  }
+}
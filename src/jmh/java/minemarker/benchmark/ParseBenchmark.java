@@ -0,0 +1,75 @@
+package minemarker.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import minemarker.Minefield;
+import minemarker.MinefieldEngine;
+import minemarker.MinefieldFileParseException;
+import minemarker.MinefieldFileParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of parsing a minefield file into each storage engine
+ * @author steve
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark
+{
+  /**
+   * Width and height of the minefield
+   */
+  @Param({ "64", "512", "2048" })
+  public int             size;
+  /**
+   * Probability of each cell holding a mine
+   */
+  @Param({ "0.01", "0.1", "0.5" })
+  public double          density;
+  /**
+   * Storage engine to parse into
+   */
+  @Param({ "simple", "column", "packed", "bitmap" })
+  public MinefieldEngine engine;
+
+  private File           mMinefieldFile;
+
+  /**
+   * Write the minefield file to parse
+   * @throws IOException
+   */
+  @Setup
+  public void setUp() throws IOException
+  {
+    mMinefieldFile = BenchmarkData.writeTempFile("minefield", BenchmarkData.minefield(size, density, 1));
+  }
+
+  /**
+   * @return the parsed minefield
+   * @throws IOException
+   * @throws MinefieldFileParseException
+   */
+  @Benchmark
+  public Minefield parseMinefield() throws IOException, MinefieldFileParseException
+  {
+    return MinefieldFileParser.parse(mMinefieldFile.getPath(), engine);
+  }
+}
@@ -0,0 +1,137 @@
+package minemarker.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import minemarker.Cuboid;
+import minemarker.Minefield;
+import minemarker.MinefieldEngine;
+import minemarker.MinefieldFileParseException;
+import minemarker.MinefieldFileParser;
+import minemarker.ModelException;
+import minemarker.Point;
+import minemarker.RenderedFrame;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of rendering each storage engine in the output format, both as lines and
+ * into a reused frame buffer (compare their allocation rates with -prof gc), and of
+ * rendering just after clearing mines, when the shallowest mine of each cleared column
+ * must be found again from the engine's storage
+ * @author steve
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark
+{
+  /**
+   * Width and height of the minefield
+   */
+  @Param({ "64", "512" })
+  public int             size;
+  /**
+   * Probability of each cell holding a mine
+   */
+  @Param({ "0.1", "0.5" })
+  public double          density;
+  /**
+   * Storage engine to render
+   */
+  @Param({ "simple", "column", "packed", "bitmap" })
+  public MinefieldEngine engine;
+
+  private byte[]         mContent;
+  private Minefield      mMinefield;
+  private Point          mCenter;
+  private RenderedFrame  mFrame;
+
+  /**
+   * A fresh copy of the minefield with the middle quarter of the field cleared at every
+   * depth.  Rendering resolves the cleared columns, so each invocation needs its own copy
+   * (the parsing and clearing not being measured)
+   */
+  @State(Scope.Thread)
+  public static class Cleared
+  {
+    private Minefield mMinefield;
+
+    /**
+     * Parse a fresh copy of the minefield and clear it
+     * @param benchmark benchmark state holding the minefield content and parameters
+     * @throws MinefieldFileParseException
+     */
+    @Setup(Level.Invocation)
+    public void setUp(RenderBenchmark benchmark) throws MinefieldFileParseException
+    {
+      int size = benchmark.size;
+
+      mMinefield = MinefieldFileParser.parseBytes(benchmark.mContent, benchmark.engine);
+      mMinefield.clearRegion(new Cuboid(new Point(size/4, size/4, 0), new Point(3*size/4, 3*size/4, 52)));
+    }
+  }
+
+  /**
+   * Parse the minefield to render
+   * @throws MinefieldFileParseException
+   */
+  @Setup
+  public void setUp() throws MinefieldFileParseException
+  {
+    mContent = BenchmarkData.minefield(size, density, 1);
+    mMinefield = MinefieldFileParser.parseBytes(mContent, engine);
+    mCenter = new Point(size/2, size/2, 0);
+    mFrame = new RenderedFrame();
+  }
+
+  /**
+   * @return the rendered lines
+   * @throws ModelException
+   */
+  @Benchmark
+  public List<String> toOutputFormat() throws ModelException
+  {
+    return mMinefield.toOutputFormat(mCenter);
+  }
+
+  /**
+   * @return the rendered frame
+   * @throws ModelException
+   */
+  @Benchmark
+  public RenderedFrame render() throws ModelException
+  {
+    mMinefield.render(mCenter, mFrame);
+
+    return mFrame;
+  }
+
+  /**
+   * @param cleared freshly cleared minefield to render
+   * @return the rendered frame
+   * @throws ModelException
+   */
+  @Benchmark
+  public RenderedFrame renderAfterClear(Cleared cleared) throws ModelException
+  {
+    cleared.mMinefield.render(mCenter, mFrame);
+
+    return mFrame;
+  }
+}
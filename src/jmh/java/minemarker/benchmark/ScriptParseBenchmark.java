@@ -0,0 +1,63 @@
+package minemarker.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import minemarker.ScriptException;
+import minemarker.ScriptFileParser;
+import minemarker.ShipOrders;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of parsing (compiling) a ship script
+ * @author steve
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScriptParseBenchmark
+{
+  /**
+   * Number of turns in the script
+   */
+  @Param({ "10", "1000", "100000" })
+  public int     length;
+
+  private String mScript;
+
+  /**
+   * Generate the script to parse
+   */
+  @Setup
+  public void setUp()
+  {
+    mScript = BenchmarkData.script(length, 1);
+  }
+
+  /**
+   * @return the parsed script
+   * @throws IOException
+   * @throws ScriptException
+   */
+  @Benchmark
+  public ShipOrders parseScript() throws IOException, ScriptException
+  {
+    return ScriptFileParser.parse(new StringReader(mScript));
+  }
+}
@@ -0,0 +1,146 @@
+package minemarker.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import minemarker.Minefield;
+import minemarker.MinefieldEngine;
+import minemarker.MinefieldFileParseException;
+import minemarker.MinefieldFileParser;
+import minemarker.ModelException;
+import minemarker.Point;
+import minemarker.ScriptException;
+import minemarker.ScriptFileParser;
+import minemarker.Ship;
+import minemarker.ShipOrders;
+import minemarker.SimulationEnvironment;
+import minemarker.SimulationState;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of executing a script against each storage engine - the ship's execution of
+ * its orders alone, and the whole simulation with and without the full marking output.
+ * Simulation changes the minefield, so each invocation runs against a freshly parsed one
+ * (the parsing not being measured)
+ * @author steve
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimulationBenchmark
+{
+  /**
+   * Width and height of the minefield
+   */
+  @Param({ "64", "512" })
+  public int               size;
+  /**
+   * Probability of each cell holding a mine
+   */
+  @Param({ "0.01", "0.1" })
+  public double            density;
+  /**
+   * Number of turns in the script (simulations cannot outlast the deepest mine, at most 52)
+   */
+  @Param({ "10", "50" })
+  public int               length;
+  /**
+   * Storage engine to simulate against
+   */
+  @Param({ "simple", "column", "packed", "bitmap" })
+  public MinefieldEngine   engine;
+
+  private byte[]           mContent;
+  private ShipOrders       mOrders;
+  private int[]            mEncodedOrders;
+  private Writer           mOutput;
+  private Minefield        mMinefield;
+
+  /**
+   * Generate the minefield and parse the script
+   * @throws IOException
+   * @throws ScriptException
+   */
+  @Setup(Level.Trial)
+  public void setUpTrial() throws IOException, ScriptException
+  {
+    mContent = BenchmarkData.minefield(size, density, 1);
+    mOrders = ScriptFileParser.parse(new StringReader(BenchmarkData.script(length, 1)));
+    mEncodedOrders = new int[length];
+    for(int turn = 0; turn < length; turn++)
+    {
+      mEncodedOrders[turn] = mOrders.getEncodedOrdersForTurn(turn);
+    }
+    mOutput = new BenchmarkData.DiscardingWriter();
+  }
+
+  /**
+   * Parse a fresh copy of the minefield to simulate against
+   * @throws MinefieldFileParseException
+   */
+  @Setup(Level.Invocation)
+  public void setUpInvocation() throws MinefieldFileParseException
+  {
+    mMinefield = MinefieldFileParser.parseBytes(mContent, engine);
+  }
+
+  /**
+   * Execute every turn of the script, without checking for termination, from the orders
+   * as ShipOrders holds them (as the simulation does)
+   * @return the ship
+   * @throws ModelException
+   */
+  @Benchmark
+  public Ship executeTurnOrders() throws ModelException
+  {
+    Ship ship = new SimulationEnvironment(mMinefield, new Point(size/2, size/2, 0)).getShip();
+
+    for(int encodedOrders : mEncodedOrders)
+    {
+      ship.executeTurnOrders(encodedOrders);
+    }
+
+    return ship;
+  }
+
+  /**
+   * @return the score achieved
+   * @throws ModelException
+   * @throws ScriptException
+   * @throws IOException
+   */
+  @Benchmark
+  public int runAndMark() throws ModelException, ScriptException, IOException
+  {
+    return new SimulationState(mMinefield, mOrders).runAndMark(mOutput);
+  }
+
+  /**
+   * @return the score achieved
+   * @throws ModelException
+   * @throws ScriptException
+   */
+  @Benchmark
+  public int runAndScore() throws ModelException, ScriptException
+  {
+    return new SimulationState(mMinefield, mOrders).runAndScore();
+  }
+}
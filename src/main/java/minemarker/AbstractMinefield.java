@@ -0,0 +1,310 @@
+package minemarker;
+
+import java.nio.LongBuffer;
+import java.util.List;
+
+import minemarker.MarkingMetrics.Phase;
+
+/**
+ * Base class for minefield implementations, which maintains the bounding cuboid and a
+ * persistent projection of the minefield onto the Z=0 plane (the depth of the shallowest
+ * mine in each (x,y) column) as mines are added and removed.  Given that projection
+ * generation of the output format is the same for all implementations, so it is done here.
+ * Concrete implementations are responsible for storage of the mines themselves, and must
+ * report additions and removals via mineAdded() and mineRemoved(), having first checked
+ * via checkChangeable() that the minefield has not been snapshotted.  The bounds and
+ * projection of a fork are overlays of those of the minefield it was forked from, so
+ * that creating one costs nothing in proportion to the size of the minefield
+ * @author steve
+ *
+ */
+public abstract class AbstractMinefield implements Minefield
+{
+  /**
+   * Value returned by getShallowestMineZ() for a column that contains no mines
+   */
+  protected static final int NO_MINE = HeightMap.EMPTY;
+
+  //  Projection value for a column whose shallowest mine has been removed, and which
+  //  therefore needs to be re-established from the concrete storage when next required
+  private static final int STALE = Integer.MIN_VALUE;
+  //  Projection value for a column of a fork that has no mines (in the projection of a
+  //  fork unset columns are those that are still as they are in the minefield forked from)
+  private static final int CLEARED = Integer.MIN_VALUE + 1;
+
+  //  Output format character for each representable depth below the ship (index 0 is unused)
+  private static final char[] DEPTH_CHARS = "?abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+
+  private final AbstractMinefield     mBase;
+  private final BoundingCuboidTracker mBounds;
+  private final HeightMap             mProjection = new HeightMap();
+  private boolean                     mFrozen = false;
+
+  /**
+   * Construct an empty minefield
+   */
+  protected AbstractMinefield()
+  {
+    mBase = null;
+    mBounds = new BoundingCuboidTracker();
+  }
+
+  /**
+   * Construct a fork of another minefield, which is snapshotted so that it can be shared
+   * @param base minefield to fork
+   */
+  protected AbstractMinefield(AbstractMinefield base)
+  {
+    base.snapshot();
+
+    mBase = base;
+    mBounds = new BoundingCuboidTracker(base.mBounds);
+  }
+
+  /**
+   * Find the z-coordinate of the shallowest mine in a given (x,y) column by examining
+   * the concrete storage.  This is only called when the persistent projection is unable
+   * to answer directly, because the previous shallowest mine has been removed
+   * @param x x-coordinate of the column
+   * @param y y-coordinate of the column
+   * @return z-coordinate of the shallowest mine in the column, or NO_MINE if there are none
+   */
+  protected abstract int findShallowestMineZ(int x, int y);
+
+  /**
+   * Must be called by implementations whenever a mine is added that was not already present
+   * @param x x-coordinate of the mine
+   * @param y y-coordinate of the mine
+   * @param z z-coordinate of the mine
+   */
+  protected void mineAdded(int x, int y, int z)
+  {
+    mBounds.add(x, y, z);
+
+    int shallowestZ = getProjection(x, y);
+    if ( shallowestZ != STALE && z < shallowestZ )
+    {
+      setProjection(x, y, z);
+    }
+  }
+
+  /**
+   * Must be called by implementations whenever a mine is removed
+   * @param x x-coordinate of the mine
+   * @param y y-coordinate of the mine
+   * @param z z-coordinate of the mine
+   */
+  protected void mineRemoved(int x, int y, int z)
+  {
+    mBounds.remove(x, y, z);
+
+    //  If this was the shallowest mine in its column we don't yet know what the new
+    //  shallowest one is.  Rather than searching now (there may be further removals from
+    //  the same column to come) just note that it needs to be found again
+    if ( getProjection(x, y) == z )
+    {
+      mProjection.set(x, y, STALE);
+    }
+  }
+
+  /**
+   * Must be called by implementations before changing the minefield in any way
+   * @throws IllegalStateException if the minefield has been snapshotted
+   */
+  protected void checkChangeable()
+  {
+    if ( mFrozen )
+    {
+      throw new IllegalStateException("A minefield cannot be changed once snapshotted - fork it instead");
+    }
+  }
+
+  /**
+   * Retrieve the z-coordinate of the shallowest mine in a given (x,y) column
+   * @param x x-coordinate of the column
+   * @param y y-coordinate of the column
+   * @return z-coordinate of the shallowest mine in the column, or NO_MINE if there are none
+   */
+  protected int getShallowestMineZ(int x, int y)
+  {
+    int shallowestZ = getProjection(x, y);
+
+    if ( shallowestZ == STALE )
+    {
+      shallowestZ = findShallowestMineZ(x, y);
+
+      //  A snapshot may be read by several forks concurrently, so is never changed
+      if ( !mFrozen )
+      {
+        setProjection(x, y, shallowestZ);
+      }
+    }
+
+    return shallowestZ;
+  }
+
+  @Override
+  public Minefield snapshot()
+  {
+    if ( !mFrozen )
+    {
+      //  Forks may be used concurrently, so the bounding cuboid (which is otherwise
+      //  established lazily) must be established before they read it
+      getBoundingCuboid();
+      mFrozen = true;
+    }
+
+    return this;
+  }
+
+  @Override
+  public Minefield fork()
+  {
+    return new ForkedMinefield(this);
+  }
+
+  @Override
+  public void addMine(Point xiAtCoordinates)
+  {
+    addMine(xiAtCoordinates.getX(), xiAtCoordinates.getY(), xiAtCoordinates.getZ());
+  }
+
+  @Override
+  public void addMines(LongBuffer xiPackedMines)
+  {
+    for(int index = xiPackedMines.position(); index < xiPackedMines.limit(); index++)
+    {
+      long mine = xiPackedMines.get(index);
+
+      addMine(PackedPoint.getX(mine), PackedPoint.getY(mine), PackedPoint.getZ(mine));
+    }
+  }
+
+  @Override
+  public Cuboid getBoundingCuboid()
+  {
+    return mBounds.getBoundingCuboid();
+  }
+
+  @Override
+  public int getShallowestZ()
+  {
+    return mBounds.getShallowestZ();
+  }
+
+  @Override
+  public int getDeepestZ()
+  {
+    return mBounds.getDeepestZ();
+  }
+
+  @Override
+  public void clearColumns(List<Point> xiColumnTops)
+  {
+    for(Point columnTop : xiColumnTops)
+    {
+      //  Once there is nothing left to clear the deepest z is Integer.MIN_VALUE
+      int bottomZ = getDeepestZ();
+      if ( columnTop.getZ() <= bottomZ )
+      {
+        clearRegion(new Cuboid(columnTop, new Point(columnTop.getX(), columnTop.getY(), bottomZ)));
+      }
+    }
+  }
+
+  @Override
+  public List<String> toOutputFormat(Point xiCenterOn) throws ModelException
+  {
+    RenderedFrame frame = new RenderedFrame();
+
+    render(xiCenterOn, frame);
+
+    return frame.toLines();
+  }
+
+  @Override
+  public void render(Point xiCenterOn, RenderedFrame xiFrame) throws ModelException
+  {
+    long startNanos = System.nanoTime();
+
+    renderFrame(xiCenterOn, xiFrame);
+
+    MarkingMetrics.record(Phase.render, startNanos);
+  }
+
+  private void renderFrame(Point xiCenterOn, RenderedFrame xiFrame) throws ModelException
+  {
+    Cuboid boundingCuboid = getBoundingCuboid();
+
+    if ( boundingCuboid == null )
+    {
+      //  Nothing here but the implicit ship
+      xiFrame.resize(1, 1);
+      xiFrame.getBuffer()[0] = '.';
+      return;
+    }
+
+    //  First calculate the bounds of the displayed projection to make the ship the center
+    int centerX = xiCenterOn.getX();
+    int centerY = xiCenterOn.getY();
+    int centerZ = xiCenterOn.getZ();
+    int radiusX = Math.max(centerX - boundingCuboid.getNorthWestTop().getX(), boundingCuboid.getSouthEastBottom().getX() - centerX);
+    int radiusY = Math.max(centerY - boundingCuboid.getNorthWestTop().getY(), boundingCuboid.getSouthEastBottom().getY() - centerY);
+
+    xiFrame.resize(2*radiusX + 1, 2*radiusY + 1);
+
+    char[] buffer = xiFrame.getBuffer();
+    int index = 0;
+
+    for(int y = centerY - radiusY; y <= centerY + radiusY; y++)
+    {
+      for(int x = centerX - radiusX; x <= centerX + radiusX; x++)
+      {
+        int mineZ = getShallowestMineZ(x, y);
+        char outputChar;
+
+        if ( mineZ == NO_MINE )
+        {
+          outputChar = '.';
+        }
+        else
+        {
+          int depth = mineZ - centerZ;
+          if ( depth < 1 )
+          {
+            outputChar = '*';
+          }
+          else if ( depth < DEPTH_CHARS.length )
+          {
+            outputChar = DEPTH_CHARS[depth];
+          }
+          else
+          {
+            throw new ModelException("Unexpected model state for output generation - mines deeper than max representation depth");
+          }
+        }
+
+        buffer[index++] = outputChar;
+      }
+    }
+  }
+
+  //  Projection value for a column, which for a fork is inherited from the minefield it
+  //  was forked from unless the column has been changed in the fork
+  private int getProjection(int x, int y)
+  {
+    int shallowestZ = mProjection.get(x, y);
+
+    if ( shallowestZ == HeightMap.EMPTY && mBase != null )
+    {
+      return mBase.getShallowestMineZ(x, y);
+    }
+
+    return (shallowestZ == CLEARED ? NO_MINE : shallowestZ);
+  }
+
+  private void setProjection(int x, int y, int shallowestZ)
+  {
+    mProjection.set(x, y, (shallowestZ == NO_MINE && mBase != null ? CLEARED : shallowestZ));
+  }
+}
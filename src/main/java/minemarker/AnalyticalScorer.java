@@ -0,0 +1,209 @@
+package minemarker;
+
+import java.util.Arrays;
+
+import minemarker.MarkingMetrics.Phase;
+import minemarker.Ship.ShipAction;
+
+/**
+ * Scorer which determines the result of a simulation analytically rather than by stepping
+ * it.  The ship's motion is independent of the state of the minefield, so its trajectory
+ * can be followed from the orders alone, and a mine is cleared by the first volley
+ * covering its column.  Only the mines within reach of the ship's torpedos are indexed
+ * (the simulation cannot outlast the depth of the deepest mine, so the ship cannot go far),
+ * and the number of remaining mines at each depth is counted, so that termination is
+ * checked after each turn exactly as the simulation checks it, without any Minefield.
+ * This costs time proportional to the number of mines (plus sorting the few within
+ * reach), reads the orders no further than the simulation would, and gives exactly the
+ * score that SimulationState.runAndScore() would
+ * @author steve
+ *
+ */
+public class AnalyticalScorer
+{
+  private final long[]       mMines;
+  private final OrdersSource mOrders;
+  private int                mNumSteps = 0;
+
+  /**
+   * Construct a scorer for a simulation
+   * @param packedMines packed coordinates (see PackedPoint) of the (distinct) mines of the
+   * minefield, as returned by MinefieldFileParser.parsePackedMines()
+   * @param shipOrders the orders the sweeping ship has been given
+   */
+  public AnalyticalScorer(long[] packedMines, OrdersSource shipOrders)
+  {
+    mMines = packedMines;
+    mOrders = shipOrders;
+  }
+
+  /**
+   * Determine the score the simulation would achieve
+   * @return the score achieved (0 for a fail)
+   * @throws ModelException if there are no mines
+   * @throws ScriptException if the orders are found to be invalid as they are read
+   */
+  public int score() throws ModelException, ScriptException
+  {
+    long startNanos = System.nanoTime();
+    int score = scoreTrajectory();
+
+    MarkingMetrics.record(Phase.simulation, startNanos);
+
+    return score;
+  }
+
+  private int scoreTrajectory() throws ModelException, ScriptException
+  {
+    if ( mMines.length == 0 )
+    {
+      throw new ModelException("Cannot score a minefield with no mines");
+    }
+
+    //  The ship starts in the middle of the (x,y) extent of the mines, exactly as it does
+    //  in SimulationState
+    int minX = Integer.MAX_VALUE;
+    int maxX = Integer.MIN_VALUE;
+    int minY = Integer.MAX_VALUE;
+    int maxY = Integer.MIN_VALUE;
+    int minZ = Integer.MAX_VALUE;
+    int maxZ = Integer.MIN_VALUE;
+
+    for(long mine : mMines)
+    {
+      minX = Math.min(minX, PackedPoint.getX(mine));
+      maxX = Math.max(maxX, PackedPoint.getX(mine));
+      minY = Math.min(minY, PackedPoint.getY(mine));
+      maxY = Math.max(maxY, PackedPoint.getY(mine));
+      minZ = Math.min(minZ, PackedPoint.getZ(mine));
+      maxZ = Math.max(maxZ, PackedPoint.getZ(mine));
+    }
+
+    int x = (minX + maxX)/2;
+    int y = (minY + maxY)/2;
+
+    //  The simulation terminates once the ship reaches the shallowest remaining mine, so it
+    //  lasts at most maxZ turns, in each of which the ship moves at most one cell, and its
+    //  torpedos reach at most one cell further.  Only the mines within that reach can ever
+    //  be cleared, so only they are indexed, sorted so that the mines of each column are
+    //  contiguous
+    int reach = Math.max(1, maxZ) + 1;
+    long[] reachableMines = new long[16];
+    int numReachable = 0;
+    int[] numAtDepth = new int[maxZ - minZ + 1];
+
+    for(long mine : mMines)
+    {
+      if ( Math.abs((long)PackedPoint.getX(mine) - x) <= reach && Math.abs((long)PackedPoint.getY(mine) - y) <= reach )
+      {
+        if ( numReachable == reachableMines.length )
+        {
+          reachableMines = Arrays.copyOf(reachableMines, 2*numReachable);
+        }
+        reachableMines[numReachable++] = mine;
+      }
+      numAtDepth[PackedPoint.getZ(mine) - minZ]++;
+    }
+
+    Arrays.sort(reachableMines, 0, numReachable);
+
+    boolean[] cleared = new boolean[numReachable];
+    int numRemaining = mMines.length;
+    int shallowestZ = minZ;
+    int volleys = 0;
+    int moves = 0;
+
+    //  Step the trajectory turn by turn, clearing the mines of each column as the first
+    //  torpedo covers it
+    for(int turn = 0;; turn++)
+    {
+      for(ShipAction action : TurnOrderEncoding.getActions(mOrders.getEncodedOrdersForTurn(turn)))
+      {
+        if ( action.isMovement() )
+        {
+          Point movement = Ship.getMovement(action);
+
+          x += movement.getX();
+          y += movement.getY();
+          moves++;
+        }
+        else
+        {
+          for(Point offset : Ship.getTorpedoOffsets(action))
+          {
+            numRemaining -= clearColumn(reachableMines, numReachable, cleared, numAtDepth, minZ, x + offset.getX(), y + offset.getY());
+          }
+          volleys++;
+        }
+      }
+
+      while ( shallowestZ <= maxZ && numAtDepth[shallowestZ - minZ] == 0 )
+      {
+        shallowestZ++;
+      }
+
+      //  The same checks as SimulationState.terminal(), in the same order, so that the
+      //  script is read no further than stepping the simulation would read it.  After
+      //  turn t the ship is at depth t+1
+      if ( numRemaining == 0 || shallowestZ <= turn + 1 || !mOrders.coversTurn(turn + 1) )
+      {
+        mNumSteps = turn + 1;
+        break;
+      }
+    }
+
+    if ( numRemaining > 0 )
+    {
+      return 0;
+    }
+
+    if ( mOrders.coversTurn(mNumSteps) )
+    {
+      return 1;
+    }
+
+    return 10*mMines.length -
+           Math.min(5*mMines.length, 5*volleys) -
+           Math.min(3*mMines.length, 2*moves);
+  }
+
+  /**
+   * @return number of steps the simulation runs for (valid after score())
+   */
+  public int getNumSteps()
+  {
+    return mNumSteps;
+  }
+
+  //  Clear the mines of a column, if not already cleared, returning the number cleared
+  private static int clearColumn(long[] mines, int numMines, boolean[] cleared, int[] numAtDepth, int minZ, int x, int y)
+  {
+    //  Columns beyond the packable range cannot hold any mines
+    if ( !PackedPoint.isPackable(x, y, 0) )
+    {
+      return 0;
+    }
+
+    //  Depth 0 sorts no later than any mine of the column (the depth being the low bits),
+    //  so the search finds (or gives as the insertion point) the column's first mine
+    int index = Arrays.binarySearch(mines, 0, numMines, PackedPoint.pack(x, y, 0));
+    int result = 0;
+
+    if ( index < 0 )
+    {
+      index = -(index + 1);
+    }
+
+    for(; index < numMines && PackedPoint.getX(mines[index]) == x && PackedPoint.getY(mines[index]) == y; index++)
+    {
+      if ( !cleared[index] )
+      {
+        cleared[index] = true;
+        numAtDepth[PackedPoint.getZ(mines[index]) - minZ]--;
+        result++;
+      }
+    }
+
+    return result;
+  }
+}
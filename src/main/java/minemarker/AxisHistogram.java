@@ -0,0 +1,177 @@
+package minemarker;
+
+/**
+ * Occupancy histogram for one coordinate axis - i.e. - a count of how many mines
+ * there are at each value of that coordinate.  This allows the extent of the
+ * mines along the axis to be maintained incrementally as mines are added and
+ * removed, rather than by rescanning all the mines.  The counts are held in an array
+ * indexed by value, covering the values used so far, and the lowest and highest occupied
+ * values are maintained as mines are added and removed, so can be read in O(1).  When
+ * the mine at one of them is removed the next occupied value is found by scanning towards
+ * the other, which as a simulation only ever clears mines costs in total O(range)
+ * @author steve
+ *
+ */
+class AxisHistogram
+{
+  private final AxisHistogram mBase;
+  private final String        mAxis;
+  private final int           mMaxRange;
+
+  //  Count of mines at value v is mCounts[v - mOrigin].  In an overlay these are instead
+  //  the changes to the counts of the base, covering only the values changed since it was
+  //  created, so creating one costs nothing in proportion to the range of the base
+  private int[]               mCounts = new int[0];
+  private int                 mOrigin = 0;
+  private int                 mNumMines = 0;
+  private int                 mMin = Integer.MAX_VALUE;
+  private int                 mMax = Integer.MIN_VALUE;
+
+  /**
+   * Construct an empty histogram
+   * @param axis name of the axis, for reporting errors
+   * @param maxRange bound on the range of values covered, beyond which mines are rejected
+   */
+  AxisHistogram(String axis, int maxRange)
+  {
+    mBase = null;
+    mAxis = axis;
+    mMaxRange = maxRange;
+  }
+
+  /**
+   * Construct an overlay of another histogram, which starts with the same counts but
+   * records its own changes without changing the base (which must not itself change)
+   * @param base histogram to overlay
+   */
+  AxisHistogram(AxisHistogram base)
+  {
+    mBase = base;
+    mAxis = base.mAxis;
+    mMaxRange = base.mMaxRange;
+    mNumMines = base.mNumMines;
+    mMin = base.mMin;
+    mMax = base.mMax;
+  }
+
+  /**
+   * Record a mine at a given coordinate value
+   * @param value coordinate value
+   * @return true if the value was not previously occupied
+   * @throws IllegalArgumentException if covering the value would exceed the maximum range
+   */
+  boolean add(int value)
+  {
+    ensureCovers(value);
+
+    mNumMines++;
+    mMin = Math.min(mMin, value);
+    mMax = Math.max(mMax, value);
+
+    return (mCounts[value - mOrigin]++ + getBaseCount(value) == 0);
+  }
+
+  /**
+   * Remove a mine at a given coordinate value
+   * @param value coordinate value (which must currently be occupied)
+   * @return true if the value is no longer occupied
+   */
+  boolean remove(int value)
+  {
+    assert(value >= mMin && value <= mMax && getCount(value) > 0);
+
+    //  An overlay may not yet have changed the count of the value
+    ensureCovers(value);
+
+    mNumMines--;
+    if ( --mCounts[value - mOrigin] + getBaseCount(value) > 0 )
+    {
+      return false;
+    }
+
+    if ( mNumMines == 0 )
+    {
+      mMin = Integer.MAX_VALUE;
+      mMax = Integer.MIN_VALUE;
+    }
+    else
+    {
+      while ( getCount(mMin) == 0 )
+      {
+        mMin++;
+      }
+      while ( getCount(mMax) == 0 )
+      {
+        mMax--;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * @return true if no values are occupied
+   */
+  boolean isEmpty()
+  {
+    return (mNumMines == 0);
+  }
+
+  /**
+   * @return lowest occupied value (Integer.MAX_VALUE if empty)
+   */
+  int getMin()
+  {
+    return mMin;
+  }
+
+  /**
+   * @return highest occupied value (Integer.MIN_VALUE if empty)
+   */
+  int getMax()
+  {
+    return mMax;
+  }
+
+  private int getCount(int value)
+  {
+    long index = (long)value - mOrigin;
+    int count = (index >= 0 && index < mCounts.length ? mCounts[(int)index] : 0);
+
+    return count + getBaseCount(value);
+  }
+
+  private int getBaseCount(int value)
+  {
+    return (mBase == null ? 0 : mBase.getCount(value));
+  }
+
+  //  Grow the array as necessary so as to cover the specified value
+  private void ensureCovers(int value)
+  {
+    if ( mCounts.length == 0 )
+    {
+      mCounts = new int[1];
+      mOrigin = value;
+    }
+    else if ( value < mOrigin || (long)value - mOrigin >= mCounts.length )
+    {
+      long end = mOrigin + (long)mCounts.length;
+
+      if ( Math.max(value + 1L, end) - Math.min(value, mOrigin) > mMaxRange )
+      {
+        throw new IllegalArgumentException("Minefield " + mAxis + " range too large adding mine at " + mAxis + "=" + value);
+      }
+
+      //  Grow by at least half the current size in the direction that must grow (within
+      //  the bound), so that the cost of adding mines in order is amortized
+      long newOrigin = (value < mOrigin ? Math.max(Math.min(value, mOrigin - (long)(mCounts.length/2)), Math.max(end - mMaxRange, Integer.MIN_VALUE)) : mOrigin);
+      long newEnd = (value >= end ? Math.min(Math.max(value + 1L, end + mCounts.length/2), newOrigin + mMaxRange) : end);
+      int[] newCounts = new int[(int)(newEnd - newOrigin)];
+
+      System.arraycopy(mCounts, 0, newCounts, (int)(mOrigin - newOrigin), mCounts.length);
+      mCounts = newCounts;
+      mOrigin = (int)newOrigin;
+    }
+  }
+}
@@ -0,0 +1,20 @@
+package minemarker;
+
+/**
+ * Exception covering conditions that prevent a batch of marking jobs from being
+ * set up, such as an invalid manifest
+ * @author steve
+ *
+ */
+public class BatchException extends Exception
+{
+  private static final long serialVersionUID = 3504626193118253811L;
+
+  /**
+   * @param message message describing the exception condition
+   */
+  public BatchException(String message)
+  {
+    super(message);
+  }
+}
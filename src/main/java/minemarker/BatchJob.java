@@ -0,0 +1,56 @@
+package minemarker;
+
+/**
+ * One marking job within a batch - a minefield/script pair, and the name of the file
+ * its full marking output is written to (if requested)
+ * @author steve
+ *
+ */
+public class BatchJob
+{
+  private final String mMinefieldFilename;
+  private final String mScriptFilename;
+  private final String mOutputName;
+
+  /**
+   * @param minefieldFilename minefield specification file to mark against
+   * @param scriptFilename ship script file to mark
+   * @param outputName name of the file (within the batch output directory) to write the marking output to
+   */
+  public BatchJob(String minefieldFilename, String scriptFilename, String outputName)
+  {
+    mMinefieldFilename = minefieldFilename;
+    mScriptFilename = scriptFilename;
+    mOutputName = outputName;
+  }
+
+  /**
+   * @return minefield specification file to mark against
+   */
+  public String getMinefieldFilename()
+  {
+    return mMinefieldFilename;
+  }
+
+  /**
+   * @return ship script file to mark
+   */
+  public String getScriptFilename()
+  {
+    return mScriptFilename;
+  }
+
+  /**
+   * @return name of the file (within the batch output directory) to write the marking output to
+   */
+  public String getOutputName()
+  {
+    return mOutputName;
+  }
+
+  @Override
+  public String toString()
+  {
+    return mMinefieldFilename + " " + mScriptFilename;
+  }
+}
@@ -0,0 +1,399 @@
+package minemarker;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Marks a batch of minefield/script pairs within a single JVM, running the simulations
+ * concurrently on a fixed size pool of worker threads.  Results are reported in the
+ * order of the jobs however the work is scheduled, so the output of a batch is
+ * deterministic.  The number of jobs in flight at once is bounded, so that a batch
+ * of any size can be marked without its results accumulating in memory.  A minefield
+ * file named by several jobs is only parsed once, with each job simulating against its
+ * own fork of the result
+ * @author steve
+ *
+ */
+public class BatchMarker
+{
+  //  Prefixes pairing up the files of a batch directory
+  private static final String MINEFIELD_PREFIX = "minefield";
+  private static final String SCRIPT_PREFIX = "script";
+  private static final String OUTPUT_PREFIX = "output";
+
+  //  Number of jobs in flight per worker thread, so that workers need not wait for
+  //  the results of earlier jobs to be reported before starting on more
+  private static final int    JOBS_IN_FLIGHT_PER_THREAD = 4;
+
+  private final MinefieldEngine    mEngine;
+  private final int                mNumThreads;
+  private final File               mOutputDirectory;
+  private final MarkingCache       mCache;
+  private final MinefieldFileCache mFieldCache;
+  private int                      mNumPassed = 0;
+  private int                      mNumFailed = 0;
+  private int                      mNumErrors = 0;
+
+  //  Minefield files named by more than one job of the current batch, and the (shared)
+  //  parsing of each, started by whichever job first needs it
+  private Set<String>                                        mSharedMinefieldFilenames = new HashSet<>();
+  private final ConcurrentMap<String, FutureTask<Minefield>> mSharedMinefields = new ConcurrentHashMap<>();
+
+  /**
+   * Construct a marker for batches of jobs
+   * @param engine minefield storage engine to use
+   * @param numThreads number of worker threads to mark with
+   * @param outputDirectory directory to write the full marking output of each job to,
+   * or null if only the results are required
+   */
+  public BatchMarker(MinefieldEngine engine, int numThreads, String outputDirectory)
+  {
+    this(engine, numThreads, outputDirectory, null);
+  }
+
+  /**
+   * Construct a marker for batches of jobs, which caches results
+   * @param engine minefield storage engine to use
+   * @param numThreads number of worker threads to mark with
+   * @param outputDirectory directory to write the full marking output of each job to,
+   * or null if only the results are required
+   * @param cache cache of results to use, or null for none
+   */
+  public BatchMarker(MinefieldEngine engine, int numThreads, String outputDirectory, MarkingCache cache)
+  {
+    this(engine, numThreads, outputDirectory, cache, null);
+  }
+
+  /**
+   * Construct a marker for batches of jobs, which caches results and parsed minefields
+   * @param engine minefield storage engine to use
+   * @param numThreads number of worker threads to mark with
+   * @param outputDirectory directory to write the full marking output of each job to,
+   * or null if only the results are required
+   * @param cache cache of results to use, or null for none
+   * @param fieldCache cache of parsed minefields to use for jobs whose results are not
+   * cached, or null for none
+   */
+  public BatchMarker(MinefieldEngine engine, int numThreads, String outputDirectory, MarkingCache cache, MinefieldFileCache fieldCache)
+  {
+    mEngine = engine;
+    mNumThreads = numThreads;
+    mOutputDirectory = (outputDirectory == null ? null : new File(outputDirectory));
+    mCache = cache;
+    mFieldCache = fieldCache;
+  }
+
+  /**
+   * Load the jobs making up a batch, from either a manifest file or a directory.  Each
+   * non-blank line of a manifest (other than comments starting with #) names a minefield
+   * file, a script file and optionally the name of the file to write the marking output
+   * to, separated by whitespace.  Relative filenames are relative to the manifest's
+   * directory.  In a directory each file whose name starts with 'minefield' is paired with
+   * the script whose name is the same but for starting with 'script' (and output is written
+   * to the name starting with 'output'), so that the layout matches that of the test data
+   * @param manifestOrDirectory manifest file or directory to load jobs from
+   * @return jobs in the order they are to be reported
+   * @throws IOException
+   * @throws BatchException if the manifest is invalid
+   */
+  public static List<BatchJob> loadJobs(String manifestOrDirectory) throws IOException, BatchException
+  {
+    File source = new File(manifestOrDirectory);
+    List<BatchJob> result = new ArrayList<>();
+
+    if ( source.isDirectory() )
+    {
+      String[] filenames = source.list();
+
+      if ( filenames == null )
+      {
+        throw new IOException("Unable to list batch directory " + manifestOrDirectory);
+      }
+
+      Arrays.sort(filenames);
+      for(String filename : filenames)
+      {
+        if ( filename.startsWith(MINEFIELD_PREFIX) )
+        {
+          String suffix = filename.substring(MINEFIELD_PREFIX.length());
+
+          result.add(new BatchJob(new File(source, filename).getPath(),
+                                  new File(source, SCRIPT_PREFIX + suffix).getPath(),
+                                  OUTPUT_PREFIX + suffix));
+        }
+      }
+    }
+    else
+    {
+      List<String> lines = FileHelper.readLines(manifestOrDirectory);
+      File baseDirectory = source.getAbsoluteFile().getParentFile();
+
+      for(int lineIndex = 0; lineIndex < lines.size(); lineIndex++)
+      {
+        String line = lines.get(lineIndex).trim();
+
+        if ( line.isEmpty() || line.startsWith("#") )
+        {
+          continue;
+        }
+
+        String[] fields = line.split("\\s+");
+
+        if ( fields.length < 2 || fields.length > 3 )
+        {
+          throw new BatchException("Batch manifest line " + (lineIndex+1) + " does not specify a minefield and script (and optional output name): " + line);
+        }
+
+        result.add(new BatchJob(resolve(baseDirectory, fields[0]),
+                                resolve(baseDirectory, fields[1]),
+                                (fields.length > 2 ? fields[2] : OUTPUT_PREFIX + (lineIndex+1) + ".txt")));
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Mark a batch of jobs, writing a result line for each in order followed by a summary.
+   * A marker may be run on any number of batches in turn, and its counts are those of the
+   * batch most recently run
+   * @param jobs jobs to mark
+   * @param results destination to write the results to
+   * @throws IOException
+   * @throws InterruptedException
+   */
+  public void run(List<BatchJob> jobs, Writer results) throws IOException, InterruptedException
+  {
+    ExecutorService workers = Executors.newFixedThreadPool(mNumThreads);
+    Deque<Future<Integer>> inFlight = new ArrayDeque<>();
+    Deque<BatchJob> inFlightJobs = new ArrayDeque<>();
+    Set<String> minefieldFilenames = new HashSet<>();
+
+    mNumPassed = 0;
+    mNumFailed = 0;
+    mNumErrors = 0;
+
+    mSharedMinefieldFilenames = new HashSet<>();
+    for(BatchJob job : jobs)
+    {
+      if ( !minefieldFilenames.add(job.getMinefieldFilename()) )
+      {
+        mSharedMinefieldFilenames.add(job.getMinefieldFilename());
+      }
+    }
+
+    try
+    {
+      for(final BatchJob job : jobs)
+      {
+        if ( inFlight.size() >= mNumThreads*JOBS_IN_FLIGHT_PER_THREAD )
+        {
+          reportResult(inFlightJobs.removeFirst(), inFlight.removeFirst(), results);
+        }
+
+        inFlight.addLast(workers.submit(new Callable<Integer>()
+        {
+          @Override
+          public Integer call() throws Exception
+          {
+            return mark(job);
+          }
+        }));
+        inFlightJobs.addLast(job);
+      }
+
+      while ( !inFlight.isEmpty() )
+      {
+        reportResult(inFlightJobs.removeFirst(), inFlight.removeFirst(), results);
+      }
+    }
+    finally
+    {
+      workers.shutdownNow();
+      mSharedMinefields.clear();
+    }
+
+    results.write("Marked " + jobs.size() + " jobs: " + mNumPassed + " passed, " + mNumFailed + " failed, " + mNumErrors + " errors" + System.lineSeparator());
+    if ( mCache != null )
+    {
+      results.write(mCache.getStatistics() + System.lineSeparator());
+    }
+    if ( mFieldCache != null )
+    {
+      results.write(mFieldCache.getStatistics() + System.lineSeparator());
+    }
+    results.flush();
+  }
+
+  /**
+   * @return number of jobs marked as passes in the most recent batch
+   */
+  public int getNumPassed()
+  {
+    return mNumPassed;
+  }
+
+  /**
+   * @return number of jobs marked as fails in the most recent batch
+   */
+  public int getNumFailed()
+  {
+    return mNumFailed;
+  }
+
+  /**
+   * @return number of jobs that could not be marked in the most recent batch
+   */
+  public int getNumErrors()
+  {
+    return mNumErrors;
+  }
+
+  //  Mark a single job, returning its score
+  private int mark(BatchJob job) throws IOException, MinefieldFileParseException, ScriptException, ModelException
+  {
+    if ( mCache != null )
+    {
+      //  Caching needs the content of the files to determine the key, so they are read into memory
+      MarkingResult result = mCache.mark(Files.readAllBytes(Paths.get(job.getMinefieldFilename())),
+                                         Files.readAllBytes(Paths.get(job.getScriptFilename())),
+                                         mOutputDirectory == null,
+                                         mEngine);
+
+      if ( mOutputDirectory != null )
+      {
+        try (Writer output = new BufferedWriter(new FileWriter(new File(mOutputDirectory, job.getOutputName()))))
+        {
+          result.writeTo(output);
+        }
+      }
+
+      return result.getScore();
+    }
+
+    Minefield minefield = (mSharedMinefieldFilenames.contains(job.getMinefieldFilename()) ? getSharedMinefield(job.getMinefieldFilename()).fork()
+                                                                                          : parseMinefield(job.getMinefieldFilename()));
+    ShipOrders orders = ScriptFileParser.parse(job.getScriptFilename());
+    SimulationState simulation = new SimulationState(minefield, orders);
+
+    if ( mOutputDirectory == null )
+    {
+      return simulation.runAndScore();
+    }
+
+    try (Writer output = new BufferedWriter(new FileWriter(new File(mOutputDirectory, job.getOutputName()))))
+    {
+      return simulation.runAndMark(output);
+    }
+  }
+
+  private Minefield parseMinefield(String filename) throws IOException, MinefieldFileParseException
+  {
+    return (mFieldCache != null ? mFieldCache.parse(filename, mEngine) : MinefieldFileParser.parse(filename, mEngine));
+  }
+
+  //  Retrieve the (snapshotted) minefield shared by the jobs naming a given file, parsing
+  //  it if this is the first job to need it, or waiting for another job to do so
+  private Minefield getSharedMinefield(final String filename) throws IOException, MinefieldFileParseException
+  {
+    FutureTask<Minefield> parse = new FutureTask<>(new Callable<Minefield>()
+    {
+      @Override
+      public Minefield call() throws Exception
+      {
+        return parseMinefield(filename).snapshot();
+      }
+    });
+    FutureTask<Minefield> existingParse = mSharedMinefields.putIfAbsent(filename, parse);
+
+    if ( existingParse == null )
+    {
+      parse.run();
+    }
+    else
+    {
+      parse = existingParse;
+    }
+
+    try
+    {
+      return parse.get();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting for minefield " + filename + " to be parsed");
+    }
+    catch (ExecutionException e)
+    {
+      //  Every job sharing the minefield fails just as it would have parsing it itself
+      if ( e.getCause() instanceof MinefieldFileParseException )
+      {
+        throw (MinefieldFileParseException)e.getCause();
+      }
+      if ( e.getCause() instanceof IOException )
+      {
+        throw (IOException)e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  //  Report the result of a job, once it is available.  Any failure to mark a job is
+  //  confined to that job, so that the rest of the batch is still marked
+  private void reportResult(BatchJob job, Future<Integer> result, Writer results) throws IOException, InterruptedException
+  {
+    String resultLine;
+
+    try
+    {
+      int score = result.get();
+
+      if ( score > 0 )
+      {
+        mNumPassed++;
+      }
+      else
+      {
+        mNumFailed++;
+      }
+      resultLine = SimulationState.formatResult(score);
+    }
+    catch (ExecutionException e)
+    {
+      mNumErrors++;
+      resultLine = "error (" + e.getCause() + ")";
+    }
+
+    results.write(job + ": " + resultLine + System.lineSeparator());
+    results.flush();
+  }
+
+  private static String resolve(File baseDirectory, String filename)
+  {
+    File file = new File(filename);
+
+    return (file.isAbsolute() ? file : new File(baseDirectory, filename)).getPath();
+  }
+}
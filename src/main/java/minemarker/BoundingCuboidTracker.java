@@ -0,0 +1,117 @@
+package minemarker;
+
+/**
+ * Maintains the minimal bounding cuboid of a changing set of mines incrementally,
+ * using an occupancy histogram per axis (see AxisHistogram).  Each insertion costs O(1)
+ * (amortized), as does each removal other than of the last mine at an extreme, and the
+ * Cuboid itself is only rebuilt when it is asked for after the set of occupied values has
+ * changed.  The shallowest and deepest mines are available in O(1) without rebuilding it
+ * @author steve
+ *
+ */
+class BoundingCuboidTracker
+{
+  //  Bounds on the range of coordinates along each axis.  x and y may take any packable
+  //  value (see PackedPoint), whereas minefields are shallow (the input format allows a
+  //  depth of at most 52), so a far smaller bound keeps the z histogram small even for
+  //  pathological fields
+  private static final int    MAX_XY_RANGE = PackedPoint.MAX_XY - PackedPoint.MIN_XY + 1;
+  private static final int    MAX_Z_RANGE = 1 << 16;
+
+  private final AxisHistogram mXHistogram;
+  private final AxisHistogram mYHistogram;
+  private final AxisHistogram mZHistogram;
+  private Cuboid              mBoundingCuboid = null;
+  private boolean             mStale = false;
+
+  /**
+   * Construct a tracker with no mines
+   */
+  BoundingCuboidTracker()
+  {
+    mXHistogram = new AxisHistogram("x", MAX_XY_RANGE);
+    mYHistogram = new AxisHistogram("y", MAX_XY_RANGE);
+    mZHistogram = new AxisHistogram("z", MAX_Z_RANGE);
+  }
+
+  /**
+   * Construct an overlay of another tracker, which starts with the same mines but tracks
+   * its own changes without changing the base (which must not itself change)
+   * @param base tracker to overlay
+   */
+  BoundingCuboidTracker(BoundingCuboidTracker base)
+  {
+    mXHistogram = new AxisHistogram(base.mXHistogram);
+    mYHistogram = new AxisHistogram(base.mYHistogram);
+    mZHistogram = new AxisHistogram(base.mZHistogram);
+    mBoundingCuboid = base.getBoundingCuboid();
+  }
+
+  /**
+   * Record the addition of a mine
+   * @param x x-coordinate of the mine
+   * @param y y-coordinate of the mine
+   * @param z z-coordinate of the mine
+   */
+  void add(int x, int y, int z)
+  {
+    //  Note - non-short-circuit or, since all three histograms must be updated
+    if ( mXHistogram.add(x) | mYHistogram.add(y) | mZHistogram.add(z) )
+    {
+      mStale = true;
+    }
+  }
+
+  /**
+   * Record the removal of a mine
+   * @param x x-coordinate of the mine
+   * @param y y-coordinate of the mine
+   * @param z z-coordinate of the mine
+   */
+  void remove(int x, int y, int z)
+  {
+    if ( mXHistogram.remove(x) | mYHistogram.remove(y) | mZHistogram.remove(z) )
+    {
+      mStale = true;
+    }
+  }
+
+  /**
+   * @return z-coordinate of the shallowest extant mine (Integer.MAX_VALUE if there are none)
+   */
+  int getShallowestZ()
+  {
+    return mZHistogram.getMin();
+  }
+
+  /**
+   * @return z-coordinate of the deepest extant mine (Integer.MIN_VALUE if there are none)
+   */
+  int getDeepestZ()
+  {
+    return mZHistogram.getMax();
+  }
+
+  /**
+   * @return minimal bounding cuboid for all extant mines - null if there are none
+   */
+  Cuboid getBoundingCuboid()
+  {
+    if ( mStale )
+    {
+      if ( mXHistogram.isEmpty() )
+      {
+        mBoundingCuboid = null;
+      }
+      else
+      {
+        mBoundingCuboid = new Cuboid(new Point(mXHistogram.getMin(), mYHistogram.getMin(), mZHistogram.getMin()),
+                                     new Point(mXHistogram.getMax(), mYHistogram.getMax(), mZHistogram.getMax()));
+      }
+
+      mStale = false;
+    }
+
+    return mBoundingCuboid;
+  }
+}
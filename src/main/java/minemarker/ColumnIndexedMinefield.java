@@ -0,0 +1,235 @@
+package minemarker;
+
+import java.util.List;
+
+/**
+ * Minefield implementation that indexes mines by their (x,y) column, holding
+ * a sorted list of depths for each column.  Torpedos clear whole columns, so
+ * with this representation a torpedo strike is a single column lookup rather
+ * than a scan over every mine in the field
+ * @author steve
+ *
+ */
+public class ColumnIndexedMinefield extends AbstractMinefield
+{
+  //  Columns are keyed by their (x,y) coordinates (see columnKey), so no key object is
+  //  needed to look one up
+  private final LongHashMap<DepthList> mColumns = new LongHashMap<>();
+  private int                          mNumMines = 0;
+
+  //  Sorted (ascending z) list of the depths of the mines in a single column.  The
+  //  input format only allows one mine per column, so these are almost always tiny
+  private class DepthList
+  {
+    private int[] mDepths = new int[1];
+    private int   mSize = 0;
+
+    boolean add(int z)
+    {
+      int index = find(z);
+      if ( index < mSize && mDepths[index] == z )
+      {
+        return false;
+      }
+
+      if ( mSize == mDepths.length )
+      {
+        int[] newDepths = new int[mSize*2];
+        System.arraycopy(mDepths, 0, newDepths, 0, mSize);
+        mDepths = newDepths;
+      }
+
+      System.arraycopy(mDepths, index, mDepths, index+1, mSize-index);
+      mDepths[index] = z;
+      mSize++;
+
+      return true;
+    }
+
+    //  Remove all depths in the range [fromZ,toZ] from the list for column (x,y), and
+    //  return how many were removed
+    int removeRange(int x, int y, int fromZ, int toZ)
+    {
+      int start = find(fromZ);
+      int end = start;
+
+      while ( end < mSize && mDepths[end] <= toZ )
+      {
+        mineRemoved(x, y, mDepths[end]);
+        end++;
+      }
+
+      System.arraycopy(mDepths, end, mDepths, start, mSize-end);
+      mSize -= (end - start);
+
+      return end - start;
+    }
+
+    boolean contains(int z)
+    {
+      int index = find(z);
+
+      return (index < mSize && mDepths[index] == z);
+    }
+
+    boolean isEmpty()
+    {
+      return mSize == 0;
+    }
+
+    int shallowest()
+    {
+      return mDepths[0];
+    }
+
+    //  Index of the first depth that is >= z
+    private int find(int z)
+    {
+      int low = 0;
+      int high = mSize;
+
+      while ( low < high )
+      {
+        int mid = (low + high) >>> 1;
+        if ( mDepths[mid] < z )
+        {
+          low = mid + 1;
+        }
+        else
+        {
+          high = mid;
+        }
+      }
+
+      return low;
+    }
+  }
+
+  @Override
+  public void addMine(int x, int y, int z)
+  {
+    checkChangeable();
+
+    long columnKey = columnKey(x, y);
+    DepthList column = mColumns.get(columnKey);
+
+    if ( column == null )
+    {
+      column = new DepthList();
+      mColumns.put(columnKey, column);
+    }
+
+    if ( column.add(z) )
+    {
+      mNumMines++;
+      mineAdded(x, y, z);
+    }
+  }
+
+  @Override
+  public void clearRegion(Cuboid xiRegion)
+  {
+    checkChangeable();
+
+    Point northWestTop = xiRegion.getNorthWestTop();
+    Point southEastBottom = xiRegion.getSouthEastBottom();
+    long regionColumns = ((long)southEastBottom.getX() - northWestTop.getX() + 1) *
+                         ((long)southEastBottom.getY() - northWestTop.getY() + 1);
+    int numRemoved = 0;
+
+    if ( regionColumns <= mColumns.size() )
+    {
+      //  Typical torpedo case - the region is a small number of columns, so just look them up
+      for(int y = northWestTop.getY(); y <= southEastBottom.getY(); y++)
+      {
+        for(int x = northWestTop.getX(); x <= southEastBottom.getX(); x++)
+        {
+          long columnKey = columnKey(x, y);
+          DepthList column = mColumns.get(columnKey);
+
+          if ( column != null )
+          {
+            numRemoved += column.removeRange(x, y, northWestTop.getZ(), southEastBottom.getZ());
+            if ( column.isEmpty() )
+            {
+              mColumns.remove(columnKey);
+            }
+          }
+        }
+      }
+    }
+    else
+    {
+      //  The region covers more columns than we have occupied, so it is cheaper to visit those
+      for(long columnKey : mColumns.keys())
+      {
+        int x = (int)(columnKey >> 32);
+        int y = (int)columnKey;
+
+        if ( x >= northWestTop.getX() && x <= southEastBottom.getX() &&
+             y >= northWestTop.getY() && y <= southEastBottom.getY() )
+        {
+          DepthList column = mColumns.get(columnKey);
+
+          numRemoved += column.removeRange(x, y, northWestTop.getZ(), southEastBottom.getZ());
+          if ( column.isEmpty() )
+          {
+            mColumns.remove(columnKey);
+          }
+        }
+      }
+    }
+
+    mNumMines -= numRemoved;
+  }
+
+  @Override
+  public void clearColumns(List<Point> xiColumnTops)
+  {
+    checkChangeable();
+
+    for(Point columnTop : xiColumnTops)
+    {
+      long columnKey = columnKey(columnTop.getX(), columnTop.getY());
+      DepthList column = mColumns.get(columnKey);
+
+      if ( column != null )
+      {
+        mNumMines -= column.removeRange(columnTop.getX(), columnTop.getY(), columnTop.getZ(), Integer.MAX_VALUE);
+        if ( column.isEmpty() )
+        {
+          mColumns.remove(columnKey);
+        }
+      }
+    }
+  }
+
+  @Override
+  public int getNumMines()
+  {
+    return mNumMines;
+  }
+
+  @Override
+  public boolean containsMine(int x, int y, int z)
+  {
+    DepthList column = mColumns.get(columnKey(x, y));
+
+    return (column != null && column.contains(z));
+  }
+
+  @Override
+  protected int findShallowestMineZ(int x, int y)
+  {
+    DepthList column = mColumns.get(columnKey(x, y));
+
+    return (column == null ? NO_MINE : column.shallowest());
+  }
+
+  //  Key of the column at (x,y) - x in the high 32 bits and y in the low, which (unlike
+  //  PackedPoint) represents every column exactly
+  private static long columnKey(int x, int y)
+  {
+    return ((long)x << 32) | (y & 0xFFFFFFFFL);
+  }
+}
@@ -4,6 +4,8 @@ import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
+import minemarker.WorkloadGenerator.DepthDistribution;
+
 /**
  * Commandline syntax parser
  * @author steve
@@ -11,9 +13,38 @@ import java.util.List;
  */
 public class CommandLine
 {
-  private String  mMinefieldFilename = null;
-  private String  mScriptFilename = null;
-  private boolean mDoMark = true;
+  //  Largest cache size (in MB) that can be converted to a number of bytes without overflow
+  private static final long MAX_CACHE_SIZE = Long.MAX_VALUE >> 20;
+
+  /**
+   * Largest width or height of a generated minefield, so that every coordinate in it can be
+   * packed (see PackedPoint), as the packed engine and the minefield cache require
+   */
+  static final int          MAX_DIMENSION = PackedPoint.MAX_XY + 1;
+
+  private String            mMinefieldFilename = null;
+  private String            mScriptFilename = null;
+  private String            mBatchSource = null;
+  private String            mOutputDirectory = null;
+  private int               mNumThreads = Runtime.getRuntime().availableProcessors();
+  private int               mServerPort = -1;
+  private String            mCacheDirectory = null;
+  private long              mCacheSize = -1;
+  private String            mFieldCacheDirectory = null;
+  private boolean           mDoMark = true;
+  private boolean           mDoGenerate = false;
+  private long              mSeed = 0;
+  private int               mWidth = 101;
+  private int               mHeight = 101;
+  private double            mDensity = 0.1;
+  private int               mMaxDepth = WorkloadGenerator.MAX_DEPTH;
+  private DepthDistribution mDepths = DepthDistribution.uniform;
+  private long              mNumTurns = WorkloadGenerator.MAX_DEPTH;
+  private boolean           mScoreOnly = false;
+  private boolean           mStreamScript = false;
+  private boolean           mAnalytic = false;
+  private boolean           mMetrics = false;
+  private MinefieldEngine   mEngine = MinefieldEngine.auto;
 
   /**
    * Parse a commandline, populating properties of this object
@@ -45,6 +76,113 @@ public class CommandLine
     return mDoMark;
   }
 
+  /**
+   * @return whether the command specified is a request to generate a synthetic minefield
+   * and/or script (to the minefield and script filenames) rather than to perform marking
+   */
+  public boolean getShouldGenerate()
+  {
+    return mDoGenerate;
+  }
+
+  /**
+   * @return seed for generation
+   */
+  public long getSeed()
+  {
+    return mSeed;
+  }
+
+  /**
+   * @return width of the minefield to generate
+   */
+  public int getWidth()
+  {
+    return mWidth;
+  }
+
+  /**
+   * @return height of the minefield to generate
+   */
+  public int getHeight()
+  {
+    return mHeight;
+  }
+
+  /**
+   * @return probability of each cell of the minefield to generate holding a mine
+   */
+  public double getDensity()
+  {
+    return mDensity;
+  }
+
+  /**
+   * @return greatest depth of the mines of the minefield to generate
+   */
+  public int getMaxDepth()
+  {
+    return mMaxDepth;
+  }
+
+  /**
+   * @return distribution of the depths of the mines of the minefield to generate
+   */
+  public DepthDistribution getDepths()
+  {
+    return mDepths;
+  }
+
+  /**
+   * @return number of turns of the script to generate
+   */
+  public long getNumTurns()
+  {
+    return mNumTurns;
+  }
+
+  /**
+   * @return whether only the final result of marking should be output, rather than the full step by step output
+   */
+  public boolean getScoreOnly()
+  {
+    return mScoreOnly;
+  }
+
+  /**
+   * @return whether the score should be determined analytically rather than by stepping the
+   * simulation (which implies only the final result is output)
+   */
+  public boolean getAnalytic()
+  {
+    return mAnalytic;
+  }
+
+  /**
+   * @return whether a summary of the timing metrics for each phase of marking should be
+   * output on exit
+   */
+  public boolean getMetrics()
+  {
+    return mMetrics;
+  }
+
+  /**
+   * @return whether the ship script should be read as the simulation proceeds, rather than parsed up front
+   */
+  public boolean getStreamScript()
+  {
+    return mStreamScript;
+  }
+
+  /**
+   * @return minefield storage engine to use
+   */
+  public MinefieldEngine getEngine()
+  {
+    return mEngine;
+  }
+
   /**
    * @return name of the file to retrieve minefield data from
    */
@@ -61,6 +199,64 @@ public class CommandLine
     return mScriptFilename;
   }
 
+  /**
+   * @return manifest file or directory specifying a batch of jobs to mark, or null if
+   * a single minefield and script are to be marked
+   */
+  public String getBatchSource()
+  {
+    return mBatchSource;
+  }
+
+  /**
+   * @return directory to write the full marking output of each batch job to, or null for none
+   */
+  public String getOutputDirectory()
+  {
+    return mOutputDirectory;
+  }
+
+  /**
+   * @return number of worker threads to mark batch jobs with
+   */
+  public int getNumThreads()
+  {
+    return mNumThreads;
+  }
+
+  /**
+   * @return port to run a marking server on, or -1 if not running as a server
+   */
+  public int getServerPort()
+  {
+    return mServerPort;
+  }
+
+  /**
+   * @return directory to cache marking results on disk in, or null for none
+   */
+  public String getCacheDirectory()
+  {
+    return mCacheDirectory;
+  }
+
+  /**
+   * @return bound on the memory used to cache marking results in MB, or -1 if not specified
+   * (a bound that is specified can always be converted to bytes without overflow)
+   */
+  public long getCacheSize()
+  {
+    return mCacheSize;
+  }
+
+  /**
+   * @return directory to cache parsed minefields in, or null for none
+   */
+  public String getFieldCacheDirectory()
+  {
+    return mFieldCacheDirectory;
+  }
+
   private boolean parseOption(Iterator<String> argsIterator)
   {
     if ( !argsIterator.hasNext())
@@ -75,6 +271,210 @@ public class CommandLine
       // Nothing to do here as mark is the default action
       return true;
     }
+    if ( option.equalsIgnoreCase("-generate") )
+    {
+      mDoGenerate = true;
+      mDoMark = false;
+      return true;
+    }
+    if ( option.equalsIgnoreCase("-seed"))
+    {
+      Long seed = consumeLongArg(argsIterator);
+      if ( seed == null )
+      {
+        return false;
+      }
+      mSeed = seed;
+      return true;
+    }
+    if ( option.equalsIgnoreCase("-width"))
+    {
+      Long width = consumeLongArg(argsIterator);
+      if ( width == null || width < 1 || width > MAX_DIMENSION )
+      {
+        return false;
+      }
+      mWidth = width.intValue();
+      return true;
+    }
+    if ( option.equalsIgnoreCase("-height"))
+    {
+      Long height = consumeLongArg(argsIterator);
+      if ( height == null || height < 1 || height > MAX_DIMENSION )
+      {
+        return false;
+      }
+      mHeight = height.intValue();
+      return true;
+    }
+    if ( option.equalsIgnoreCase("-depth"))
+    {
+      Long maxDepth = consumeLongArg(argsIterator);
+      if ( maxDepth == null || maxDepth < 1 || maxDepth > WorkloadGenerator.MAX_DEPTH )
+      {
+        return false;
+      }
+      mMaxDepth = maxDepth.intValue();
+      return true;
+    }
+    if ( option.equalsIgnoreCase("-turns"))
+    {
+      Long numTurns = consumeLongArg(argsIterator);
+      if ( numTurns == null || numTurns < 0 )
+      {
+        return false;
+      }
+      mNumTurns = numTurns;
+      return true;
+    }
+    if ( option.equalsIgnoreCase("-density"))
+    {
+      String density = consumeStringArg(argsIterator);
+      if ( density == null )
+      {
+        return false;
+      }
+
+      try
+      {
+        mDensity = Double.parseDouble(density);
+      }
+      catch(NumberFormatException e)
+      {
+        return false;
+      }
+      return (mDensity >= 0 && mDensity <= 1);
+    }
+    if ( option.equalsIgnoreCase("-depths"))
+    {
+      String depths = consumeStringArg(argsIterator);
+      if ( depths == null )
+      {
+        return false;
+      }
+
+      try
+      {
+        mDepths = DepthDistribution.valueOf(depths.toLowerCase());
+      }
+      catch(IllegalArgumentException e)
+      {
+        return false;
+      }
+      return true;
+    }
+    if ( option.equalsIgnoreCase("-scoreonly") )
+    {
+      mScoreOnly = true;
+      return true;
+    }
+    if ( option.equalsIgnoreCase("-analytic") )
+    {
+      mAnalytic = true;
+      return true;
+    }
+    if ( option.equalsIgnoreCase("-metrics") )
+    {
+      mMetrics = true;
+      return true;
+    }
+    if ( option.equalsIgnoreCase("-streamscript") )
+    {
+      mStreamScript = true;
+      return true;
+    }
+    if ( option.equalsIgnoreCase("-engine"))
+    {
+      String engineName = consumeStringArg(argsIterator);
+      if ( engineName == null )
+      {
+        return false;
+      }
+
+      try
+      {
+        mEngine = MinefieldEngine.valueOf(engineName.toLowerCase());
+      }
+      catch(IllegalArgumentException e)
+      {
+        return false;
+      }
+      return true;
+    }
+    if ( option.equalsIgnoreCase("-batch"))
+    {
+      mBatchSource = consumeStringArg(argsIterator);
+      return (mBatchSource != null);
+    }
+    if ( option.equalsIgnoreCase("-output"))
+    {
+      mOutputDirectory = consumeStringArg(argsIterator);
+      return (mOutputDirectory != null);
+    }
+    if ( option.equalsIgnoreCase("-threads"))
+    {
+      String numThreads = consumeStringArg(argsIterator);
+      if ( numThreads == null )
+      {
+        return false;
+      }
+
+      try
+      {
+        mNumThreads = Integer.parseInt(numThreads);
+      }
+      catch(NumberFormatException e)
+      {
+        return false;
+      }
+      return (mNumThreads > 0);
+    }
+    if ( option.equalsIgnoreCase("-serve"))
+    {
+      String port = consumeStringArg(argsIterator);
+      if ( port == null )
+      {
+        return false;
+      }
+
+      try
+      {
+        mServerPort = Integer.parseInt(port);
+      }
+      catch(NumberFormatException e)
+      {
+        return false;
+      }
+      return (mServerPort >= 0 && mServerPort <= 65535);
+    }
+    if ( option.equalsIgnoreCase("-cache"))
+    {
+      mCacheDirectory = consumeStringArg(argsIterator);
+      return (mCacheDirectory != null);
+    }
+    if ( option.equalsIgnoreCase("-cachesize"))
+    {
+      String cacheSize = consumeStringArg(argsIterator);
+      if ( cacheSize == null )
+      {
+        return false;
+      }
+
+      try
+      {
+        mCacheSize = Long.parseLong(cacheSize);
+      }
+      catch(NumberFormatException e)
+      {
+        return false;
+      }
+      return (mCacheSize >= 0 && mCacheSize <= MAX_CACHE_SIZE);
+    }
+    if ( option.equalsIgnoreCase("-fieldcache"))
+    {
+      mFieldCacheDirectory = consumeStringArg(argsIterator);
+      return (mFieldCacheDirectory != null);
+    }
     if ( option.equalsIgnoreCase("-minefield"))
     {
       mMinefieldFilename = consumeStringArg(argsIterator);
@@ -89,6 +489,25 @@ public class CommandLine
     return false;
   }
 
+  //  Consume a numeric argument, returning null if there is none or it is not a number
+  private Long consumeLongArg(Iterator<String> argsIterator)
+  {
+    String value = consumeStringArg(argsIterator);
+    if ( value == null )
+    {
+      return null;
+    }
+
+    try
+    {
+      return Long.parseLong(value);
+    }
+    catch(NumberFormatException e)
+    {
+      return null;
+    }
+  }
+
   private String consumeStringArg(Iterator<String> argsIterator)
   {
     if ( argsIterator.hasNext())
@@ -0,0 +1,125 @@
+package minemarker;
+
+/**
+ * Minefield implementation that is a fork of another (snapshotted) minefield, holding
+ * only the changes made since it was forked - the packed coordinates (see PackedPoint)
+ * of the mines of the base minefield that have been removed, and of any mines added
+ * that the base does not have.  Everything else is read through to the base, so any
+ * number of forks can share one (possibly very large) base, each costing memory only in
+ * proportion to its own changes.  Clearing a region probes each location of the region
+ * within the current bounds, which for torpedo columns is only as deep as the field
+ * @author steve
+ *
+ */
+class ForkedMinefield extends AbstractMinefield
+{
+  private final Minefield   mBase;
+  private final LongHashSet mRemoved = new LongHashSet();
+  private final LongHashSet mAdded = new LongHashSet();
+  private int               mNumMines;
+
+  /**
+   * Construct a fork of a minefield, which is snapshotted so that it can be shared
+   * @param base minefield to fork
+   */
+  ForkedMinefield(AbstractMinefield base)
+  {
+    super(base);
+
+    mBase = base;
+    mNumMines = base.getNumMines();
+  }
+
+  @Override
+  public void addMine(int x, int y, int z)
+  {
+    checkChangeable();
+    if ( !PackedPoint.isPackable(x, y, z) )
+    {
+      throw new IllegalArgumentException("Mine coordinates out of range for packed representation: (" + x + "," + y + "," + z + ")");
+    }
+
+    long mine = PackedPoint.pack(x, y, z);
+
+    //  A mine of the base is added back by forgetting its removal
+    if ( mBase.containsMine(x, y, z) ? mRemoved.remove(mine) : mAdded.add(mine) )
+    {
+      mNumMines++;
+      mineAdded(x, y, z);
+    }
+  }
+
+  @Override
+  public void clearRegion(Cuboid xiRegion)
+  {
+    checkChangeable();
+
+    Cuboid boundingCuboid = getBoundingCuboid();
+
+    if ( boundingCuboid == null )
+    {
+      return;
+    }
+
+    //  Only the part of the region within the current bounds can contain any mines
+    int minX = Math.max(xiRegion.getNorthWestTop().getX(), boundingCuboid.getNorthWestTop().getX());
+    int minY = Math.max(xiRegion.getNorthWestTop().getY(), boundingCuboid.getNorthWestTop().getY());
+    int minZ = Math.max(xiRegion.getNorthWestTop().getZ(), boundingCuboid.getNorthWestTop().getZ());
+    int maxX = Math.min(xiRegion.getSouthEastBottom().getX(), boundingCuboid.getSouthEastBottom().getX());
+    int maxY = Math.min(xiRegion.getSouthEastBottom().getY(), boundingCuboid.getSouthEastBottom().getY());
+    int maxZ = Math.min(xiRegion.getSouthEastBottom().getZ(), boundingCuboid.getSouthEastBottom().getZ());
+
+    for(int x = minX; x <= maxX; x++)
+    {
+      for(int y = minY; y <= maxY; y++)
+      {
+        for(int z = minZ; z <= maxZ; z++)
+        {
+          long mine = PackedPoint.pack(x, y, z);
+
+          if ( mAdded.remove(mine) || (mBase.containsMine(x, y, z) && mRemoved.add(mine)) )
+          {
+            mNumMines--;
+            mineRemoved(x, y, z);
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public int getNumMines()
+  {
+    return mNumMines;
+  }
+
+  @Override
+  public boolean containsMine(int x, int y, int z)
+  {
+    if ( !PackedPoint.isPackable(x, y, z) )
+    {
+      return false;
+    }
+
+    long mine = PackedPoint.pack(x, y, z);
+
+    return (mAdded.contains(mine) || (!mRemoved.contains(mine) && mBase.containsMine(x, y, z)));
+  }
+
+  @Override
+  protected int findShallowestMineZ(int x, int y)
+  {
+    int bottomZ = getDeepestZ();
+
+    //  Depth is small (bounded by the input format) so probing down the column is cheap
+    for(int z = getShallowestZ(); z <= bottomZ; z++)
+    {
+      if ( containsMine(x, y, z) )
+      {
+        return z;
+      }
+    }
+
+    return NO_MINE;
+  }
+}
@@ -0,0 +1,154 @@
+package minemarker;
+
+import java.util.Arrays;
+
+/**
+ * Map from (x,y) column to an int value (in practice the z-coordinate of the shallowest
+ * mine in the column).  Storage is a grid of fixed size square tiles, which are only
+ * allocated once a value is set within them, so lookups are a couple of array indexing
+ * operations with no allocation, while large sparse fields only pay for occupied tiles
+ * @author steve
+ *
+ */
+class HeightMap
+{
+  /**
+   * Value of every column that has not been set
+   */
+  static final int EMPTY = Integer.MAX_VALUE;
+
+  private static final int TILE_SHIFT = 6;
+  private static final int TILE_SIZE = 1 << TILE_SHIFT;
+  private static final int TILE_MASK = TILE_SIZE - 1;
+
+  //  Directory of tiles, covering tile coordinates from (mTileOriginX,mTileOriginY) for
+  //  mTilesWide by mTilesHigh tiles.  Null entries are tiles with nothing set in them
+  private int[][] mTiles = null;
+  private int     mTileOriginX = 0;
+  private int     mTileOriginY = 0;
+  private int     mTilesWide = 0;
+  private int     mTilesHigh = 0;
+
+  /**
+   * @param x x-coordinate of the column
+   * @param y y-coordinate of the column
+   * @return value for the column, or EMPTY if it has never been set
+   */
+  int get(int x, int y)
+  {
+    int tileX = (x >> TILE_SHIFT) - mTileOriginX;
+    int tileY = (y >> TILE_SHIFT) - mTileOriginY;
+
+    if ( tileX < 0 || tileX >= mTilesWide || tileY < 0 || tileY >= mTilesHigh )
+    {
+      return EMPTY;
+    }
+
+    int[] tile = mTiles[tileY*mTilesWide + tileX];
+
+    return (tile == null ? EMPTY : tile[((y & TILE_MASK) << TILE_SHIFT) | (x & TILE_MASK)]);
+  }
+
+  /**
+   * @param x x-coordinate of the column
+   * @param y y-coordinate of the column
+   * @param value new value for the column
+   */
+  void set(int x, int y, int value)
+  {
+    int tileX = (x >> TILE_SHIFT);
+    int tileY = (y >> TILE_SHIFT);
+
+    if ( mTiles == null ||
+         tileX < mTileOriginX || tileX >= mTileOriginX + mTilesWide ||
+         tileY < mTileOriginY || tileY >= mTileOriginY + mTilesHigh )
+    {
+      if ( value == EMPTY )
+      {
+        //  Nothing to record
+        return;
+      }
+
+      growToInclude(tileX, tileY);
+    }
+
+    int tileIndex = (tileY - mTileOriginY)*mTilesWide + (tileX - mTileOriginX);
+    int[] tile = mTiles[tileIndex];
+
+    if ( tile == null )
+    {
+      if ( value == EMPTY )
+      {
+        return;
+      }
+
+      tile = new int[TILE_SIZE*TILE_SIZE];
+      Arrays.fill(tile, EMPTY);
+      mTiles[tileIndex] = tile;
+    }
+
+    tile[((y & TILE_MASK) << TILE_SHIFT) | (x & TILE_MASK)] = value;
+  }
+
+  //  Grow the tile directory so that it includes the specified tile, at least doubling
+  //  it in the direction of growth so that the cost of incremental growth is amortized
+  private void growToInclude(int tileX, int tileY)
+  {
+    int newOriginX;
+    int newOriginY;
+    int newTilesWide;
+    int newTilesHigh;
+
+    if ( mTiles == null )
+    {
+      newOriginX = tileX;
+      newOriginY = tileY;
+      newTilesWide = 1;
+      newTilesHigh = 1;
+    }
+    else
+    {
+      newOriginX = mTileOriginX;
+      newOriginY = mTileOriginY;
+      newTilesWide = mTilesWide;
+      newTilesHigh = mTilesHigh;
+
+      if ( tileX < newOriginX )
+      {
+        int growth = Math.max(newOriginX - tileX, newTilesWide);
+        newOriginX -= growth;
+        newTilesWide += growth;
+      }
+      else if ( tileX >= newOriginX + newTilesWide )
+      {
+        newTilesWide += Math.max(tileX - (newOriginX + newTilesWide) + 1, newTilesWide);
+      }
+
+      if ( tileY < newOriginY )
+      {
+        int growth = Math.max(newOriginY - tileY, newTilesHigh);
+        newOriginY -= growth;
+        newTilesHigh += growth;
+      }
+      else if ( tileY >= newOriginY + newTilesHigh )
+      {
+        newTilesHigh += Math.max(tileY - (newOriginY + newTilesHigh) + 1, newTilesHigh);
+      }
+    }
+
+    int[][] newTiles = new int[newTilesWide*newTilesHigh][];
+
+    for(int y = 0; y < mTilesHigh; y++)
+    {
+      System.arraycopy(mTiles, y*mTilesWide,
+                       newTiles, (y + mTileOriginY - newOriginY)*newTilesWide + (mTileOriginX - newOriginX),
+                       mTilesWide);
+    }
+
+    mTiles = newTiles;
+    mTileOriginX = newOriginX;
+    mTileOriginY = newOriginY;
+    mTilesWide = newTilesWide;
+    mTilesHigh = newTilesHigh;
+  }
+}
@@ -0,0 +1,340 @@
+package minemarker;
+
+import java.util.List;
+
+/**
+ * Minefield implementation for dense fields, which holds one bitmap per z-layer over
+ * the (x,y) rectangle occupied by the field.  Torpedo column clears are a bit test
+ * and clear per layer, region clears and mine counting work a 64-bit word at a time,
+ * and the Z projection is found by scanning down the layers for the first set bit.
+ * The rectangle and set of layers grow as necessary to accommodate added mines, but
+ * the expected use is for the dimensions to be known up front (see the sizing
+ * constructor), as they are when parsing a minefield file
+ * @author steve
+ *
+ */
+public class LayeredBitmapMinefield extends AbstractMinefield
+{
+  private static final int WORD_SHIFT = 6;
+  private static final int WORD_MASK = (1 << WORD_SHIFT) - 1;
+
+  //  Bitmap for layer z is mLayers[z - mOriginZ], with (x,y) at bit index
+  //  (y - mOriginY)*mWidth + (x - mOriginX).  Layers with no mines may be null
+  private long[][] mLayers = new long[0][];
+  private int      mOriginX = 0;
+  private int      mOriginY = 0;
+  private int      mOriginZ = 0;
+  private int      mWidth = 0;
+  private int      mHeight = 0;
+  private int      mNumMines = 0;
+
+  /**
+   * Construct an empty minefield
+   */
+  public LayeredBitmapMinefield()
+  {
+  }
+
+  /**
+   * Construct an empty minefield sized for mines in the rectangle from (0,0) to
+   * (width-1,height-1)
+   * @param width expected extent of the minefield in x
+   * @param height expected extent of the minefield in y
+   */
+  public LayeredBitmapMinefield(int width, int height)
+  {
+    if ( (long)width*height > (long)Integer.MAX_VALUE )
+    {
+      throw new IllegalArgumentException("Minefield area " + width + "x" + height + " too large for bitmap representation");
+    }
+
+    mWidth = width;
+    mHeight = height;
+  }
+
+  @Override
+  public void addMine(int x, int y, int z)
+  {
+    checkChangeable();
+    ensureCovers(x, y, z);
+
+    long[] layer = mLayers[z - mOriginZ];
+    if ( layer == null )
+    {
+      layer = new long[wordsPerLayer()];
+      mLayers[z - mOriginZ] = layer;
+    }
+
+    int bit = bitIndex(x, y);
+    long mask = 1L << (bit & WORD_MASK);
+    if ( (layer[bit >>> WORD_SHIFT] & mask) == 0 )
+    {
+      layer[bit >>> WORD_SHIFT] |= mask;
+      mNumMines++;
+      mineAdded(x, y, z);
+    }
+  }
+
+  @Override
+  public void clearRegion(Cuboid xiRegion)
+  {
+    checkChangeable();
+
+    Cuboid boundingCuboid = getBoundingCuboid();
+
+    if ( boundingCuboid == null )
+    {
+      return;
+    }
+
+    //  Only the part of the region within the current bounds can contain any mines
+    int minX = Math.max(xiRegion.getNorthWestTop().getX(), boundingCuboid.getNorthWestTop().getX());
+    int minY = Math.max(xiRegion.getNorthWestTop().getY(), boundingCuboid.getNorthWestTop().getY());
+    int minZ = Math.max(xiRegion.getNorthWestTop().getZ(), boundingCuboid.getNorthWestTop().getZ());
+    int maxX = Math.min(xiRegion.getSouthEastBottom().getX(), boundingCuboid.getSouthEastBottom().getX());
+    int maxY = Math.min(xiRegion.getSouthEastBottom().getY(), boundingCuboid.getSouthEastBottom().getY());
+    int maxZ = Math.min(xiRegion.getSouthEastBottom().getZ(), boundingCuboid.getSouthEastBottom().getZ());
+
+    if ( minX > maxX || minY > maxY )
+    {
+      return;
+    }
+
+    for(int z = minZ; z <= maxZ; z++)
+    {
+      long[] layer = mLayers[z - mOriginZ];
+
+      if ( layer != null )
+      {
+        for(int y = minY; y <= maxY; y++)
+        {
+          clearRowSpan(layer, y, z, minX, maxX);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void clearColumns(List<Point> xiColumnTops)
+  {
+    checkChangeable();
+
+    int bottomZ = getDeepestZ();
+
+    for(Point columnTop : xiColumnTops)
+    {
+      int x = columnTop.getX();
+      int y = columnTop.getY();
+
+      if ( isInRectangle(x, y) )
+      {
+        int bit = bitIndex(x, y);
+        int word = bit >>> WORD_SHIFT;
+        long mask = 1L << (bit & WORD_MASK);
+
+        for(int z = Math.max(columnTop.getZ(), mOriginZ); z <= bottomZ; z++)
+        {
+          long[] layer = mLayers[z - mOriginZ];
+
+          if ( layer != null && (layer[word] & mask) != 0 )
+          {
+            layer[word] &= ~mask;
+            mNumMines--;
+            mineRemoved(x, y, z);
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public int getNumMines()
+  {
+    return mNumMines;
+  }
+
+  @Override
+  public boolean containsMine(int x, int y, int z)
+  {
+    if ( !isInRectangle(x, y) || z < mOriginZ || z >= mOriginZ + mLayers.length )
+    {
+      return false;
+    }
+
+    long[] layer = mLayers[z - mOriginZ];
+    int bit = bitIndex(x, y);
+
+    return (layer != null && (layer[bit >>> WORD_SHIFT] & (1L << (bit & WORD_MASK))) != 0);
+  }
+
+  @Override
+  protected int findShallowestMineZ(int x, int y)
+  {
+    if ( isInRectangle(x, y) )
+    {
+      int bit = bitIndex(x, y);
+      int word = bit >>> WORD_SHIFT;
+      long mask = 1L << (bit & WORD_MASK);
+      int bottomZ = getDeepestZ();
+
+      //  There are no layers to scan if the field is empty (shallowest z is then Integer.MAX_VALUE)
+      for(int z = getShallowestZ(); z <= bottomZ; z++)
+      {
+        long[] layer = mLayers[z - mOriginZ];
+
+        if ( layer != null && (layer[word] & mask) != 0 )
+        {
+          return z;
+        }
+      }
+    }
+
+    return NO_MINE;
+  }
+
+  //  Clear the bits for (minX..maxX,y) in a layer a word at a time, reporting each mine removed
+  private void clearRowSpan(long[] layer, int y, int z, int minX, int maxX)
+  {
+    int firstBit = bitIndex(minX, y);
+    int lastBit = bitIndex(maxX, y);
+
+    for(int word = firstBit >>> WORD_SHIFT; word <= lastBit >>> WORD_SHIFT; word++)
+    {
+      long mask = -1L;
+
+      if ( word == firstBit >>> WORD_SHIFT )
+      {
+        mask &= (-1L << (firstBit & WORD_MASK));
+      }
+      if ( word == lastBit >>> WORD_SHIFT )
+      {
+        mask &= (-1L >>> (WORD_MASK - (lastBit & WORD_MASK)));
+      }
+
+      long cleared = layer[word] & mask;
+
+      if ( cleared != 0 )
+      {
+        layer[word] &= ~mask;
+        mNumMines -= Long.bitCount(cleared);
+
+        //  Visit each cleared bit to keep the bounds and projection up to date
+        while ( cleared != 0 )
+        {
+          int bit = (word << WORD_SHIFT) + Long.numberOfTrailingZeros(cleared);
+
+          mineRemoved(mOriginX + bit % mWidth, y, z);
+          cleared &= (cleared - 1);
+        }
+      }
+    }
+  }
+
+  private boolean isInRectangle(int x, int y)
+  {
+    return (x >= mOriginX && x < mOriginX + mWidth && y >= mOriginY && y < mOriginY + mHeight);
+  }
+
+  private int bitIndex(int x, int y)
+  {
+    return (y - mOriginY)*mWidth + (x - mOriginX);
+  }
+
+  private int wordsPerLayer()
+  {
+    return (int)(((long)mWidth*mHeight + WORD_MASK) >>> WORD_SHIFT);
+  }
+
+  //  Grow the rectangle and/or set of layers as necessary so as to cover the specified point
+  private void ensureCovers(int x, int y, int z)
+  {
+    if ( mLayers.length == 0 || z < mOriginZ || z >= mOriginZ + mLayers.length )
+    {
+      if ( mLayers.length == 0 )
+      {
+        mLayers = new long[1][];
+        mOriginZ = z;
+      }
+      else
+      {
+        int newOriginZ = Math.min(z, mOriginZ);
+        long[][] newLayers = new long[Math.max(z, mOriginZ + mLayers.length - 1) - newOriginZ + 1][];
+
+        System.arraycopy(mLayers, 0, newLayers, mOriginZ - newOriginZ, mLayers.length);
+        mLayers = newLayers;
+        mOriginZ = newOriginZ;
+      }
+    }
+
+    if ( !isInRectangle(x, y) )
+    {
+      int newOriginX;
+      int newOriginY;
+      int newWidth;
+      int newHeight;
+
+      if ( mWidth == 0 || mHeight == 0 )
+      {
+        newOriginX = (mWidth == 0 ? x : Math.min(x, mOriginX));
+        newOriginY = (mHeight == 0 ? y : Math.min(y, mOriginY));
+        newWidth = (mWidth == 0 ? 1 : Math.max(x + 1, mOriginX + mWidth) - newOriginX);
+        newHeight = (mHeight == 0 ? 1 : Math.max(y + 1, mOriginY + mHeight) - newOriginY);
+      }
+      else
+      {
+        //  Grow by at least half the current size in any direction that must grow, so
+        //  that the cost of incrementally growing a field is amortized
+        newOriginX = (x < mOriginX ? Math.min(x, mOriginX - mWidth/2) : mOriginX);
+        newOriginY = (y < mOriginY ? Math.min(y, mOriginY - mHeight/2) : mOriginY);
+        newWidth = (x >= mOriginX + mWidth ? Math.max(x + 1, mOriginX + mWidth + mWidth/2) : mOriginX + mWidth) - newOriginX;
+        newHeight = (y >= mOriginY + mHeight ? Math.max(y + 1, mOriginY + mHeight + mHeight/2) : mOriginY + mHeight) - newOriginY;
+      }
+
+      if ( (long)newWidth*newHeight > (long)Integer.MAX_VALUE )
+      {
+        throw new IllegalArgumentException("Minefield area too large for bitmap representation adding mine at (" + x + "," + y + "," + z + ")");
+      }
+
+      relayout(newOriginX, newOriginY, newWidth, newHeight);
+    }
+  }
+
+  //  Copy every layer into bitmaps for a new (enclosing) rectangle
+  private void relayout(int newOriginX, int newOriginY, int newWidth, int newHeight)
+  {
+    int oldOriginX = mOriginX;
+    int oldOriginY = mOriginY;
+    int oldWidth = mWidth;
+
+    mOriginX = newOriginX;
+    mOriginY = newOriginY;
+    mWidth = newWidth;
+    mHeight = newHeight;
+
+    for(int layerIndex = 0; layerIndex < mLayers.length; layerIndex++)
+    {
+      long[] oldLayer = mLayers[layerIndex];
+
+      if ( oldLayer != null )
+      {
+        long[] newLayer = new long[wordsPerLayer()];
+
+        for(int word = 0; word < oldLayer.length; word++)
+        {
+          long bits = oldLayer[word];
+
+          while ( bits != 0 )
+          {
+            int oldBit = (word << WORD_SHIFT) + Long.numberOfTrailingZeros(bits);
+            int newBit = bitIndex(oldOriginX + oldBit % oldWidth, oldOriginY + oldBit / oldWidth);
+
+            newLayer[newBit >>> WORD_SHIFT] |= 1L << (newBit & WORD_MASK);
+            bits &= (bits - 1);
+          }
+        }
+
+        mLayers[layerIndex] = newLayer;
+      }
+    }
+  }
+}
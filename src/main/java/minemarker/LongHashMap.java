@@ -0,0 +1,72 @@
+package minemarker;
+
+/**
+ * Open-addressing hash map from primitive longs to values, over the table of
+ * LongHashTable.  Lookups take the key as a primitive, so unlike a HashMap keyed by
+ * objects nothing is allocated to look a value up
+ * @author steve
+ *
+ * @param <V> type of the values
+ */
+class LongHashMap<V> extends LongHashTable
+{
+  /**
+   * Construct an empty map
+   */
+  LongHashMap()
+  {
+    super(0, true);
+  }
+
+  /**
+   * @param key key to look up
+   * @return value for the key, or null if it is not present
+   */
+  @SuppressWarnings("unchecked")
+  V get(long key)
+  {
+    int index = indexOf(key);
+
+    return (index < 0 ? null : (V)mValues[index]);
+  }
+
+  /**
+   * @param key key to set the value for
+   * @param value value to set, which must not be null
+   * @return previous value for the key, or null if it was not present
+   */
+  @SuppressWarnings("unchecked")
+  V put(long key, V value)
+  {
+    int index = insert(key);
+
+    if ( index < 0 )
+    {
+      mValues[~index] = value;
+      return null;
+    }
+
+    Object previous = mValues[index];
+    mValues[index] = value;
+    return (V)previous;
+  }
+
+  /**
+   * @param key key to remove
+   * @return value the key had, or null if it was not present
+   */
+  @SuppressWarnings("unchecked")
+  V remove(long key)
+  {
+    int index = indexOf(key);
+
+    if ( index < 0 )
+    {
+      return null;
+    }
+
+    Object previous = mValues[index];
+    delete(key);
+    return (V)previous;
+  }
+}
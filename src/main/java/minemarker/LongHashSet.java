@@ -0,0 +1,57 @@
+package minemarker;
+
+/**
+ * Open-addressing hash set of primitive longs, over the table of LongHashTable.  This
+ * stores nothing but the keys themselves, so there is no per-entry object allocation as
+ * there is for a HashSet of boxed values
+ * @author steve
+ *
+ */
+class LongHashSet extends LongHashTable
+{
+  /**
+   * Construct an empty set
+   */
+  LongHashSet()
+  {
+    this(0);
+  }
+
+  /**
+   * Construct an empty set sized to hold a given number of keys without resizing
+   * @param expectedSize number of keys expected
+   * @throws IllegalArgumentException if more keys are expected than a set can hold
+   */
+  LongHashSet(int expectedSize)
+  {
+    super(expectedSize, false);
+  }
+
+  /**
+   * @param key key to test for
+   * @return true if the key is a member of the set
+   */
+  boolean contains(long key)
+  {
+    return (indexOf(key) >= 0);
+  }
+
+  /**
+   * @param key key to add
+   * @return true if the key was not already present
+   * @throws IllegalStateException if the set already holds as many keys as it can
+   */
+  boolean add(long key)
+  {
+    return (insert(key) < 0);
+  }
+
+  /**
+   * @param key key to remove
+   * @return true if the key was present
+   */
+  boolean remove(long key)
+  {
+    return delete(key);
+  }
+}
@@ -0,0 +1,285 @@
+package minemarker;
+
+/**
+ * Open-addressing hash table of primitive long keys, using linear probing and
+ * backward-shift deletion, which is the common core of LongHashSet and LongHashMap.
+ * Keys are held in a primitive array, and for a map the values in a parallel one, so
+ * there is no per-entry object allocation as there is for a HashSet or HashMap of boxed
+ * keys.  Lookups are by slot index, which subclasses use to reach the value of a key
+ * @author steve
+ *
+ */
+abstract class LongHashTable
+{
+  //  Key value used to mark free slots.  Since it is also a legal key in its own right
+  //  its presence is recorded separately, and its value (if any) is held in the extra
+  //  slot at the end of the values array
+  private static final long FREE = 0L;
+  private static final int  MIN_CAPACITY = 16;
+  //  Largest power of two an array can hold, so at most half as many keys
+  private static final int  MAX_CAPACITY = 1 << 30;
+  private static final int  MAX_SIZE = MAX_CAPACITY/2;
+
+  private long[]            mKeys;
+  private int               mMask;
+  private int               mSize = 0;
+  private boolean           mContainsFreeKey = false;
+
+  /**
+   * Values of the keys, indexed as the keys, or null if the table holds only keys
+   */
+  protected Object[]        mValues;
+
+  /**
+   * Construct an empty table sized to hold a given number of keys without resizing
+   * @param expectedSize number of keys expected
+   * @param withValues whether a value is held for each key
+   * @throws IllegalArgumentException if more keys are expected than a table can hold
+   */
+  LongHashTable(int expectedSize, boolean withValues)
+  {
+    if ( expectedSize > MAX_SIZE )
+    {
+      throw new IllegalArgumentException("A table cannot hold " + expectedSize + " keys (at most " + MAX_SIZE + ")");
+    }
+
+    int capacity = MIN_CAPACITY;
+
+    //  Keep the load factor at or below 1/2
+    while ( capacity < 2L*expectedSize )
+    {
+      capacity <<= 1;
+    }
+
+    mKeys = new long[capacity];
+    mMask = capacity - 1;
+    mValues = (withValues ? new Object[capacity + 1] : null);
+  }
+
+  /**
+   * @return number of slots in the table
+   */
+  int capacity()
+  {
+    return mKeys.length;
+  }
+
+  /**
+   * @return number of keys in the table
+   */
+  int size()
+  {
+    return mSize;
+  }
+
+  /**
+   * Find the index of a key, from which its value can be reached
+   * @param key key to find
+   * @return index of the key, or -1 if it is not present
+   */
+  int indexOf(long key)
+  {
+    if ( key == FREE )
+    {
+      return (mContainsFreeKey ? mKeys.length : -1);
+    }
+
+    for(int slot = slotFor(key); mKeys[slot] != FREE; slot = (slot + 1) & mMask)
+    {
+      if ( mKeys[slot] == key )
+      {
+        return slot;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Add a key if it is not already present
+   * @param key key to add
+   * @return index of the key if it was already present, or the complement (~) of its
+   *         index if it has been added (with a null value)
+   * @throws IllegalStateException if the table already holds as many keys as it can
+   */
+  int insert(long key)
+  {
+    if ( key == FREE )
+    {
+      if ( mContainsFreeKey )
+      {
+        return mKeys.length;
+      }
+
+      mContainsFreeKey = true;
+      mSize++;
+      return ~mKeys.length;
+    }
+
+    int slot = slotFor(key);
+    while ( mKeys[slot] != FREE )
+    {
+      if ( mKeys[slot] == key )
+      {
+        return slot;
+      }
+      slot = (slot + 1) & mMask;
+    }
+
+    if ( mSize == MAX_SIZE )
+    {
+      throw new IllegalStateException("A table cannot hold more than " + MAX_SIZE + " keys");
+    }
+
+    mKeys[slot] = key;
+    mSize++;
+
+    if ( 2*mSize > mKeys.length )
+    {
+      resize(mKeys.length*2);
+      slot = indexOf(key);
+    }
+
+    return ~slot;
+  }
+
+  /**
+   * @param key key to remove (along with its value)
+   * @return true if the key was present
+   */
+  boolean delete(long key)
+  {
+    if ( key == FREE )
+    {
+      if ( !mContainsFreeKey )
+      {
+        return false;
+      }
+
+      mContainsFreeKey = false;
+      mSize--;
+      if ( mValues != null )
+      {
+        mValues[mKeys.length] = null;
+      }
+      return true;
+    }
+
+    int slot = slotFor(key);
+    while ( mKeys[slot] != key )
+    {
+      if ( mKeys[slot] == FREE )
+      {
+        return false;
+      }
+      slot = (slot + 1) & mMask;
+    }
+
+    //  Shift back any following entries of the probe run that would otherwise become
+    //  unreachable, so that no tombstones are needed
+    int gap = slot;
+    for(slot = (gap + 1) & mMask; mKeys[slot] != FREE; slot = (slot + 1) & mMask)
+    {
+      int home = slotFor(mKeys[slot]);
+
+      //  The entry can fill the gap if its home slot is not cyclically within (gap, slot]
+      if ( ((slot - home) & mMask) >= ((slot - gap) & mMask) )
+      {
+        mKeys[gap] = mKeys[slot];
+        if ( mValues != null )
+        {
+          mValues[gap] = mValues[slot];
+        }
+        gap = slot;
+      }
+    }
+
+    mKeys[gap] = FREE;
+    if ( mValues != null )
+    {
+      mValues[gap] = null;
+    }
+    mSize--;
+
+    return true;
+  }
+
+  /**
+   * Copy all keys in the table into an array, so that the table can be changed while
+   * they are visited
+   * @return array of the keys, in no particular order
+   */
+  long[] keys()
+  {
+    long[] result = new long[mSize];
+    int index = 0;
+
+    if ( mContainsFreeKey )
+    {
+      result[index++] = FREE;
+    }
+
+    for(long key : mKeys)
+    {
+      if ( key != FREE )
+      {
+        result[index++] = key;
+      }
+    }
+
+    return result;
+  }
+
+  private void resize(int newCapacity)
+  {
+    long[] oldKeys = mKeys;
+    Object[] oldValues = mValues;
+
+    mKeys = new long[newCapacity];
+    mMask = newCapacity - 1;
+
+    if ( oldValues != null )
+    {
+      mValues = new Object[newCapacity + 1];
+      mValues[newCapacity] = oldValues[oldKeys.length];
+    }
+
+    for(int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++)
+    {
+      if ( oldKeys[oldSlot] != FREE )
+      {
+        int slot = slotFor(oldKeys[oldSlot]);
+        while ( mKeys[slot] != FREE )
+        {
+          slot = (slot + 1) & mMask;
+        }
+        mKeys[slot] = oldKeys[oldSlot];
+        if ( oldValues != null )
+        {
+          mValues[slot] = oldValues[oldSlot];
+        }
+      }
+    }
+  }
+
+  /**
+   * Home slot of a key - the slot its probe run starts from.  Packed coordinates are far
+   * from uniformly distributed in their low bits, so they are mixed thoroughly (64-bit
+   * finalizer from MurmurHash3) before the slot is taken.  Package-private so that tests
+   * can construct probe runs that wrap around the end of the table
+   * @param key key to find the home slot of
+   * @return index of the slot
+   */
+  int slotFor(long key)
+  {
+    long hash = key;
+
+    hash ^= (hash >>> 33);
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= (hash >>> 33);
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= (hash >>> 33);
+
+    return (int)hash & mMask;
+  }
+}
@@ -0,0 +1,553 @@
+package minemarker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Minefield specification file accessed via memory mapping, and parsed by scanning
+ * its bytes directly.  This avoids materializing the file as Strings, which for very
+ * large generated minefields dominates the cost of loading them.  Line splitting and
+ * validation follow exactly the same rules (and produce the same errors) as parsing
+ * the lines as read by FileHelper.readLines().  Large files are split into row-aligned
+ * chunks which are validated, and then have their mines packed, concurrently on a shared
+ * fork/join pool.  Minefields are not thread safe, so the packed mines are then added
+ * to a minefield in bulk from the one thread
+ * @author steve
+ *
+ */
+class MappedMinefieldFile
+{
+  //  Files are mapped in regions of at most this size (mapped buffers are int-indexed)
+  private static final int   REGION_SIZE = 1 << 30;
+
+  //  Files are only split for concurrent scanning into chunks of at least this size
+  private static final long  MIN_CHUNK_SIZE = 1 << 20;
+
+  //  Pool the chunks of large files are scanned on, which is shared by all files (its
+  //  threads are daemons, so it never holds up exit)
+  private static final ForkJoinPool POOL = new ForkJoinPool();
+
+  //  Depth of the mine represented by each byte value, with 0 for an empty location
+  //  and -1 for anything that is not legal in a minefield specification
+  private static final int[] DEPTHS = new int[256];
+
+  static
+  {
+    for(int i = 0; i < DEPTHS.length; i++)
+    {
+      if ( i >= 'a' && i <= 'z' )
+      {
+        DEPTHS[i] = i - 'a' + 1;
+      }
+      else if ( i >= 'A' && i <= 'Z' )
+      {
+        DEPTHS[i] = i - 'A' + 27;
+      }
+      else
+      {
+        DEPTHS[i] = (i == '.' ? 0 : -1);
+      }
+    }
+  }
+
+  private final ByteBuffer[] mRegions;
+  private final long         mSize;
+  private int                mWidth = -1;
+  private int                mHeight = 0;
+  private int                mNumMines = 0;
+  private List<ChunkScan>    mChunks = null;
+
+  /**
+   * Map a minefield specification file
+   * @param filename file to map
+   * @throws IOException
+   */
+  MappedMinefieldFile(String filename) throws IOException
+  {
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ))
+    {
+      mSize = channel.size();
+      mRegions = new ByteBuffer[(int)((mSize + REGION_SIZE - 1)/REGION_SIZE)];
+
+      for(int region = 0; region < mRegions.length; region++)
+      {
+        long regionStart = (long)region*REGION_SIZE;
+        mRegions[region] = channel.map(MapMode.READ_ONLY, regionStart, Math.min(REGION_SIZE, mSize - regionStart));
+      }
+    }
+  }
+
+  /**
+   * Wrap a minefield specification already in memory, to be parsed just as a file would be
+   * @param content bytes of the specification
+   */
+  MappedMinefieldFile(ByteBuffer content)
+  {
+    mSize = content.remaining();
+    mRegions = new ByteBuffer[(int)((mSize + REGION_SIZE - 1)/REGION_SIZE)];
+
+    for(int region = 0; region < mRegions.length; region++)
+    {
+      ByteBuffer slice = content.duplicate();
+      int regionStart = content.position() + region*REGION_SIZE;
+
+      slice.position(regionStart);
+      slice.limit((int)Math.min(regionStart + (long)REGION_SIZE, content.limit()));
+      mRegions[region] = slice.slice();
+    }
+  }
+
+  /**
+   * @return width of the minefield (valid after validate())
+   */
+  int getWidth()
+  {
+    return mWidth;
+  }
+
+  /**
+   * @return height of the minefield (valid after validate())
+   */
+  int getHeight()
+  {
+    return mHeight;
+  }
+
+  /**
+   * @return number of mines in the minefield (valid after validate())
+   */
+  int getNumMines()
+  {
+    return mNumMines;
+  }
+
+  /**
+   * Scan the file, checking it is a valid minefield specification and determining
+   * its dimensions and number of mines.  Large files are split into row-aligned chunks
+   * which are scanned concurrently, with the results then merged in file order so that
+   * errors are reported exactly as a sequential scan would report them
+   * @throws MinefieldFileParseException
+   */
+  void validate() throws MinefieldFileParseException
+  {
+    List<ChunkScan> chunks = splitIntoChunks();
+
+    invokeAll(chunks);
+
+    for(ChunkScan chunk : chunks)
+    {
+      chunk.mFirstY = mHeight;
+      chunk.mFirstMine = mNumMines;
+
+      if ( chunk.mNumLines > 0 )
+      {
+        //  The first line of each chunk can only be checked against the width established
+        //  by the first line of the file, which happens before anything else in the chunk
+        if ( mWidth == -1 )
+        {
+          if ( chunk.mFirstLineWidth == 0 )
+          {
+            throw new MinefieldFileParseException("Minefield specification contains blank lines");
+          }
+          mWidth = chunk.mFirstLineWidth;
+        }
+        else if ( chunk.mFirstLineWidth != mWidth )
+        {
+          throw new MinefieldFileParseException("Minefield specification contains lines with an inconsistent width");
+        }
+      }
+
+      if ( chunk.mErrorLine != -1 )
+      {
+        if ( chunk.mErrorText == null )
+        {
+          throw new MinefieldFileParseException("Minefield specification contains lines with an inconsistent width");
+        }
+
+        throw new MinefieldFileParseException("Minefield specification contains illegal character '" + chunk.mErrorChar + "' in line " + (mHeight + chunk.mErrorLine + 1) + ": " + chunk.mErrorText);
+      }
+
+      mHeight += chunk.mNumLines;
+      mNumMines += chunk.mNumMines;
+    }
+
+    if ( mHeight == 0 )
+    {
+      throw new MinefieldFileParseException("No minefield specified!");
+    }
+
+    //  We don't allow minefields with no mines as the spec. definition doesn't really provide for sensible
+    //  (or at least useful) handling of this case
+    if ( mNumMines == 0 )
+    {
+      throw new MinefieldFileParseException("Illegal minefield specification defines no mines");
+    }
+
+    mChunks = chunks;
+  }
+
+  /**
+   * Add the mines specified by the (previously validated) file to a minefield, in the
+   * order they are specified.  The mines of a file split into several chunks are packed
+   * concurrently and then added in bulk, unless the field is too large to pack
+   * @param minefield minefield to populate
+   */
+  void populate(Minefield minefield)
+  {
+    if ( mChunks.size() > 1 && mWidth - 1 <= PackedPoint.MAX_XY && mHeight - 1 <= PackedPoint.MAX_XY )
+    {
+      LongBuffer packed = LongBuffer.allocate(mNumMines);
+
+      packMines(packed);
+      packed.flip();
+      minefield.addMines(packed);
+    }
+    else
+    {
+      scanMines(0, mSize, 0, minefield, null, 0);
+    }
+  }
+
+  /**
+   * Pack the coordinates of the mines specified by the (previously validated) file, in
+   * the order populate() would add them, concurrently for a file split into several
+   * chunks.  The caller must check they are packable
+   * @param destination buffer to put the packed coordinates of each mine into, from its
+   * position on (which is advanced past them)
+   */
+  void packMines(LongBuffer destination)
+  {
+    List<ChunkPack> packs = new ArrayList<>();
+
+    for(ChunkScan chunk : mChunks)
+    {
+      packs.add(new ChunkPack(chunk, destination, destination.position() + chunk.mFirstMine));
+    }
+
+    invokeAll(packs);
+    destination.position(destination.position() + mNumMines);
+  }
+
+  /**
+   * Add the whole content of the file to a digest
+   * @param digest digest to update
+   */
+  void digest(MessageDigest digest)
+  {
+    for(ByteBuffer buffer : mRegions)
+    {
+      digest.update(buffer.duplicate());
+    }
+  }
+
+  //  Add each mine of a row-aligned range of the file, starting at a given y, to a
+  //  minefield, or put its packed coordinates into a buffer from a given index on
+  private void scanMines(long start, long end, int firstY, Minefield minefield, LongBuffer packed, int packedIndex)
+  {
+    int x = 0;
+    int y = firstY;
+    int index = packedIndex;
+    boolean afterCarriageReturn = false;
+
+    for(int region = (int)(start/REGION_SIZE); (long)region*REGION_SIZE < end; region++)
+    {
+      //  Each scan uses its own view of the (shared) mapped region
+      ByteBuffer buffer = mRegions[region].duplicate();
+      long regionStart = (long)region*REGION_SIZE;
+      int from = (int)(Math.max(start, regionStart) - regionStart);
+      int limit = (int)(Math.min(end, regionStart + buffer.limit()) - regionStart);
+
+      for(int offset = from; offset < limit; offset++)
+      {
+        int b = buffer.get(offset) & 0xff;
+
+        if ( b == '\n' || b == '\r' )
+        {
+          if ( !(b == '\n' && afterCarriageReturn) )
+          {
+            y++;
+          }
+
+          afterCarriageReturn = (b == '\r');
+          x = 0;
+        }
+        else
+        {
+          int depth = DEPTHS[b];
+
+          afterCarriageReturn = false;
+          if ( depth > 0 )
+          {
+            if ( minefield != null )
+            {
+              minefield.addMine(x, y, depth);
+            }
+            else
+            {
+              //  Absolute puts, so that chunks can fill their own parts of the buffer concurrently
+              packed.put(index++, PackedPoint.pack(x, y, depth));
+            }
+          }
+          x++;
+        }
+      }
+    }
+  }
+
+  //  Run scans of chunks of the file, concurrently if there is more than one.  The tasks
+  //  are started and joined explicitly, as they may be from a thread outside the pool
+  private static void invokeAll(List<? extends ForkJoinTask<?>> tasks)
+  {
+    if ( tasks.size() == 1 )
+    {
+      tasks.get(0).invoke();
+      return;
+    }
+
+    for(ForkJoinTask<?> task : tasks)
+    {
+      POOL.execute(task);
+    }
+
+    for(ForkJoinTask<?> task : tasks)
+    {
+      task.join();
+    }
+  }
+
+  //  Divide the file into chunks, each ending immediately after a line terminator (or at
+  //  the end of the file), of roughly equal size but no smaller than MIN_CHUNK_SIZE
+  private List<ChunkScan> splitIntoChunks()
+  {
+    List<ChunkScan> result = new ArrayList<>();
+    long numChunks = Math.max(1, Math.min(mSize/MIN_CHUNK_SIZE, 4*POOL.getParallelism()));
+    long chunkStart = 0;
+
+    for(long chunk = 1; chunk <= numChunks && chunkStart < mSize; chunk++)
+    {
+      long chunkEnd = (chunk == numChunks ? mSize : lineBoundaryAtOrAfter(Math.max(chunkStart, mSize*chunk/numChunks)));
+
+      if ( chunkEnd > chunkStart )
+      {
+        result.add(new ChunkScan(chunkStart, chunkEnd));
+        chunkStart = chunkEnd;
+      }
+    }
+
+    //  An empty file still needs its (empty) scan
+    if ( result.isEmpty() )
+    {
+      result.add(new ChunkScan(0, 0));
+    }
+
+    return result;
+  }
+
+  //  Offset of the start of the first line beginning at or after a specified offset
+  private long lineBoundaryAtOrAfter(long offset)
+  {
+    for(long position = offset; position < mSize; position++)
+    {
+      int b = byteAt(position);
+
+      if ( b == '\n' )
+      {
+        return position + 1;
+      }
+      else if ( b == '\r' )
+      {
+        //  A CR LF pair is a single line terminator, which must not be split
+        return (position + 1 < mSize && byteAt(position + 1) == '\n' ? position + 2 : position + 1);
+      }
+    }
+
+    return mSize;
+  }
+
+  private int byteAt(long offset)
+  {
+    return mRegions[(int)(offset/REGION_SIZE)].get((int)(offset % REGION_SIZE)) & 0xff;
+  }
+
+  /**
+   * Scan of one row-aligned chunk of the file.  Each line of the chunk is checked against
+   * the chunk's own first line, which the merge in validate() in turn checks against the
+   * first line of the file.  Scanning stops at the first error found in the chunk, which
+   * is recorded by (chunk relative) line index to be reported once its absolute line
+   * number is known
+   */
+  private class ChunkScan extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final long mStart;
+    private final long mEnd;
+    private int        mFirstY = 0;
+    private int        mFirstMine = 0;
+    private int        mNumLines = 0;
+    private int        mFirstLineWidth = -1;
+    private int        mNumMines = 0;
+    private int        mErrorLine = -1;
+    private char       mErrorChar;
+    private String     mErrorText = null;
+
+    ChunkScan(long start, long end)
+    {
+      mStart = start;
+      mEnd = end;
+    }
+
+    @Override
+    protected void compute()
+    {
+      long lineStart = mStart;
+      int lineLength = 0;
+      int firstIllegal = -1;
+      boolean afterCarriageReturn = false;
+
+      for(int region = (int)(mStart/REGION_SIZE); (long)region*REGION_SIZE < mEnd; region++)
+      {
+        //  Each scan uses its own view of the (shared) mapped region
+        ByteBuffer buffer = mRegions[region].duplicate();
+        long regionStart = (long)region*REGION_SIZE;
+        int from = (int)(Math.max(mStart, regionStart) - regionStart);
+        int limit = (int)(Math.min(mEnd, regionStart + buffer.limit()) - regionStart);
+
+        for(int index = from; index < limit; index++)
+        {
+          int b = buffer.get(index) & 0xff;
+
+          if ( b == '\n' || b == '\r' )
+          {
+            //  A CR LF pair is a single line terminator
+            if ( !(b == '\n' && afterCarriageReturn) && !endLine(lineStart, lineLength, firstIllegal) )
+            {
+              return;
+            }
+
+            afterCarriageReturn = (b == '\r');
+            lineStart = regionStart + index + 1;
+            lineLength = 0;
+            firstIllegal = -1;
+          }
+          else
+          {
+            int depth = DEPTHS[b];
+
+            afterCarriageReturn = false;
+            if ( depth > 0 )
+            {
+              mNumMines++;
+            }
+            else if ( depth < 0 && firstIllegal == -1 )
+            {
+              firstIllegal = lineLength;
+            }
+            lineLength++;
+          }
+        }
+      }
+
+      //  A final line need not be terminated
+      if ( lineStart < mEnd )
+      {
+        endLine(lineStart, lineLength, firstIllegal);
+      }
+    }
+
+    //  Complete validation of one line, given its length and the position of the first
+    //  illegal byte in it (if any), returning false if the line is in error
+    private boolean endLine(long lineStart, int lineLength, int firstIllegal)
+    {
+      int lineIndex = mNumLines++;
+      String lineText = null;
+
+      if ( firstIllegal != -1 )
+      {
+        //  Only ASCII bytes are legal, but any others may be part of a multi-byte character
+        //  which changes the line's length in characters, so we need the line as text
+        lineText = decodeLine(lineStart, lineLength);
+        lineLength = lineText.length();
+      }
+
+      if ( lineIndex == 0 )
+      {
+        mFirstLineWidth = lineLength;
+      }
+      else if ( lineLength != mFirstLineWidth )
+      {
+        mErrorLine = lineIndex;
+        return false;
+      }
+
+      if ( lineText != null )
+      {
+        for(int x = 0; x < lineText.length(); x++)
+        {
+          char mineChar = lineText.charAt(x);
+          if ( mineChar >= DEPTHS.length || DEPTHS[mineChar] < 0 )
+          {
+            mErrorLine = lineIndex;
+            mErrorChar = mineChar;
+            mErrorText = lineText;
+            return false;
+          }
+        }
+      }
+
+      return true;
+    }
+  }
+
+  /**
+   * Packing of the mines of one chunk of the file (once validated, and so once its first
+   * line and first mine are known) into its own part of a shared buffer
+   */
+  private class ChunkPack extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final ChunkScan  mChunk;
+    private final LongBuffer mDestination;
+    private final int        mIndex;
+
+    ChunkPack(ChunkScan chunk, LongBuffer destination, int index)
+    {
+      mChunk = chunk;
+      mDestination = destination;
+      mIndex = index;
+    }
+
+    @Override
+    protected void compute()
+    {
+      scanMines(mChunk.mStart, mChunk.mEnd, mChunk.mFirstY, null, mDestination, mIndex);
+    }
+  }
+
+  //  Decode a line of the file as text (in the same character set as FileHelper reads files)
+  private String decodeLine(long lineStart, int lineLength)
+  {
+    byte[] bytes = new byte[lineLength];
+
+    for(int index = 0; index < lineLength; index++)
+    {
+      long offset = lineStart + index;
+      bytes[index] = mRegions[(int)(offset/REGION_SIZE)].get((int)(offset % REGION_SIZE));
+    }
+
+    return new String(bytes, Charset.defaultCharset());
+  }
+}
@@ -0,0 +1,357 @@
+package minemarker;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of marking results, keyed by a hash of the content of the minefield and script
+ * files marked, so that resubmissions of identical jobs need not be marked again.  The
+ * content is normalised before hashing only in ways that cannot change how it is parsed
+ * (line terminators, and the presence of a terminator on the last line).  Results are
+ * held in memory, least recently used first out once a byte size bound is reached, and
+ * optionally also on disk, where they survive between runs.  The cache is thread safe
+ * @author steve
+ *
+ */
+public class MarkingCache
+{
+  //  Changing what is marked, or the output format, must change this to invalidate
+  //  results cached on disk
+  private static final String KEY_VERSION = "minemarker-1";
+  private static final String DISK_SUFFIX = ".result";
+
+  //  Approximate memory used by a cached result beyond the characters of its output
+  private static final int    ENTRY_OVERHEAD = 128;
+
+  private final long                                 mMaxMemoryBytes;
+  private final File                                 mDirectory;
+  private final LinkedHashMap<String, MarkingResult> mResults = new LinkedHashMap<>(16, 0.75f, true);
+  private long                                       mMemoryBytes = 0;
+  private long                                       mNumHits = 0;
+  private long                                       mNumDiskHits = 0;
+  private long                                       mNumMisses = 0;
+  private long                                       mNumEvictions = 0;
+
+  /**
+   * Construct a cache
+   * @param maxMemoryBytes approximate bound on the memory used by cached results
+   * @param directory directory to also cache results on disk in, or null to cache only in memory
+   */
+  public MarkingCache(long maxMemoryBytes, String directory)
+  {
+    mMaxMemoryBytes = maxMemoryBytes;
+    mDirectory = (directory == null ? null : new File(directory));
+  }
+
+  /**
+   * Determine the cache key for a job
+   * @param minefield content of the minefield specification file
+   * @param script content of the ship script file
+   * @param scoreOnly whether only the score is required, rather than the full output
+   * @return key, as a hex string
+   */
+  public static String key(byte[] minefield, byte[] script, boolean scoreOnly)
+  {
+    MessageDigest digest = sha256();
+
+    digest.update((KEY_VERSION + (scoreOnly ? " score " : " mark ") + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+    digest.update(normalisedDigest(minefield));
+    digest.update(normalisedDigest(script));
+
+    return toHex(digest.digest());
+  }
+
+  /**
+   * Mark a job, using a cached result if there is one
+   * @param minefield content of the minefield specification file
+   * @param script content of the ship script file
+   * @param scoreOnly whether only the score is required, rather than the full output
+   * @param engine minefield storage engine to use if it must be marked
+   * @return result of marking, which has no timings if it was cached
+   * @throws MinefieldFileParseException
+   * @throws ScriptException
+   * @throws ModelException
+   * @throws IOException if the disk cache cannot be accessed
+   */
+  public MarkingResult mark(byte[] minefield, byte[] script, boolean scoreOnly, MinefieldEngine engine) throws MinefieldFileParseException, ScriptException, ModelException, IOException
+  {
+    String key = key(minefield, script, scoreOnly);
+    MarkingResult result = get(key);
+
+    if ( result == null )
+    {
+      //  Jobs that fail to mark are not cached, so are simply marked (and fail) again
+      result = MarkingResult.mark(minefield, script, scoreOnly, engine);
+      put(key, result);
+    }
+
+    return result;
+  }
+
+  /**
+   * Retrieve a cached result
+   * @param key key of the job
+   * @return cached result, or null if there is none
+   * @throws IOException if the disk cache cannot be accessed
+   */
+  public MarkingResult get(String key) throws IOException
+  {
+    synchronized(this)
+    {
+      MarkingResult result = mResults.get(key);
+
+      if ( result != null )
+      {
+        mNumHits++;
+        return result;
+      }
+    }
+
+    MarkingResult result = (mDirectory == null ? null : readFromDisk(key));
+
+    synchronized(this)
+    {
+      if ( result == null )
+      {
+        mNumMisses++;
+      }
+      else
+      {
+        mNumHits++;
+        mNumDiskHits++;
+        putInMemory(key, result);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Cache a result
+   * @param key key of the job
+   * @param result result of marking it
+   * @throws IOException if the disk cache cannot be accessed
+   */
+  public void put(String key, MarkingResult result) throws IOException
+  {
+    //  Strip any timings, which are not part of the result as cached
+    MarkingResult cachedResult = new MarkingResult(result.getScore(), result.getOutput(), 0, 0);
+
+    synchronized(this)
+    {
+      putInMemory(key, cachedResult);
+    }
+
+    if ( mDirectory != null )
+    {
+      writeToDisk(key, cachedResult);
+    }
+  }
+
+  /**
+   * @return number of lookups that found a cached result (in memory or on disk)
+   */
+  public synchronized long getNumHits()
+  {
+    return mNumHits;
+  }
+
+  /**
+   * @return number of lookups that found a cached result on disk but not in memory
+   */
+  public synchronized long getNumDiskHits()
+  {
+    return mNumDiskHits;
+  }
+
+  /**
+   * @return number of lookups that found no cached result
+   */
+  public synchronized long getNumMisses()
+  {
+    return mNumMisses;
+  }
+
+  /**
+   * @return number of results evicted from memory to keep within its bound
+   */
+  public synchronized long getNumEvictions()
+  {
+    return mNumEvictions;
+  }
+
+  /**
+   * @return approximate memory currently used by cached results
+   */
+  public synchronized long getMemoryBytes()
+  {
+    return mMemoryBytes;
+  }
+
+  /**
+   * @return summary of the cache statistics
+   */
+  public synchronized String getStatistics()
+  {
+    return "Cache: " + mNumHits + " hits (" + mNumDiskHits + " from disk), " + mNumMisses + " misses, " + mNumEvictions + " evictions, " +
+           mResults.size() + " results using " + mMemoryBytes + " of " + mMaxMemoryBytes + " bytes in memory";
+  }
+
+  private void putInMemory(String key, MarkingResult result)
+  {
+    long size = size(result);
+
+    //  Results too large to ever fit are not held in memory at all
+    if ( size > mMaxMemoryBytes )
+    {
+      return;
+    }
+
+    MarkingResult replaced = mResults.put(key, result);
+
+    mMemoryBytes += size - (replaced == null ? 0 : size(replaced));
+
+    Iterator<Map.Entry<String, MarkingResult>> leastRecentlyUsed = mResults.entrySet().iterator();
+    while ( mMemoryBytes > mMaxMemoryBytes )
+    {
+      mMemoryBytes -= size(leastRecentlyUsed.next().getValue());
+      leastRecentlyUsed.remove();
+      mNumEvictions++;
+    }
+  }
+
+  //  The disk cache holds the score on the first line, followed by the output (if any)
+  private MarkingResult readFromDisk(String key) throws IOException
+  {
+    File file = new File(mDirectory, key + DISK_SUFFIX);
+
+    if ( !file.isFile() )
+    {
+      return null;
+    }
+
+    String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    int firstLineEnd = content.indexOf('\n');
+
+    try
+    {
+      if ( firstLineEnd == -1 )
+      {
+        return new MarkingResult(Integer.parseInt(content), null, 0, 0);
+      }
+
+      return new MarkingResult(Integer.parseInt(content.substring(0, firstLineEnd)), content.substring(firstLineEnd + 1), 0, 0);
+    }
+    catch (NumberFormatException e)
+    {
+      //  Not a result this cache wrote, so treat it as absent (it will be overwritten)
+      return null;
+    }
+  }
+
+  private void writeToDisk(String key, MarkingResult result) throws IOException
+  {
+    String content = Integer.toString(result.getScore()) + (result.getOutput() == null ? "" : "\n" + result.getOutput());
+    File temporaryFile = File.createTempFile(key, ".tmp", mDirectory);
+
+    //  Written to a temporary file and moved into place, so that a concurrent reader
+    //  (perhaps in another process) never sees a partially written result
+    try
+    {
+      Files.write(temporaryFile.toPath(), content.getBytes(StandardCharsets.UTF_8));
+      Files.move(temporaryFile.toPath(), new File(mDirectory, key + DISK_SUFFIX).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    finally
+    {
+      temporaryFile.delete();
+    }
+  }
+
+  private static long size(MarkingResult result)
+  {
+    return ENTRY_OVERHEAD + (result.getOutput() == null ? 0 : 2L*result.getOutput().length());
+  }
+
+  //  Digest of content with CR LF and lone CR line terminators converted to LF, and
+  //  any terminator after the last line removed
+  private static byte[] normalisedDigest(byte[] content)
+  {
+    MessageDigest digest = sha256();
+    byte[] buffer = new byte[8192];
+    int length = 0;
+    boolean pendingTerminator = false;
+
+    for(int index = 0; index < content.length; index++)
+    {
+      byte b = content[index];
+
+      if ( b == '\n' && index > 0 && content[index-1] == '\r' )
+      {
+        continue;
+      }
+
+      //  A terminator is only emitted once it is known not to be the last thing in the content
+      if ( pendingTerminator )
+      {
+        if ( length == buffer.length )
+        {
+          digest.update(buffer, 0, length);
+          length = 0;
+        }
+        buffer[length++] = '\n';
+        pendingTerminator = false;
+      }
+
+      if ( b == '\r' || b == '\n' )
+      {
+        pendingTerminator = true;
+      }
+      else
+      {
+        if ( length == buffer.length )
+        {
+          digest.update(buffer, 0, length);
+          length = 0;
+        }
+        buffer[length++] = b;
+      }
+    }
+
+    digest.update(buffer, 0, length);
+
+    return digest.digest();
+  }
+
+  //  Hex string representation of a digest
+  static String toHex(byte[] digest)
+  {
+    StringBuilder result = new StringBuilder();
+    for(byte b : digest)
+    {
+      result.append(String.format("%02x", b & 0xff));
+    }
+
+    return result.toString();
+  }
+
+  static MessageDigest sha256()
+  {
+    try
+    {
+      return MessageDigest.getInstance("SHA-256");
+    }
+    catch (NoSuchAlgorithmException e)
+    {
+      //  Every Java platform is required to support SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,363 @@
+package minemarker;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Process-wide timing metrics for each phase of marking - the number of times it has
+ * happened, the total time spent in it, and a histogram of how long it took, with
+ * power-of-two buckets from which percentiles are estimated (to within a factor of two).
+ * Recording costs two System.nanoTime() calls and a few uncontended atomic updates, and
+ * phases are only timed at the granularity of whole parses, turns and volleys, so
+ * collection is always enabled.  The metrics are published as a JMX MBean (once
+ * register() has been called) with attributes for each phase, and can be written as a
+ * summary.  Phases nest - a simulation includes its turns, which include their volleys
+ * @author steve
+ *
+ */
+public final class MarkingMetrics implements DynamicMBean
+{
+  /**
+   * Phases of marking that are timed
+   * @author steve
+   *
+   */
+  public enum Phase
+  {
+    /**
+     * Parsing a minefield file
+     */
+    parseMinefield,
+    /**
+     * Parsing a ship script up front (streamed scripts are parsed as part of the simulation)
+     */
+    parseScript,
+    /**
+     * Running (or analytically scoring) a simulation from start to finish, including any output
+     */
+    simulation,
+    /**
+     * The ship executing its orders for one turn
+     */
+    turn,
+    /**
+     * Clearing the mines hit by one torpedo volley
+     */
+    volley,
+    /**
+     * Rendering the minefield in the output format
+     */
+    render,
+    /**
+     * Writing the output for one step
+     */
+    output
+  }
+
+  /**
+   * Name the MBean is registered under
+   */
+  public static final String          OBJECT_NAME = "minemarker:type=MarkingMetrics";
+
+  private static final MarkingMetrics INSTANCE = new MarkingMetrics();
+
+  //  Bucket b counts durations of less than 2^b nanoseconds (and at least 2^(b-1)), so
+  //  every non-negative long has a bucket
+  private static final int            NUM_BUCKETS = Long.SIZE;
+
+  private static final String[]       ATTRIBUTE_SUFFIXES = { "Count", "TotalNanos", "MeanNanos", "P50Nanos", "P99Nanos", "MaxNanos" };
+  private static final String         RESET_OPERATION = "reset";
+
+  private final PhaseMetrics[]        mPhases = new PhaseMetrics[Phase.values().length];
+
+  //  Metrics for a single phase
+  private static final class PhaseMetrics
+  {
+    private final AtomicLong      mCount = new AtomicLong();
+    private final AtomicLong      mTotalNanos = new AtomicLong();
+    private final AtomicLong      mMaxNanos = new AtomicLong();
+    private final AtomicLongArray mBuckets = new AtomicLongArray(NUM_BUCKETS);
+
+    void record(long nanos)
+    {
+      mCount.incrementAndGet();
+      mTotalNanos.addAndGet(nanos);
+      mBuckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(nanos));
+
+      long max = mMaxNanos.get();
+      while ( nanos > max && !mMaxNanos.compareAndSet(max, nanos) )
+      {
+        max = mMaxNanos.get();
+      }
+    }
+
+    //  Estimate of the given quantile - the upper bound of the bucket it falls in
+    long quantile(double quantile)
+    {
+      long count = mCount.get();
+      long threshold = (long)Math.ceil(quantile*count);
+      long cumulative = 0;
+
+      for(int bucket = 0; bucket < NUM_BUCKETS; bucket++)
+      {
+        cumulative += mBuckets.get(bucket);
+        if ( cumulative >= threshold && cumulative > 0 )
+        {
+          return Math.min((1L << bucket) - 1, mMaxNanos.get());
+        }
+      }
+
+      return 0;
+    }
+
+    void reset()
+    {
+      mCount.set(0);
+      mTotalNanos.set(0);
+      mMaxNanos.set(0);
+      for(int bucket = 0; bucket < NUM_BUCKETS; bucket++)
+      {
+        mBuckets.set(bucket, 0);
+      }
+    }
+  }
+
+  private MarkingMetrics()
+  {
+    for(Phase phase : Phase.values())
+    {
+      mPhases[phase.ordinal()] = new PhaseMetrics();
+    }
+  }
+
+  /**
+   * @return the process-wide metrics
+   */
+  public static MarkingMetrics getInstance()
+  {
+    return INSTANCE;
+  }
+
+  /**
+   * Record the completion of a phase
+   * @param phase phase completed
+   * @param startNanos value of System.nanoTime() when the phase started
+   */
+  public static void record(Phase phase, long startNanos)
+  {
+    recordNanos(phase, System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Record the completion of a phase whose duration is already known
+   * @param phase phase completed
+   * @param nanos time the phase took
+   */
+  public static void recordNanos(Phase phase, long nanos)
+  {
+    INSTANCE.mPhases[phase.ordinal()].record(Math.max(nanos, 0));
+  }
+
+  /**
+   * Register the MBean with the platform MBean server, if not already registered
+   * @throws JMException if it cannot be registered
+   */
+  public void register() throws JMException
+  {
+    try
+    {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+    }
+    catch (InstanceAlreadyExistsException e)
+    {
+      //  Already registered
+    }
+  }
+
+  /**
+   * @param phase phase to retrieve metrics for
+   * @return number of times the phase has been recorded
+   */
+  public long getCount(Phase phase)
+  {
+    return mPhases[phase.ordinal()].mCount.get();
+  }
+
+  /**
+   * @param phase phase to retrieve metrics for
+   * @return total time spent in the phase in nanoseconds
+   */
+  public long getTotalNanos(Phase phase)
+  {
+    return mPhases[phase.ordinal()].mTotalNanos.get();
+  }
+
+  /**
+   * @param phase phase to retrieve metrics for
+   * @return longest time the phase has taken in nanoseconds
+   */
+  public long getMaxNanos(Phase phase)
+  {
+    return mPhases[phase.ordinal()].mMaxNanos.get();
+  }
+
+  /**
+   * Estimate a percentile of the time the phase takes, which is accurate to within a
+   * factor of two
+   * @param phase phase to retrieve metrics for
+   * @param quantile quantile to estimate (e.g. 0.99 for the 99th percentile)
+   * @return estimate of the quantile in nanoseconds (0 if the phase has not been recorded)
+   */
+  public long getQuantileNanos(Phase phase, double quantile)
+  {
+    return mPhases[phase.ordinal()].quantile(quantile);
+  }
+
+  /**
+   * Discard all metrics recorded so far
+   */
+  public void reset()
+  {
+    for(PhaseMetrics phase : mPhases)
+    {
+      phase.reset();
+    }
+  }
+
+  /**
+   * Write a summary of the metrics for each phase that has been recorded, one line per phase
+   * @param output destination to write the summary to (which is not flushed)
+   * @throws IOException
+   */
+  public void writeSummary(Writer output) throws IOException
+  {
+    String lineSeparator = System.lineSeparator();
+
+    output.write(String.format("%-15s %10s %12s %10s %10s %10s %10s", "Phase", "Count", "Total ms", "Mean us", "p50 us", "p99 us", "Max us"));
+    output.write(lineSeparator);
+
+    for(Phase phase : Phase.values())
+    {
+      long count = getCount(phase);
+
+      if ( count > 0 )
+      {
+        output.write(String.format("%-15s %10d %12.3f %10.1f %10.1f %10.1f %10.1f",
+                                   phase, count, getTotalNanos(phase)/1e6, getTotalNanos(phase)/1e3/count,
+                                   getQuantileNanos(phase, 0.5)/1e3, getQuantileNanos(phase, 0.99)/1e3, getMaxNanos(phase)/1e3));
+        output.write(lineSeparator);
+      }
+    }
+  }
+
+  @Override
+  public Object getAttribute(String attribute) throws AttributeNotFoundException
+  {
+    for(Phase phase : Phase.values())
+    {
+      if ( attribute.startsWith(phase.name()) )
+      {
+        switch(attribute.substring(phase.name().length()))
+        {
+          case "Count":
+            return getCount(phase);
+          case "TotalNanos":
+            return getTotalNanos(phase);
+          case "MeanNanos":
+            return (getCount(phase) == 0 ? 0L : getTotalNanos(phase)/getCount(phase));
+          case "P50Nanos":
+            return getQuantileNanos(phase, 0.5);
+          case "P99Nanos":
+            return getQuantileNanos(phase, 0.99);
+          case "MaxNanos":
+            return getMaxNanos(phase);
+          default:
+            break;
+        }
+      }
+    }
+
+    throw new AttributeNotFoundException("No such attribute: " + attribute);
+  }
+
+  @Override
+  public void setAttribute(Attribute attribute) throws AttributeNotFoundException
+  {
+    throw new AttributeNotFoundException("Attributes are read-only: " + attribute.getName());
+  }
+
+  @Override
+  public AttributeList getAttributes(String[] attributes)
+  {
+    AttributeList result = new AttributeList();
+
+    for(String attribute : attributes)
+    {
+      try
+      {
+        result.add(new Attribute(attribute, getAttribute(attribute)));
+      }
+      catch (AttributeNotFoundException e)
+      {
+        //  Omitted from the result, as the DynamicMBean contract specifies
+      }
+    }
+
+    return result;
+  }
+
+  @Override
+  public AttributeList setAttributes(AttributeList attributes)
+  {
+    return new AttributeList();
+  }
+
+  @Override
+  public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException
+  {
+    if ( RESET_OPERATION.equals(actionName) )
+    {
+      reset();
+      return null;
+    }
+
+    throw new ReflectionException(new NoSuchMethodException(actionName), "No such operation: " + actionName);
+  }
+
+  @Override
+  public MBeanInfo getMBeanInfo()
+  {
+    List<MBeanAttributeInfo> attributes = new ArrayList<>();
+
+    for(Phase phase : Phase.values())
+    {
+      for(String suffix : ATTRIBUTE_SUFFIXES)
+      {
+        attributes.add(new MBeanAttributeInfo(phase.name() + suffix, "long", suffix + " for phase " + phase, true, false, false));
+      }
+    }
+
+    MBeanOperationInfo reset = new MBeanOperationInfo(RESET_OPERATION, "Discard all metrics recorded so far", new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION);
+
+    return new MBeanInfo(getClass().getName(), "Timing metrics for each phase of marking",
+                         attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, new MBeanOperationInfo[] { reset }, null);
+  }
+}
@@ -0,0 +1,141 @@
+package minemarker;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * Result of marking a job held in memory - the score achieved, and (unless only the
+ * score was required) the full marking output
+ * @author steve
+ *
+ */
+public class MarkingResult
+{
+  private static final String LINE_SEPARATOR = System.lineSeparator();
+
+  private final int           mScore;
+  private final String        mOutput;
+  private final long          mParseNanos;
+  private final long          mSimulationNanos;
+
+  /**
+   * @param score score achieved (0 for a fail)
+   * @param output full marking output, or null if only the score was required
+   * @param parseNanos time taken to parse the inputs, in nanoseconds (0 if not known)
+   * @param simulationNanos time taken to run the simulation, in nanoseconds (0 if not known)
+   */
+  public MarkingResult(int score, String output, long parseNanos, long simulationNanos)
+  {
+    mScore = score;
+    mOutput = output;
+    mParseNanos = parseNanos;
+    mSimulationNanos = simulationNanos;
+  }
+
+  /**
+   * Mark a job whose minefield and script files have been read into memory, parsing
+   * them exactly as the files themselves would be parsed
+   * @param minefield content of the minefield specification file
+   * @param script content of the ship script file
+   * @param scoreOnly whether only the score is required, rather than the full output
+   * @param engine minefield storage engine to use
+   * @return result of marking
+   * @throws MinefieldFileParseException
+   * @throws ScriptException
+   * @throws ModelException
+   */
+  public static MarkingResult mark(byte[] minefield, byte[] script, boolean scoreOnly, MinefieldEngine engine) throws MinefieldFileParseException, ScriptException, ModelException
+  {
+    long startTime = System.nanoTime();
+    Minefield parsedMinefield = MinefieldFileParser.parseBytes(minefield, engine);
+    ShipOrders orders;
+
+    try
+    {
+      orders = ScriptFileParser.parse(new InputStreamReader(new ByteArrayInputStream(script)));
+    }
+    catch (IOException e)
+    {
+      //  Cannot happen reading from memory
+      throw new IllegalStateException(e);
+    }
+
+    long parsedTime = System.nanoTime();
+    SimulationState simulation = new SimulationState(parsedMinefield, orders);
+
+    if ( scoreOnly )
+    {
+      int score = simulation.runAndScore();
+
+      return new MarkingResult(score, null, parsedTime - startTime, System.nanoTime() - parsedTime);
+    }
+
+    StringWriter output = new StringWriter();
+    int score;
+
+    try
+    {
+      score = simulation.runAndMark(output);
+    }
+    catch (IOException e)
+    {
+      //  Cannot happen writing to a StringWriter
+      throw new IllegalStateException(e);
+    }
+
+    return new MarkingResult(score, output.toString(), parsedTime - startTime, System.nanoTime() - parsedTime);
+  }
+
+  /**
+   * @return score achieved (0 for a fail)
+   */
+  public int getScore()
+  {
+    return mScore;
+  }
+
+  /**
+   * @return full marking output, or null if only the score was required
+   */
+  public String getOutput()
+  {
+    return mOutput;
+  }
+
+  /**
+   * @return time taken to parse the inputs, in nanoseconds (0 if not known, as for a cached result)
+   */
+  public long getParseNanos()
+  {
+    return mParseNanos;
+  }
+
+  /**
+   * @return time taken to run the simulation, in nanoseconds (0 if not known, as for a cached result)
+   */
+  public long getSimulationNanos()
+  {
+    return mSimulationNanos;
+  }
+
+  /**
+   * Write the result as the commandline outputs it - the full marking output, or just the
+   * final result line if only the score was required
+   * @param output destination to write to
+   * @throws IOException
+   */
+  public void writeTo(Writer output) throws IOException
+  {
+    if ( mOutput != null )
+    {
+      output.write(mOutput);
+    }
+    else
+    {
+      output.write(SimulationState.formatResult(mScore) + LINE_SEPARATOR);
+    }
+  }
+}
@@ -0,0 +1,340 @@
+package minemarker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Long running marking server, which accepts marking jobs over HTTP so that the cost of
+ * starting (and warming up) a JVM is not paid for each one.  A job is a POST to /mark with
+ * a form encoded body giving the content of the minefield and script files (as the
+ * 'minefield' and 'script' fields), and optionally 'scoreonly=true'.  The response is
+ * exactly what the commandline would output for the same files, with headers giving the
+ * time taken to parse the inputs and to run the simulation.  If the server has a result
+ * cache its statistics are available from /cache.  The server only listens on the
+ * loopback interface, handles requests on a fixed size pool of threads, and rejects
+ * request bodies larger than a set maximum
+ * @author steve
+ *
+ */
+public class MarkingServer
+{
+  /**
+   * Path jobs are posted to
+   */
+  public static final String  MARK_PATH = "/mark";
+  /**
+   * Response header giving the time taken to parse the minefield and script, in microseconds
+   */
+  public static final String  PARSE_TIME_HEADER = "X-Parse-Time-Micros";
+  /**
+   * Response header giving the time taken to run the simulation, in microseconds
+   */
+  public static final String  SIMULATION_TIME_HEADER = "X-Simulation-Time-Micros";
+  /**
+   * Response header saying whether the result was cached (hit) or not (miss), if there is a cache
+   */
+  public static final String  CACHE_HEADER = "X-Cache";
+  /**
+   * Path the statistics of the result cache (if there is one) are available from
+   */
+  public static final String  CACHE_PATH = "/cache";
+  /**
+   * Default maximum size of a request body, in bytes
+   */
+  public static final int     DEFAULT_MAX_REQUEST_BYTES = 64*1024*1024;
+
+  private static final String FORM_ENCODING = StandardCharsets.UTF_8.name();
+
+  private final HttpServer      mServer;
+  private final ExecutorService mWorkers;
+  private final MinefieldEngine mEngine;
+  private final MarkingCache    mCache;
+  private final int             mMaxRequestBytes;
+
+  /**
+   * Construct a server listening on a specified (loopback) port.  It does not accept
+   * requests until started
+   * @param port port to listen on (0 for any free port)
+   * @param numThreads number of requests to handle concurrently
+   * @param engine minefield storage engine to use
+   * @throws IOException
+   */
+  public MarkingServer(int port, int numThreads, MinefieldEngine engine) throws IOException
+  {
+    this(port, numThreads, engine, null);
+  }
+
+  /**
+   * Construct a server listening on a specified (loopback) port, which caches results.
+   * It does not accept requests until started
+   * @param port port to listen on (0 for any free port)
+   * @param numThreads number of requests to handle concurrently
+   * @param engine minefield storage engine to use
+   * @param cache cache of results to use, or null for none
+   * @throws IOException
+   */
+  public MarkingServer(int port, int numThreads, MinefieldEngine engine, MarkingCache cache) throws IOException
+  {
+    this(port, numThreads, engine, cache, DEFAULT_MAX_REQUEST_BYTES);
+  }
+
+  /**
+   * Construct a server listening on a specified (loopback) port, which caches results and
+   * limits the size of requests.  It does not accept requests until started
+   * @param port port to listen on (0 for any free port)
+   * @param numThreads number of requests to handle concurrently
+   * @param engine minefield storage engine to use
+   * @param cache cache of results to use, or null for none
+   * @param maxRequestBytes maximum size of a request body, larger ones being rejected
+   * @throws IOException
+   */
+  public MarkingServer(int port, int numThreads, MinefieldEngine engine, MarkingCache cache, int maxRequestBytes) throws IOException
+  {
+    mEngine = engine;
+    mCache = cache;
+    mMaxRequestBytes = maxRequestBytes;
+    mWorkers = Executors.newFixedThreadPool(numThreads);
+    mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    mServer.createContext(MARK_PATH, new MarkHandler());
+    if ( cache != null )
+    {
+      mServer.createContext(CACHE_PATH, new CacheStatisticsHandler());
+    }
+    mServer.setExecutor(mWorkers);
+  }
+
+  /**
+   * Start accepting requests
+   */
+  public void start()
+  {
+    mServer.start();
+  }
+
+  /**
+   * Stop handling requests, and shut down once those in progress have completed or the
+   * timeout has elapsed, whichever is first.  Requests arriving in the meantime are not
+   * handled, and their connections are closed when the server shuts down
+   * @param timeout maximum time to wait for requests in progress
+   * @param unit unit of the timeout
+   * @return true if all requests in progress completed, false if the timeout elapsed first
+   * @throws InterruptedException
+   */
+  public boolean stop(long timeout, TimeUnit unit) throws InterruptedException
+  {
+    //  Requests are handled entirely on the workers, so once they have terminated nothing
+    //  is in progress.  HttpServer.stop itself is given no delay, since some versions wait
+    //  out the whole of it even when there are no exchanges left to complete
+    mWorkers.shutdown();
+    try
+    {
+      return mWorkers.awaitTermination(timeout, unit);
+    }
+    finally
+    {
+      mServer.stop(0);
+    }
+  }
+
+  /**
+   * @return port the server is listening on
+   */
+  public int getPort()
+  {
+    return mServer.getAddress().getPort();
+  }
+
+  //  Decode an application/x-www-form-urlencoded request body
+  private static Map<String, String> decodeForm(String body) throws UnsupportedEncodingException
+  {
+    Map<String, String> result = new HashMap<>();
+
+    for(String field : body.split("&"))
+    {
+      if ( !field.isEmpty() )
+      {
+        int separator = field.indexOf('=');
+        String name = (separator == -1 ? field : field.substring(0, separator));
+        String value = (separator == -1 ? "" : field.substring(separator + 1));
+
+        result.put(URLDecoder.decode(name, FORM_ENCODING), URLDecoder.decode(value, FORM_ENCODING));
+      }
+    }
+
+    return result;
+  }
+
+  //  Read a request body, or return null if it is larger than the maximum size.  A body
+  //  declared to be too large is rejected without reading any of it
+  private static String readBody(HttpExchange exchange, int maxBytes) throws IOException
+  {
+    String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+
+    if ( contentLength != null && Long.parseLong(contentLength.trim()) > maxBytes )
+    {
+      return null;
+    }
+
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+
+    try (InputStream input = exchange.getRequestBody())
+    {
+      int numRead;
+
+      while ( (numRead = input.read(buffer)) != -1 )
+      {
+        if ( numRead > maxBytes - body.size() )
+        {
+          return null;
+        }
+        body.write(buffer, 0, numRead);
+      }
+    }
+
+    //  Form encoded bodies are ASCII by definition
+    return new String(body.toByteArray(), StandardCharsets.US_ASCII);
+  }
+
+  private static void respond(HttpExchange exchange, int status, String content) throws IOException
+  {
+    byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream output = exchange.getResponseBody())
+    {
+      output.write(bytes);
+    }
+  }
+
+  /**
+   * Handler for requests for the cache statistics
+   */
+  private class CacheStatisticsHandler implements HttpHandler
+  {
+    @Override
+    public void handle(HttpExchange exchange) throws IOException
+    {
+      try
+      {
+        respond(exchange, 200, mCache.getStatistics() + "\n");
+      }
+      finally
+      {
+        exchange.close();
+      }
+    }
+  }
+
+  /**
+   * Handler for marking requests
+   */
+  private class MarkHandler implements HttpHandler
+  {
+    @Override
+    public void handle(HttpExchange exchange) throws IOException
+    {
+      try
+      {
+        if ( !exchange.getRequestMethod().equals("POST") )
+        {
+          exchange.getResponseHeaders().set("Allow", "POST");
+          respond(exchange, 405, "Marking jobs must be POSTed to " + MARK_PATH + "\n");
+          return;
+        }
+
+        Map<String, String> form;
+
+        try
+        {
+          String body = readBody(exchange, mMaxRequestBytes);
+
+          if ( body == null )
+          {
+            respond(exchange, 413, "Marking jobs are limited to " + mMaxRequestBytes + " bytes\n");
+            return;
+          }
+          form = decodeForm(body);
+        }
+        catch (IllegalArgumentException e)
+        {
+          respond(exchange, 400, "Malformed request: " + e.getMessage() + "\n");
+          return;
+        }
+
+        String minefield = form.get("minefield");
+        String script = form.get("script");
+
+        if ( minefield == null || script == null )
+        {
+          respond(exchange, 400, "The mark action requires both minefield layout and script to be supplied via the minefield and script fields respectively\n");
+          return;
+        }
+
+        //  The inputs are parsed exactly as they would be read from files
+        byte[] minefieldContent = minefield.getBytes(Charset.defaultCharset());
+        byte[] scriptContent = script.getBytes(Charset.defaultCharset());
+        boolean scoreOnly = Boolean.parseBoolean(form.get("scoreonly"));
+        String cacheKey = (mCache == null ? null : MarkingCache.key(minefieldContent, scriptContent, scoreOnly));
+        MarkingResult result = (mCache == null ? null : mCache.get(cacheKey));
+        boolean cacheHit = (result != null);
+
+        try
+        {
+          if ( !cacheHit )
+          {
+            result = MarkingResult.mark(minefieldContent, scriptContent, scoreOnly, mEngine);
+            if ( mCache != null )
+            {
+              mCache.put(cacheKey, result);
+            }
+          }
+        }
+        catch (MinefieldFileParseException | ScriptException | ModelException e)
+        {
+          respond(exchange, 400, e.getMessage() + "\n");
+          return;
+        }
+        catch (RuntimeException e)
+        {
+          respond(exchange, 500, "Unable to mark job: " + e + "\n");
+          return;
+        }
+
+        StringWriter output = new StringWriter();
+
+        result.writeTo(output);
+        exchange.getResponseHeaders().set(PARSE_TIME_HEADER, Long.toString(result.getParseNanos()/1000));
+        exchange.getResponseHeaders().set(SIMULATION_TIME_HEADER, Long.toString(result.getSimulationNanos()/1000));
+        if ( mCache != null )
+        {
+          exchange.getResponseHeaders().set(CACHE_HEADER, cacheHit ? "hit" : "miss");
+        }
+        respond(exchange, 200, output.toString());
+      }
+      finally
+      {
+        exchange.close();
+      }
+    }
+  }
+}
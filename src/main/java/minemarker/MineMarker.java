@@ -1,14 +1,27 @@
 package minemarker;
 
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.List;
 
+import javax.management.JMException;
+
 /**
  *  Shell class for the application JAR
  * @author steve
  */
 public class MineMarker
 {
+	  private static final int  STDOUT_BUFFER_SIZE = 1 << 16;
+	  //  Default bound on the memory used to cache results, in MB
+	  private static final long DEFAULT_CACHE_SIZE = 64;
+
 	  /**
 	   * App main
 	   * @param args commandline arguments
@@ -23,8 +36,25 @@ public class MineMarker
 	    }
 	    else
 	    {
+	      if ( commandLine.getMetrics() )
+	      {
+	        reportMetricsOnExit();
+	      }
+
 	      // We have a valid commandline.  What's it asking us to do
-	      if ( commandLine.getShouldMark() )
+	      if ( commandLine.getShouldGenerate() )
+	      {
+	        generate(commandLine);
+	      }
+	      else if ( commandLine.getShouldMark() && commandLine.getServerPort() != -1 )
+	      {
+	        serve(commandLine);
+	      }
+	      else if ( commandLine.getShouldMark() && commandLine.getBatchSource() != null )
+	      {
+	        markBatch(commandLine);
+	      }
+	      else if ( commandLine.getShouldMark() )
 	      {
 	        try
           {
@@ -38,17 +68,44 @@ public class MineMarker
 	            return;
 	          }
 
-            Minefield minefield = MinefieldFileParser.parse(minefieldFile);
-            ShipOrders orders = ScriptFileParser.parse(scriptFile);
+            if ( commandLine.getAnalytic() )
+            {
+              scoreAnalytically(minefieldFile, scriptFile, commandLine.getStreamScript());
+              return;
+            }
+
+            MarkingCache cache = createCache(commandLine);
 
-            //  Create the simulation
-            SimulationState simulation = new SimulationState(minefield, orders);
-            List<String> simulationResult = simulation.runAndMark();
+            if ( cache != null && !commandLine.getStreamScript() && !scriptFile.equals(ScriptFileParser.STDIN_FILENAME) )
+            {
+              MarkingResult result = cache.mark(Files.readAllBytes(Paths.get(minefieldFile)),
+                                                Files.readAllBytes(Paths.get(scriptFile)),
+                                                commandLine.getScoreOnly(),
+                                                commandLine.getEngine());
+              Writer output = createStdoutWriter();
+
+              result.writeTo(output);
+              output.flush();
+              return;
+            }
+
+            MinefieldFileCache fieldCache = createFieldCache(commandLine);
+            Minefield minefield = (fieldCache != null ? fieldCache.parse(minefieldFile, commandLine.getEngine())
+                                                      : MinefieldFileParser.parse(minefieldFile, commandLine.getEngine()));
 
-            //  Echo the output to stdout
-            for(String outputLine : simulationResult)
+            if ( commandLine.getStreamScript() )
             {
-              System.out.println(outputLine);
+              //  The script is read as it is executed, so may be arbitrarily long
+              try (StreamingShipOrders orders = ScriptFileParser.stream(scriptFile))
+              {
+                runSimulation(new SimulationState(minefield, orders), commandLine.getScoreOnly());
+              }
+            }
+            else
+            {
+              ShipOrders orders = ScriptFileParser.parse(scriptFile);
+
+              runSimulation(new SimulationState(minefield, orders), commandLine.getScoreOnly());
             }
           }
           catch (IOException e)
@@ -75,11 +132,220 @@ public class MineMarker
 	    }
 	  }
 
+	  //  Create the result cache specified by the commandline, if any
+	  private static MarkingCache createCache(CommandLine commandLine)
+	  {
+	    if ( commandLine.getCacheDirectory() == null && commandLine.getCacheSize() == -1 )
+	    {
+	      return null;
+	    }
+
+	    long cacheSize = (commandLine.getCacheSize() == -1 ? DEFAULT_CACHE_SIZE : commandLine.getCacheSize());
+
+	    return new MarkingCache(cacheSize << 20, commandLine.getCacheDirectory());
+	  }
+
+	  //  Create the parsed minefield cache specified by the commandline, if any
+	  private static MinefieldFileCache createFieldCache(CommandLine commandLine)
+	  {
+	    return (commandLine.getFieldCacheDirectory() == null ? null : new MinefieldFileCache(commandLine.getFieldCacheDirectory()));
+	  }
+
+	  //  Generate a synthetic minefield and/or script, to the files named for marking
+	  private static void generate(CommandLine commandLine)
+	  {
+	    String minefieldFile = commandLine.getMinefieldFilename();
+	    String scriptFile = commandLine.getScriptFilename();
+
+	    if ( minefieldFile == null && scriptFile == null )
+	    {
+	      System.out.println("The generate action requires a minefield layout and/or script filename to generate to be supplied via -minefield and/or -script respectively");
+	      return;
+	    }
+
+	    WorkloadGenerator generator = new WorkloadGenerator(commandLine.getSeed());
+	    //  Nothing else may be written to the standard output if either is generated to it
+	    boolean report = !WorkloadGenerator.STDOUT_FILENAME.equals(minefieldFile) && !WorkloadGenerator.STDOUT_FILENAME.equals(scriptFile);
+
+	    try
+	    {
+	      if ( minefieldFile != null )
+	      {
+	        long numMines = generator.writeMinefield(minefieldFile, commandLine.getWidth(), commandLine.getHeight(), commandLine.getDensity(), commandLine.getMaxDepth(), commandLine.getDepths());
+
+	        if ( report )
+	        {
+	          System.out.println("Generated " + commandLine.getWidth() + "x" + commandLine.getHeight() + " minefield with " + numMines + " mines in " + minefieldFile);
+	        }
+	      }
+	      if ( scriptFile != null )
+	      {
+	        generator.writeScript(scriptFile, commandLine.getNumTurns(), WorkloadGenerator.DEFAULT_VOLLEY_PROBABILITY, WorkloadGenerator.DEFAULT_MOVE_PROBABILITY);
+
+	        if ( report )
+	        {
+	          System.out.println("Generated " + commandLine.getNumTurns() + " turn script in " + scriptFile);
+	        }
+	      }
+	    }
+	    catch (IOException e)
+	    {
+	      System.out.println("Unable to generate: " + e.getMessage());
+	    }
+	  }
+
+	  //  Start a marking server, which runs until the JVM is terminated
+	  private static void serve(CommandLine commandLine)
+	  {
+	    registerMetrics();
+
+	    try
+	    {
+	      MarkingServer server = new MarkingServer(commandLine.getServerPort(), commandLine.getNumThreads(), commandLine.getEngine(), createCache(commandLine));
+
+	      server.start();
+	      System.out.println("Marking server listening on http://localhost:" + server.getPort() + MarkingServer.MARK_PATH);
+	    }
+	    catch (IOException e)
+	    {
+	      System.out.println("Unable to start marking server: " + e.getMessage());
+	    }
+	  }
+
+	  //  Mark each of a batch of jobs, outputting the result of each and a summary
+	  private static void markBatch(CommandLine commandLine)
+	  {
+	    registerMetrics();
+
+	    try
+	    {
+	      List<BatchJob> jobs = BatchMarker.loadJobs(commandLine.getBatchSource());
+	      BatchMarker marker = new BatchMarker(commandLine.getEngine(), commandLine.getNumThreads(), commandLine.getOutputDirectory(), createCache(commandLine), createFieldCache(commandLine));
+
+	      marker.run(jobs, createStdoutWriter());
+	    }
+	    catch (IOException | BatchException e)
+	    {
+	      System.out.println("Unable to mark batch: " + e.getMessage());
+	    }
+	    catch (InterruptedException e)
+	    {
+	      Thread.currentThread().interrupt();
+	    }
+	  }
+
+	  //  Output the result of a simulation, determined without stepping it
+	  private static void scoreAnalytically(String minefieldFile, String scriptFile, boolean streamScript) throws IOException, MinefieldFileParseException, ModelException, ScriptException
+	  {
+	    long[] mines = MinefieldFileParser.parsePackedMines(minefieldFile);
+
+	    if ( streamScript )
+	    {
+	      try (StreamingShipOrders orders = ScriptFileParser.stream(scriptFile))
+	      {
+	        System.out.println(SimulationState.formatResult(new AnalyticalScorer(mines, orders).score()));
+	      }
+	    }
+	    else
+	    {
+	      System.out.println(SimulationState.formatResult(new AnalyticalScorer(mines, ScriptFileParser.parse(scriptFile)).score()));
+	    }
+	  }
+
+	  //  Run the simulation, outputting either the full marking output or just the result
+	  private static void runSimulation(SimulationState simulation, boolean scoreOnly) throws ModelException, ScriptException, IOException
+	  {
+	    if ( scoreOnly )
+	    {
+	      System.out.println(SimulationState.formatResult(simulation.runAndScore()));
+	    }
+	    else
+	    {
+	      //  Stream the full output to stdout as it runs
+	      Writer output = createStdoutWriter();
+
+	      try
+	      {
+	        simulation.runAndMark(output);
+	      }
+	      finally
+	      {
+	        output.flush();
+	      }
+	    }
+	  }
+
+	  //  Publish the metrics via JMX, so that long runs can be monitored while they proceed
+	  private static void registerMetrics()
+	  {
+	    try
+	    {
+	      MarkingMetrics.getInstance().register();
+	    }
+	    catch (JMException e)
+	    {
+	      System.err.println("Unable to register metrics MBean: " + e.getMessage());
+	    }
+	  }
+
+	  //  Publish the metrics, and write a summary of them to the standard error (so as not to
+	  //  mix with the marking output) when the JVM exits, however the run ends
+	  private static void reportMetricsOnExit()
+	  {
+	    registerMetrics();
+
+	    Runtime.getRuntime().addShutdownHook(new Thread()
+	    {
+	      @Override
+	      public void run()
+	      {
+	        try
+	        {
+	          Writer output = new OutputStreamWriter(new FileOutputStream(FileDescriptor.err));
+
+	          MarkingMetrics.getInstance().writeSummary(output);
+	          output.flush();
+	        }
+	        catch (IOException e)
+	        {
+	          //  Nothing more can be done on exit
+	        }
+	      }
+	    });
+	  }
+
+	  //  Marking output can be very large, so rather than going through System.out (which
+	  //  may flush on every line) use a large buffer that is only flushed when full or at the end
+	  private static Writer createStdoutWriter()
+	  {
+	    return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out)), STDOUT_BUFFER_SIZE);
+	  }
+
 	  private static void printUsage()
 	  {
-	    System.out.println("java -jar MineMarker.jar [-mark] [-minefield <minefield def filename>] [-script <ship script filename>]");
+	    System.out.println("java -jar MineMarker.jar [-mark] [-scoreonly] [-analytic] [-streamscript] [-metrics] [-engine <engine>] [-minefield <minefield def filename>] [-script <ship script filename>] [-batch <manifest filename or directory> [-output <directory>]] [-serve <port>] [-threads <n>] [-cache <directory>] [-cachesize <MB>] [-fieldcache <directory>]");
+	    System.out.println("java -jar MineMarker.jar -generate [-minefield <minefield def filename>] [-script <ship script filename>] [-seed <n>] [-width <n>] [-height <n>] [-density <p>] [-depth <n>] [-depths <distribution>] [-turns <n>]");
       System.out.println("\t-mark - Perform marking.  This action is assumed if no other actions are specified.");
+      System.out.println("\t-scoreonly - Only output the final pass/fail result of marking, not the step by step output.");
+      System.out.println("\t-analytic - Determine the pass/fail result directly from the ship's trajectory rather than by stepping the simulation, which is much faster for large minefields.  Only the final result is output.");
+      System.out.println("\t-streamscript - Read the ship script as the simulation proceeds rather than up front.  An invalid script is then only reported when the simulation reaches the offending line.");
+      System.out.println("\t-metrics - On exit, output a summary of the time spent in each phase of marking (parsing, simulation, turns, torpedo volleys, rendering and output) to the standard error.  The same metrics are published via JMX as MBean " + MarkingMetrics.OBJECT_NAME + ", which is always registered when marking a batch or serving.");
+      System.out.println("\t-engine <engine> - minefield storage engine to use: auto (the default), simple, column, packed or bitmap.");
       System.out.println("\t-minefield <filename> - specifies the minefield layout file to use.");
-      System.out.println("\t-script <filename> - specifies the ship action script file to use.");
+      System.out.println("\t-script <filename> - specifies the ship action script file to use, or - to read it from the standard input.");
+      System.out.println("\t-batch <filename or directory> - mark a batch of minefield/script pairs, listed one pair per line in a manifest file, or as the minefield* and script* files of a directory.  The result of each is output in order, followed by a summary.");
+      System.out.println("\t-output <directory> - directory to write the full marking output of each batch job to.");
+      System.out.println("\t-serve <port> - run a marking server on the specified local port, accepting jobs POSTed to " + MarkingServer.MARK_PATH + " with the minefield and script file contents as form fields minefield and script (and optionally scoreonly=true).");
+      System.out.println("\t-threads <n> - number of batch jobs or server requests to mark concurrently (defaults to the number of processors).");
+      System.out.println("\t-cache <directory> - cache marking results on disk in the specified directory, so that identical jobs are not marked again.");
+      System.out.println("\t-cachesize <MB> - cache marking results in memory, using at most (approximately) the specified amount of memory (defaults to " + DEFAULT_CACHE_SIZE + "MB if -cache is specified).");
+      System.out.println("\t-fieldcache <directory> - cache parsed minefields in binary form in the specified directory, so that identical minefield files need not be parsed again.");
+      System.out.println("\t-generate - Generate a synthetic minefield layout and/or ship script, to the files specified by -minefield and/or -script (either of which may be - for the standard output), instead of marking.  The same seed and parameters always generate the same files.");
+      System.out.println("\t-seed <n> - random seed for generation (defaults to 0).");
+      System.out.println("\t-width <n>, -height <n> - dimensions of the minefield to generate (default to 101, at most " + CommandLine.MAX_DIMENSION + ").");
+      System.out.println("\t-density <p> - probability of each cell of the generated minefield holding a mine (defaults to 0.1).");
+      System.out.println("\t-depth <n> - greatest depth of the generated mines, up to " + WorkloadGenerator.MAX_DEPTH + " (the default).");
+      System.out.println("\t-depths <distribution> - distribution of the depths of the generated mines: uniform (the default), shallow or deep.");
+      System.out.println("\t-turns <n> - number of turns of the script to generate (defaults to " + WorkloadGenerator.MAX_DEPTH + ").");
 	  }
 }
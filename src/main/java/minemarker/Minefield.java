@@ -1,5 +1,6 @@
 package minemarker;
 
+import java.nio.LongBuffer;
 import java.util.List;
 
 /**
@@ -18,19 +19,77 @@ public interface Minefield
    * @param atCoordinates where to add it
    */
   public abstract void addMine(Point atCoordinates);
+  /**
+   * Add a mine to the minefield, without the caller needing to construct a Point
+   * @param x x-coordinate of the mine
+   * @param y y-coordinate of the mine
+   * @param z z-coordinate of the mine
+   */
+  public abstract void addMine(int x, int y, int z);
+  /**
+   * Add mines given as packed coordinates (see PackedPoint), as read straight from a
+   * binary form of the minefield.  This is equivalent to an addMine() call per mine, but
+   * allows implementations to populate the minefield in bulk
+   * @param packedMines packed coordinates of the mines, from the position of the buffer to
+   * its limit (the position is left unchanged)
+   */
+  public abstract void addMines(LongBuffer packedMines);
   /**
    * @return minimal bounding cuboid for all extant mines - if there are no mines retruns null
    */
   public abstract Cuboid getBoundingCuboid();
+  /**
+   * Retrieve the z-coordinate of the shallowest extant mine.  This is equivalent to the
+   * top of the bounding cuboid, but is maintained directly so is O(1) to retrieve
+   * @return z-coordinate of the shallowest mine, or Integer.MAX_VALUE if there are no mines
+   */
+  public abstract int getShallowestZ();
+  /**
+   * Retrieve the z-coordinate of the deepest extant mine.  This is equivalent to the
+   * bottom of the bounding cuboid, but is maintained directly so is O(1) to retrieve
+   * @return z-coordinate of the deepest mine, or Integer.MIN_VALUE if there are no mines
+   */
+  public abstract int getDeepestZ();
   /**
    * Clear a specified region of mines
    * @param region region to clear
    */
   public abstract void clearRegion(Cuboid region);
+  /**
+   * Clear the (1x1) column of mines extending downwards from each of a set of points,
+   * as a volley of torpedos launched from those points would.  This is equivalent
+   * to a clearRegion() call per column, but allows implementations to clear them all
+   * in a single pass
+   * @param columnTops top (least z) point of each column to clear
+   */
+  public abstract void clearColumns(List<Point> columnTops);
   /**
    * @return number of extant mines
    */
   public abstract int getNumMines();
+  /**
+   * @param x x-coordinate to test
+   * @param y y-coordinate to test
+   * @param z z-coordinate to test
+   * @return true if there is a mine at the specified coordinates
+   */
+  public abstract boolean containsMine(int x, int y, int z);
+  /**
+   * Snapshot the minefield in its current state, so that it can be shared by forks.
+   * Once snapshotted a minefield cannot be changed (attempts to do so throw
+   * IllegalStateException), and its forks may be used concurrently
+   * @return this minefield
+   */
+  public abstract Minefield snapshot();
+  /**
+   * Fork the minefield - create a new minefield that starts with the same mines, but
+   * thereafter changes independently.  A fork shares the storage of the minefield it
+   * was forked from and records only its own changes, so is cheap to create and uses
+   * memory only in proportion to its changes, allowing many simulations to be run
+   * against one parsed minefield.  The minefield forked from is snapshotted first
+   * @return new fork of this minefield
+   */
+  public abstract Minefield fork();
   /**
    * Dump the minefield state in output format
    * @param centerOn center-point (implicitly ship location)
@@ -38,4 +97,11 @@ public interface Minefield
    * @throws ModelException
    */
   public List<String> toOutputFormat(Point centerOn) throws ModelException;
+  /**
+   * Render the minefield state in output format into a (reusable) frame buffer
+   * @param centerOn center-point (implicitly ship location)
+   * @param frame frame to render into, which is resized as necessary
+   * @throws ModelException
+   */
+  public void render(Point centerOn, RenderedFrame frame) throws ModelException;
 }
@@ -0,0 +1,32 @@
+package minemarker;
+
+/**
+ * The available minefield storage engines (Minefield implementations), for selection
+ * when a minefield is created.  Each has different scaling characteristics, so no one
+ * of them is the best choice for all minefields
+ * @author steve
+ *
+ */
+public enum MinefieldEngine
+{
+  /**
+   * Choose automatically based on the dimensions and density of the minefield
+   */
+  auto,
+  /**
+   * Simple set of mines (SimpleMinefield) - fine for small fields
+   */
+  simple,
+  /**
+   * Mines indexed by column (ColumnIndexedMinefield)
+   */
+  column,
+  /**
+   * Primitive packed hash set of mines (PackedMinefield) - for very large sparse fields
+   */
+  packed,
+  /**
+   * Bitmap per depth layer (LayeredBitmapMinefield) - for dense fields
+   */
+  bitmap;
+}
@@ -0,0 +1,68 @@
+package minemarker;
+
+/**
+ * Factory for the creation of minefields, which selects the storage engine to use
+ * (if not explicitly specified) based on the characteristics of the minefield
+ * @author steve
+ *
+ */
+public class MinefieldFactory
+{
+  //  Fields up to this area (the size of anything in the original problem spec) are
+  //  small enough that the choice of engine makes no material difference
+  private static final long SMALL_AREA = 64*64;
+  //  Fields with at least this proportion of columns occupied are considered dense
+  private static final int  DENSE_COLUMNS_PER_MINE = 8;
+  //  Beyond this many mines the per-mine object overhead of the column index becomes significant
+  private static final int  LARGE_NUM_MINES = 1 << 20;
+
+  /**
+   * Create an empty minefield suitable for holding mines within a rectangle from
+   * (0,0) to (width-1,height-1)
+   * @param engine storage engine to use, or MinefieldEngine.auto to select one
+   * @param width extent of the minefield in x
+   * @param height extent of the minefield in y
+   * @param numMines number of mines it will be populated with
+   * @return empty minefield
+   */
+  public static Minefield create(MinefieldEngine engine, int width, int height, int numMines)
+  {
+    switch(engine == MinefieldEngine.auto ? selectEngine(width, height, numMines) : engine)
+    {
+      case column:
+        return new ColumnIndexedMinefield();
+      case packed:
+        return new PackedMinefield(numMines);
+      case bitmap:
+        return new LayeredBitmapMinefield(width, height);
+      case simple:
+      default:
+        return new SimpleMinefield();
+    }
+  }
+
+  /**
+   * Select the most appropriate storage engine for a minefield
+   * @param width extent of the minefield in x
+   * @param height extent of the minefield in y
+   * @param numMines number of mines it will be populated with
+   * @return selected engine
+   */
+  public static MinefieldEngine selectEngine(int width, int height, int numMines)
+  {
+    long area = (long)width*height;
+
+    if ( area <= SMALL_AREA )
+    {
+      return MinefieldEngine.simple;
+    }
+
+    //  The bitmap engine costs a bit per column per occupied layer, so only pays off for dense fields
+    if ( area <= Integer.MAX_VALUE && area <= (long)numMines*DENSE_COLUMNS_PER_MINE )
+    {
+      return MinefieldEngine.bitmap;
+    }
+
+    return (numMines > LARGE_NUM_MINES ? MinefieldEngine.packed : MinefieldEngine.column);
+  }
+}
@@ -0,0 +1,224 @@
+package minemarker;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+/**
+ * Cache of parsed minefields on disk, so that a minefield specification file that has
+ * been parsed before can be reloaded without parsing its text again.  Each parsed
+ * minefield is written in a compact binary form to a file named by a hash of the identity
+ * of the specification file (its canonical path, size and modification time), so that
+ * finding it costs no more than examining the file, and loaded by mapping that file and
+ * adding the mines straight from it.  The binary form is a header of 4-byte ints (magic
+ * number, format version, width, height, number of mines, and padding to align what
+ * follows) and the SHA-256 hash of the content of the specification, followed by the
+ * packed coordinates (see PackedPoint) of each mine as an 8-byte long, in the order the
+ * specification defines them.  The cache is thread safe
+ * @author steve
+ *
+ */
+public class MinefieldFileCache
+{
+  //  The magic number is 'MFB' and a zero byte, and the version must change if the binary form does
+  private static final int    MAGIC = 0x4d464200;
+  private static final int    VERSION = 2;
+  private static final int    HASH_OFFSET = 24;
+  private static final int    HASH_SIZE = 32;
+  private static final int    HEADER_SIZE = HASH_OFFSET + HASH_SIZE;
+  private static final String FILE_SUFFIX = ".mfb";
+
+  //  Cached minefields are mapped as a single buffer, so must fit one
+  private static final long   MAX_CACHED_MINES = (Integer.MAX_VALUE - HEADER_SIZE)/8;
+
+  //  Modification times are only as fine grained as the file system records them, so a
+  //  specification rewritten (at the same size) within this long of being cached might
+  //  still have the identity it was cached under.  Such entries are checked against the
+  //  hash of the content in their header before being used
+  private static final long   MODIFICATION_GRANULARITY_MILLIS = 2000;
+
+  private final File          mDirectory;
+  private long                mNumHits = 0;
+  private long                mNumMisses = 0;
+
+  /**
+   * Construct a cache
+   * @param directory directory to cache parsed minefields in
+   */
+  public MinefieldFileCache(String directory)
+  {
+    mDirectory = new File(directory);
+  }
+
+  /**
+   * Parse the specified input file, which is assumed to match the minefield definition
+   * format, into a minefield using a specified storage engine, loading it from the cache
+   * if the same content has been parsed before
+   * @param filename where to find the specification file
+   * @param engine storage engine to use for the resulting minefield
+   * @return Minefield instance representing the specified minefield configuration
+   * @throws IOException
+   * @throws MinefieldFileParseException
+   */
+  public Minefield parse(String filename, MinefieldEngine engine) throws IOException, MinefieldFileParseException
+  {
+    File source = new File(filename);
+    String identity = source.getCanonicalPath() + System.lineSeparator() + source.length() + System.lineSeparator() + source.lastModified();
+    File cachedFile = new File(mDirectory, MarkingCache.toHex(MarkingCache.sha256().digest(identity.getBytes(StandardCharsets.UTF_8))) + FILE_SUFFIX);
+    Minefield result = load(cachedFile, source, engine);
+
+    synchronized(this)
+    {
+      if ( result != null )
+      {
+        mNumHits++;
+        return result;
+      }
+
+      mNumMisses++;
+    }
+
+    //  Specifications that fail to parse are not cached, so are simply parsed (and fail) again
+    MappedMinefieldFile file = new MappedMinefieldFile(filename);
+
+    result = MinefieldFileParser.parse(file, engine);
+    store(cachedFile, file);
+
+    return result;
+  }
+
+  /**
+   * @return number of minefields loaded from the cache
+   */
+  public synchronized long getNumHits()
+  {
+    return mNumHits;
+  }
+
+  /**
+   * @return number of minefields that had to be parsed
+   */
+  public synchronized long getNumMisses()
+  {
+    return mNumMisses;
+  }
+
+  /**
+   * @return summary of the cache statistics
+   */
+  public synchronized String getStatistics()
+  {
+    return "Minefield cache: " + mNumHits + " hits, " + mNumMisses + " misses";
+  }
+
+  //  Load a cached minefield, or return null if there is no valid one
+  private static Minefield load(File cachedFile, File source, MinefieldEngine engine) throws IOException
+  {
+    if ( !cachedFile.isFile() )
+    {
+      return null;
+    }
+
+    MappedByteBuffer content;
+
+    try (FileChannel channel = FileChannel.open(cachedFile.toPath(), StandardOpenOption.READ))
+    {
+      if ( channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE )
+      {
+        return null;
+      }
+
+      content = channel.map(MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    int width = content.getInt(8);
+    int height = content.getInt(12);
+    int numMines = content.getInt(16);
+
+    //  Anything else is not a minefield this version of the cache wrote, so treat it as
+    //  absent (it will be overwritten)
+    if ( content.getInt(0) != MAGIC || content.getInt(4) != VERSION ||
+         width <= 0 || height <= 0 || numMines <= 0 ||
+         content.capacity() != HEADER_SIZE + 8L*numMines )
+    {
+      return null;
+    }
+
+    if ( source.lastModified() >= cachedFile.lastModified() - MODIFICATION_GRANULARITY_MILLIS )
+    {
+      MessageDigest digest = MarkingCache.sha256();
+      byte[] cachedHash = new byte[HASH_SIZE];
+
+      new MappedMinefieldFile(source.getPath()).digest(digest);
+      content.position(HASH_OFFSET);
+      content.get(cachedHash);
+      if ( !MessageDigest.isEqual(cachedHash, digest.digest()) )
+      {
+        return null;
+      }
+    }
+
+    Minefield result = MinefieldFactory.create(engine, width, height, numMines);
+
+    content.position(HEADER_SIZE);
+    result.addMines(content.asLongBuffer());
+
+    return result;
+  }
+
+  //  Write a (validated) minefield specification to the cache in binary form
+  private void store(File cachedFile, MappedMinefieldFile file) throws IOException
+  {
+    //  Fields too large to pack or to map in one buffer are just parsed every time
+    if ( file.getWidth() - 1 > PackedPoint.MAX_XY || file.getHeight() - 1 > PackedPoint.MAX_XY ||
+         file.getNumMines() > MAX_CACHED_MINES )
+    {
+      return;
+    }
+
+    ByteBuffer content = ByteBuffer.allocate(HEADER_SIZE + 8*file.getNumMines());
+
+    content.putInt(MAGIC);
+    content.putInt(VERSION);
+    content.putInt(file.getWidth());
+    content.putInt(file.getHeight());
+    content.putInt(file.getNumMines());
+    content.putInt(0);
+
+    MessageDigest digest = MarkingCache.sha256();
+
+    file.digest(digest);
+    content.put(digest.digest());
+    file.packMines(content.asLongBuffer());
+
+    File temporaryFile = File.createTempFile(cachedFile.getName(), ".tmp", mDirectory);
+
+    //  Written to a temporary file and moved into place, so that a concurrent reader
+    //  (perhaps in another process) never sees a partially written minefield
+    try
+    {
+      try (FileChannel channel = FileChannel.open(temporaryFile.toPath(), StandardOpenOption.WRITE))
+      {
+        content.rewind();
+        while ( content.hasRemaining() )
+        {
+          channel.write(content);
+        }
+      }
+
+      Files.move(temporaryFile.toPath(), cachedFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    finally
+    {
+      temporaryFile.delete();
+    }
+  }
+}
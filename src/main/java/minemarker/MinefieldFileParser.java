@@ -1,9 +1,13 @@
 package minemarker;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
 import java.util.Arrays;
 import java.util.List;
 
+import minemarker.MarkingMetrics.Phase;
+
 /**
  * Parser responsible for taking a minefield specification file
  * and producing a minefield object from it
@@ -22,7 +26,36 @@ public class MinefieldFileParser
    */
   public static Minefield parse(String filename) throws IOException, MinefieldFileParseException
   {
-    return parse(FileHelper.readLines(filename));
+    return parse(filename, MinefieldEngine.auto);
+  }
+
+  /**
+   * Parse the specified input file, which is assumed to match the minefield definition
+   * format, into a minefield using a specified storage engine
+   * @param filename where to find the specification file
+   * @param engine storage engine to use for the resulting minefield
+   * @return Minefield instance representing the specified minefield configuration
+   * @throws IOException
+   * @throws MinefieldFileParseException
+   */
+  public static Minefield parse(String filename, MinefieldEngine engine) throws IOException, MinefieldFileParseException
+  {
+    //  Files may be very large, so rather than reading them as lines of text they
+    //  are memory mapped and scanned directly
+    return parse(new MappedMinefieldFile(filename), engine);
+  }
+
+  /**
+   * Parse the content of a minefield specification file already read into memory, exactly
+   * as the file itself would be parsed
+   * @param content bytes of the specification file
+   * @param engine storage engine to use for the resulting minefield
+   * @return Minefield instance representing the specified minefield configuration
+   * @throws MinefieldFileParseException
+   */
+  public static Minefield parseBytes(byte[] content, MinefieldEngine engine) throws MinefieldFileParseException
+  {
+    return parse(new MappedMinefieldFile(ByteBuffer.wrap(content)), engine);
   }
 
   /**
@@ -33,24 +66,82 @@ public class MinefieldFileParser
    * @throws MinefieldFileParseException
    */
   public static Minefield parseString(String minefieldSpecification) throws MinefieldFileParseException
+  {
+    return parseString(minefieldSpecification, MinefieldEngine.auto);
+  }
+
+  /**
+   * Parse the specified input, which is assumed to match the minefield definition
+   * format, into a minefield using a specified storage engine
+   * @param minefieldSpecification specification as one string with linefeed characters separating the lines
+   * @param engine storage engine to use for the resulting minefield
+   * @return Minefield instance representing the specified minefield configuration
+   * @throws MinefieldFileParseException
+   */
+  public static Minefield parseString(String minefieldSpecification, MinefieldEngine engine) throws MinefieldFileParseException
   {
     String[] lines = minefieldSpecification.split("\\r?\\n");
 
-    return parse(Arrays.asList(lines));
+    return parse(Arrays.asList(lines), engine);
+  }
+
+  /**
+   * Parse the specified input file, which is assumed to match the minefield definition
+   * format, into just the packed coordinates (see PackedPoint) of its mines, without
+   * building a Minefield at all
+   * @param filename where to find the specification file
+   * @return packed coordinates of each mine specified
+   * @throws IOException
+   * @throws MinefieldFileParseException if the file is invalid, or the field too large
+   * for its mines to be packed
+   */
+  public static long[] parsePackedMines(String filename) throws IOException, MinefieldFileParseException
+  {
+    MappedMinefieldFile file = new MappedMinefieldFile(filename);
+    long startNanos = System.nanoTime();
+
+    file.validate();
+    if ( file.getWidth() - 1 > PackedPoint.MAX_XY || file.getHeight() - 1 > PackedPoint.MAX_XY )
+    {
+      throw new MinefieldFileParseException("Minefield of size " + file.getWidth() + "x" + file.getHeight() + " too large for packed representation");
+    }
+
+    long[] result = new long[file.getNumMines()];
+    file.packMines(LongBuffer.wrap(result));
+
+    MarkingMetrics.record(Phase.parseMinefield, startNanos);
+
+    return result;
+  }
+
+  //  Parse a specification file that has been mapped
+  static Minefield parse(MappedMinefieldFile file, MinefieldEngine engine) throws MinefieldFileParseException
+  {
+    long startNanos = System.nanoTime();
+
+    file.validate();
+
+    Minefield result = MinefieldFactory.create(engine, file.getWidth(), file.getHeight(), file.getNumMines());
+    file.populate(result);
+
+    MarkingMetrics.record(Phase.parseMinefield, startNanos);
+
+    return result;
   }
 
-  private static Minefield parse(List<String> minefieldSpecification) throws MinefieldFileParseException
+  private static Minefield parse(List<String> minefieldSpecification, MinefieldEngine engine) throws MinefieldFileParseException
   {
     int xExtent = -1;
     int yExtent = minefieldSpecification.size();
+    int numMines = 0;
 
     if ( yExtent == 0 )
     {
       throw new MinefieldFileParseException("No minefield specified!");
     }
 
-    Minefield result = new SimpleMinefield();
-
+    //  First pass validates the specification and determines the number of mines, so that
+    //  an appropriate storage engine can be chosen before any mines are created
     for(int y = 0; y < minefieldSpecification.size(); y++)
     {
       String line = minefieldSpecification.get(y);
@@ -75,34 +166,55 @@ public class MinefieldFileParser
         char mineChar = line.charAt(x);
         if ( mineChar != '.' )
         {
-          int z;
-
-          //  We have a mine.  What is its z-depth?
-          if ( mineChar >= 'a' && mineChar <= 'z' )
-          {
-            z = mineChar - 'a' + 1;
-          }
-          else if ( mineChar >= 'A' && mineChar <= 'Z' )
-          {
-            z = mineChar - 'A' + 27;
-          }
-          else
+          if ( mineDepth(mineChar) == 0 )
           {
             throw new MinefieldFileParseException("Minefield specification contains illegal character '" + mineChar + "' in line " + (y+1) + ": " + line);
           }
 
-          result.addMine(new Point(x,y,z));
+          numMines++;
         }
       }
     }
 
     //  We don't allow minefields with no mines as the spec. definition doesn't really provide for sensible
     //  (or at least useful) handling of this case
-    if ( result.getNumMines() == 0 )
+    if ( numMines == 0 )
     {
       throw new MinefieldFileParseException("Illegal minefield specification defines no mines");
     }
 
+    Minefield result = MinefieldFactory.create(engine, xExtent, yExtent, numMines);
+
+    for(int y = 0; y < minefieldSpecification.size(); y++)
+    {
+      String line = minefieldSpecification.get(y);
+
+      for(int x = 0; x < line.length(); x++)
+      {
+        char mineChar = line.charAt(x);
+        if ( mineChar != '.' )
+        {
+          result.addMine(x, y, mineDepth(mineChar));
+        }
+      }
+    }
+
     return result;
   }
+
+  //  Determine the z-depth of a mine from its character in the specification, or 0 if
+  //  the character is not a legal mine
+  private static int mineDepth(char mineChar)
+  {
+    if ( mineChar >= 'a' && mineChar <= 'z' )
+    {
+      return mineChar - 'a' + 1;
+    }
+    else if ( mineChar >= 'A' && mineChar <= 'Z' )
+    {
+      return mineChar - 'A' + 27;
+    }
+
+    return 0;
+  }
 }
@@ -0,0 +1,28 @@
+package minemarker;
+
+/**
+ * Source of the orders for a ship to execute during the simulation, one turn at a time.
+ * The simulation only ever asks about the turn it is executing or the one following it,
+ * so a source need not hold the whole script - see StreamingShipOrders
+ * @author steve
+ *
+ */
+public interface OrdersSource
+{
+  /**
+   * Determine whether the script covers a given turn (i.e. - has not run out before it).
+   * Turns are asked about in non-decreasing order
+   * @param turnNumber turn to check (0-based)
+   * @return true if the script includes the turn, even if it has no orders for it
+   * @throws ScriptException if the script is found to be invalid
+   */
+  public abstract boolean coversTurn(int turnNumber) throws ScriptException;
+  /**
+   * Retrieve the orders for a turn.  Turns are asked about in non-decreasing order
+   * @param turnNumber turn to retrieve orders for (0-based)
+   * @return orders for that turn in the encoding defined by TurnOrderEncoding
+   * (TurnOrderEncoding.NONE if there aren't any)
+   * @throws ScriptException if the script is found to be invalid
+   */
+  public abstract int getEncodedOrdersForTurn(int turnNumber) throws ScriptException;
+}
@@ -0,0 +1,167 @@
+package minemarker;
+
+import java.nio.LongBuffer;
+
+/**
+ * Minefield implementation for very large numbers of mines, which stores each mine
+ * as its coordinates packed into a single long (see PackedPoint) in a primitive
+ * open-addressing hash set.  No object is allocated per mine, which keeps both the
+ * heap footprint and GC pressure of multi-million mine fields down
+ * @author steve
+ *
+ */
+public class PackedMinefield extends AbstractMinefield
+{
+  private final LongHashSet mMines;
+
+  /**
+   * Construct an empty minefield
+   */
+  public PackedMinefield()
+  {
+    mMines = new LongHashSet();
+  }
+
+  /**
+   * Construct an empty minefield, pre-sized to hold a given number of mines
+   * @param expectedNumMines number of mines it is expected to be populated with
+   * @throws IllegalArgumentException if more mines are expected than can be held
+   */
+  public PackedMinefield(int expectedNumMines)
+  {
+    mMines = new LongHashSet(expectedNumMines);
+  }
+
+  @Override
+  public void addMine(int x, int y, int z)
+  {
+    checkChangeable();
+    if ( !PackedPoint.isPackable(x, y, z) )
+    {
+      throw new IllegalArgumentException("Mine coordinates out of range for packed representation: (" + x + "," + y + "," + z + ")");
+    }
+
+    if ( mMines.add(PackedPoint.pack(x, y, z)) )
+    {
+      mineAdded(x, y, z);
+    }
+  }
+
+  @Override
+  public void addMines(LongBuffer xiPackedMines)
+  {
+    checkChangeable();
+
+    //  The mines are already packed, so go straight into the set, and only then are the
+    //  bounds and projection updated for those that were new.  Filling one structure at a
+    //  time roughly halves the cost of populating a large field compared to addMine()
+    long[] added = new long[xiPackedMines.remaining()];
+    int numAdded = 0;
+
+    for(int index = xiPackedMines.position(); index < xiPackedMines.limit(); index++)
+    {
+      long mine = xiPackedMines.get(index);
+
+      if ( mMines.add(mine) )
+      {
+        added[numAdded++] = mine;
+      }
+    }
+
+    for(int index = 0; index < numAdded; index++)
+    {
+      mineAdded(PackedPoint.getX(added[index]), PackedPoint.getY(added[index]), PackedPoint.getZ(added[index]));
+    }
+  }
+
+  @Override
+  public void clearRegion(Cuboid xiRegion)
+  {
+    checkChangeable();
+
+    Cuboid boundingCuboid = getBoundingCuboid();
+
+    if ( boundingCuboid == null )
+    {
+      return;
+    }
+
+    //  Only the part of the region within the current bounds can contain any mines
+    int minX = Math.max(xiRegion.getNorthWestTop().getX(), boundingCuboid.getNorthWestTop().getX());
+    int minY = Math.max(xiRegion.getNorthWestTop().getY(), boundingCuboid.getNorthWestTop().getY());
+    int minZ = Math.max(xiRegion.getNorthWestTop().getZ(), boundingCuboid.getNorthWestTop().getZ());
+    int maxX = Math.min(xiRegion.getSouthEastBottom().getX(), boundingCuboid.getSouthEastBottom().getX());
+    int maxY = Math.min(xiRegion.getSouthEastBottom().getY(), boundingCuboid.getSouthEastBottom().getY());
+    int maxZ = Math.min(xiRegion.getSouthEastBottom().getZ(), boundingCuboid.getSouthEastBottom().getZ());
+
+    if ( minX > maxX || minY > maxY || minZ > maxZ )
+    {
+      return;
+    }
+
+    long volume = ((long)maxX - minX + 1) * ((long)maxY - minY + 1) * ((long)maxZ - minZ + 1);
+
+    if ( volume <= mMines.size() )
+    {
+      //  Typical torpedo case - a single column only as deep as the field, so probe each cell
+      for(int x = minX; x <= maxX; x++)
+      {
+        for(int y = minY; y <= maxY; y++)
+        {
+          for(int z = minZ; z <= maxZ; z++)
+          {
+            if ( mMines.remove(PackedPoint.pack(x, y, z)) )
+            {
+              mineRemoved(x, y, z);
+            }
+          }
+        }
+      }
+    }
+    else
+    {
+      //  The region is larger than the number of mines so it's cheaper to check every mine
+      for(long mine : mMines.keys())
+      {
+        int x = PackedPoint.getX(mine);
+        int y = PackedPoint.getY(mine);
+        int z = PackedPoint.getZ(mine);
+
+        if ( x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ )
+        {
+          mMines.remove(mine);
+          mineRemoved(x, y, z);
+        }
+      }
+    }
+  }
+
+  @Override
+  public int getNumMines()
+  {
+    return mMines.size();
+  }
+
+  @Override
+  public boolean containsMine(int x, int y, int z)
+  {
+    return (PackedPoint.isPackable(x, y, z) && mMines.contains(PackedPoint.pack(x, y, z)));
+  }
+
+  @Override
+  protected int findShallowestMineZ(int x, int y)
+  {
+    int bottomZ = getDeepestZ();
+
+    //  Depth is small (bounded by the input format) so probing down the column is cheap
+    for(int z = getShallowestZ(); z <= bottomZ; z++)
+    {
+      if ( mMines.contains(PackedPoint.pack(x, y, z)) )
+      {
+        return z;
+      }
+    }
+
+    return NO_MINE;
+  }
+}
@@ -0,0 +1,101 @@
+package minemarker;
+
+/**
+ * Utility methods for packing the coordinates of a point into a single long, for use
+ * by representations that wish to avoid allocating a Point object per mine.  The
+ * x and y coordinates each occupy 26 bits and the z coordinate 12 bits, all signed
+ * @author steve
+ *
+ */
+public class PackedPoint
+{
+  private static final int  XY_BITS = 26;
+  private static final int  Z_BITS = 12;
+  private static final long XY_MASK = (1L << XY_BITS) - 1;
+  private static final long Z_MASK = (1L << Z_BITS) - 1;
+
+  /**
+   * Smallest representable x or y coordinate
+   */
+  public static final int MIN_XY = -(1 << (XY_BITS-1));
+  /**
+   * Largest representable x or y coordinate
+   */
+  public static final int MAX_XY = (1 << (XY_BITS-1)) - 1;
+  /**
+   * Smallest representable z coordinate
+   */
+  public static final int MIN_Z = -(1 << (Z_BITS-1));
+  /**
+   * Largest representable z coordinate
+   */
+  public static final int MAX_Z = (1 << (Z_BITS-1)) - 1;
+
+  private PackedPoint()
+  {
+  }
+
+  /**
+   * @param x x coordinate
+   * @param y y coordinate
+   * @param z z coordinate
+   * @return true if the coordinates are all within the representable range
+   */
+  public static boolean isPackable(int x, int y, int z)
+  {
+    return (x >= MIN_XY && x <= MAX_XY &&
+            y >= MIN_XY && y <= MAX_XY &&
+            z >= MIN_Z && z <= MAX_Z);
+  }
+
+  /**
+   * Pack coordinates into a long.  Coordinates outside the representable range
+   * are silently truncated, so callers should check with isPackable() where that matters
+   * @param x x coordinate
+   * @param y y coordinate
+   * @param z z coordinate
+   * @return packed representation
+   */
+  public static long pack(int x, int y, int z)
+  {
+    return ((x & XY_MASK) << (XY_BITS + Z_BITS)) |
+           ((y & XY_MASK) << Z_BITS) |
+           (z & Z_MASK);
+  }
+
+  /**
+   * @param packed packed coordinates
+   * @return x coordinate
+   */
+  public static int getX(long packed)
+  {
+    return (int)(packed >> (XY_BITS + Z_BITS));
+  }
+
+  /**
+   * @param packed packed coordinates
+   * @return y coordinate
+   */
+  public static int getY(long packed)
+  {
+    return (int)((packed << XY_BITS) >> (XY_BITS + Z_BITS));
+  }
+
+  /**
+   * @param packed packed coordinates
+   * @return z coordinate
+   */
+  public static int getZ(long packed)
+  {
+    return (int)((packed << (2*XY_BITS)) >> (2*XY_BITS));
+  }
+
+  /**
+   * @param packed packed coordinates
+   * @return Point with the packed coordinates
+   */
+  public static Point toPoint(long packed)
+  {
+    return new Point(getX(packed), getY(packed), getZ(packed));
+  }
+}
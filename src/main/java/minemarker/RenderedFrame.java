@@ -0,0 +1,101 @@
+package minemarker;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reusable buffer holding one rendering of a minefield in output format, as a
+ * rectangle of characters.  The underlying storage is only ever grown, so once
+ * it is large enough for the display rectangle re-rendering into the same frame
+ * involves no allocation
+ * @author steve
+ *
+ */
+public class RenderedFrame
+{
+  private char[] mBuffer = new char[0];
+  private int    mWidth = 0;
+  private int    mHeight = 0;
+
+  /**
+   * @return width of the frame in characters
+   */
+  public int getWidth()
+  {
+    return mWidth;
+  }
+
+  /**
+   * @return height of the frame in lines
+   */
+  public int getHeight()
+  {
+    return mHeight;
+  }
+
+  /**
+   * @return underlying character buffer.  Line n of the frame occupies the getWidth()
+   * characters starting at offset n*getWidth()
+   */
+  public char[] getBuffer()
+  {
+    return mBuffer;
+  }
+
+  /**
+   * Write the frame to a destination, terminating each line with a specified separator
+   * @param output destination to write to
+   * @param lineSeparator line terminator
+   * @throws IOException
+   */
+  public void writeTo(Writer output, String lineSeparator) throws IOException
+  {
+    for(int line = 0; line < mHeight; line++)
+    {
+      output.write(mBuffer, line*mWidth, mWidth);
+      output.write(lineSeparator);
+    }
+  }
+
+  /**
+   * @return the frame as a list of lines
+   */
+  public List<String> toLines()
+  {
+    List<String> result = new ArrayList<>(mHeight);
+
+    for(int line = 0; line < mHeight; line++)
+    {
+      result.add(new String(mBuffer, line*mWidth, mWidth));
+    }
+
+    return result;
+  }
+
+  /**
+   * Set the dimensions of the frame, growing the underlying buffer if necessary.  The
+   * content of the frame is undefined after this until it has been written
+   * @param width new width in characters
+   * @param height new height in lines
+   * @throws ModelException if the frame would be too large to represent
+   */
+  void resize(int width, int height) throws ModelException
+  {
+    long size = (long)width*height;
+
+    if ( size > Integer.MAX_VALUE )
+    {
+      throw new ModelException("Minefield display of " + width + "x" + height + " is too large to render");
+    }
+
+    if ( size > mBuffer.length )
+    {
+      mBuffer = new char[(int)size];
+    }
+
+    mWidth = width;
+    mHeight = height;
+  }
+}
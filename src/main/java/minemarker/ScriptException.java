@@ -16,4 +16,13 @@ public class ScriptException extends Exception
   {
     super(message);
   }
+
+  /**
+   * @param message Message describing the exception condition
+   * @param cause underlying cause of the exception
+   */
+  public ScriptException(String message, Throwable cause)
+  {
+    super(message, cause);
+  }
 }
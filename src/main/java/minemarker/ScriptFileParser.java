@@ -1,10 +1,12 @@
 package minemarker;
 
+import java.io.BufferedReader;
+import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.io.InputStreamReader;
+import java.io.Reader;
 
+import minemarker.MarkingMetrics.Phase;
 import minemarker.Ship.ShipAction;
 
 /**
@@ -14,17 +16,68 @@ import minemarker.Ship.ShipAction;
  */
 public class ScriptFileParser
 {
+  /**
+   * Name which may be given in place of a script filename to read the script from the
+   * standard input
+   */
+  public static final String        STDIN_FILENAME = "-";
+
+  private static final ShipAction[] ACTIONS = ShipAction.values();
+
   /**
    * Parse the specified input file, which is assumed to match the ship script definition
    * format
-   * @param filename where to find the specification file
+   * @param filename where to find the specification file (or STDIN_FILENAME)
    * @return ShipOrders instance representing the specified script actions
    * @throws IOException
    * @throws ScriptException
    */
   public static ShipOrders parse(String filename) throws IOException, ScriptException
   {
-    return parse(FileHelper.readLines(filename));
+    try (BufferedReader input = openScript(filename))
+    {
+      return parse(input);
+    }
+  }
+
+  /**
+   * Parse a script read from a specified source, which is assumed to match the ship script
+   * definition format.  Lines are split exactly as they are when reading a file
+   * @param input script to read.  It is read to the end, but not closed
+   * @return ShipOrders instance representing the specified script actions
+   * @throws IOException
+   * @throws ScriptException
+   */
+  public static ShipOrders parse(Reader input) throws IOException, ScriptException
+  {
+    //  Lines are compiled as they are read, so the script text is never held in full
+    BufferedReader lines = (input instanceof BufferedReader ? (BufferedReader)input : new BufferedReader(input));
+    ShipOrders result = new ShipOrders();
+    int turnNumber = 0;
+    String line;
+    long startNanos = System.nanoTime();
+
+    while ( (line = lines.readLine()) != null )
+    {
+      result.setEncodedTurnOrders(turnNumber, compileTurnOrders(line, turnNumber+1));
+      turnNumber++;
+    }
+
+    MarkingMetrics.record(Phase.parseScript, startNanos);
+
+    return result;
+  }
+
+  /**
+   * Open the specified input file, which is assumed to match the ship script definition
+   * format, for its orders to be read as the simulation proceeds rather than parsed up front
+   * @param filename where to find the specification file (or STDIN_FILENAME)
+   * @return source of the orders, which the caller must close
+   * @throws IOException
+   */
+  public static StreamingShipOrders stream(String filename) throws IOException
+  {
+    return new StreamingShipOrders(openScript(filename));
   }
 
   /**
@@ -42,53 +95,114 @@ public class ScriptFileParser
     //  sequences matter.  However, ignore the virtual null string the above split will give us
     //  after the last linefeed if thats how the string ends or we'll convert a single line feed
     //  into 2 empty lines rather than just 1
-    List<String> linesList = new ArrayList<>(Arrays.asList(lines));
+    int numLines = lines.length;
 
-    if ( linesList.size() > 0 && linesList.get(linesList.size()-1).length() == 0 )
+    if ( numLines > 0 && lines[numLines-1].length() == 0 )
     {
-      linesList.remove(linesList.size()-1);
+      numLines--;
     }
 
-    return parse(linesList);
+    ShipOrders result = new ShipOrders();
+
+    for(int turnNumber = 0; turnNumber < numLines; turnNumber++)
+    {
+      result.setEncodedTurnOrders(turnNumber, compileTurnOrders(lines[turnNumber], turnNumber+1));
+    }
+
+    return result;
   }
 
-  private static ShipOrders parse(List<String> ordersSpecification) throws ScriptException
+  /**
+   * Compile one line of a script into encoded turn orders.  Actions are separated by runs
+   * of whitespace exactly as String.split("\\s+") would separate them - in particular a
+   * line starting with whitespace has an empty (and so illegal) first action, unless it
+   * is entirely whitespace
+   * @param line line of the script
+   * @param lineNumber line number (1-based) for error reporting
+   * @return encoded orders, as defined by TurnOrderEncoding
+   * @throws ScriptException
+   */
+  static int compileTurnOrders(String line, int lineNumber) throws ScriptException
   {
-    ShipOrders result = new ShipOrders();
-    int turnNumber = 0;
+    int result = TurnOrderEncoding.NONE;
+    int length = line.length();
+    int position = 0;
 
-    for(String turnOrderString : ordersSpecification)
+    while ( position < length )
     {
-      ShipTurnOrders orders = null;
+      int actionStart = position;
 
-      if ( !turnOrderString.isEmpty() )
+      while ( position < length && !isWhitespace(line.charAt(position)) )
       {
-        String[] actions = turnOrderString.split("\\s+");
-
-        for(String actionString : actions)
-        {
-          try
-          {
-            ShipAction action = ShipAction.valueOf(actionString);
-
-            if ( orders == null )
-            {
-              orders = new ShipTurnOrders();
-            }
-            orders.AddAction(action);
-          }
-          catch(IllegalArgumentException e)
-          {
-            //  Re-throw this as a more precise exception
-            throw new ScriptException("Illegal action specified on line " + (turnNumber+1) + ": " + actionString);
-          }
-        }
+        position++;
       }
 
-      result.setTurnOrders(turnNumber, orders);
-      turnNumber++;
+      ShipAction action = lookupAction(line, actionStart, position);
+
+      //  Splitting a line consisting only of whitespace yields nothing at all (since trailing
+      //  empty strings are discarded), so such a line is not an error but has no orders
+      if ( action == null && actionStart == position && isAllWhitespace(line) )
+      {
+        return TurnOrderEncoding.NONE;
+      }
+
+      if ( action == null )
+      {
+        throw new ScriptException("Illegal action specified on line " + lineNumber + ": " + line.substring(actionStart, position));
+      }
+      result = TurnOrderEncoding.addAction(result, action);
+
+      while ( position < length && isWhitespace(line.charAt(position)) )
+      {
+        position++;
+      }
     }
 
     return result;
   }
+
+  private static BufferedReader openScript(String filename) throws IOException
+  {
+    if ( filename.equals(STDIN_FILENAME) )
+    {
+      return new BufferedReader(new InputStreamReader(System.in));
+    }
+
+    return new BufferedReader(new FileReader(filename));
+  }
+
+  //  The action named by the characters from start to end of a line, or null if there is none
+  private static ShipAction lookupAction(String line, int start, int end)
+  {
+    for(ShipAction action : ACTIONS)
+    {
+      String name = action.name();
+
+      if ( name.length() == end - start && line.regionMatches(start, name, 0, name.length()) )
+      {
+        return action;
+      }
+    }
+
+    return null;
+  }
+
+  private static boolean isAllWhitespace(String line)
+  {
+    for(int position = 0; position < line.length(); position++)
+    {
+      if ( !isWhitespace(line.charAt(position)) )
+      {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  //  Whitespace as matched by \s in a regular expression
+  private static boolean isWhitespace(char c)
+  {
+    return (c == ' ' || c == '\t' || c == '\n' || c == 0x0b || c == '\f' || c == '\r');
+  }
 }
@@ -3,6 +3,8 @@ package minemarker;
 import java.util.ArrayList;
 import java.util.List;
 
+import minemarker.MarkingMetrics.Phase;
+
 /**
  * Representation of the sweeping ship in a simulation
  * @author steve
@@ -70,6 +72,18 @@ public class Ship
     }
   }
 
+  //  Displacement of the ship by each movement action
+  private static final Point   NORTH = new Point(0,-1,0);
+  private static final Point   SOUTH = new Point(0,1,0);
+  private static final Point   EAST = new Point(1,0,0);
+  private static final Point   WEST = new Point(-1,0,0);
+
+  //  Launch points of the torpedos of each firing pattern, relative to the ship
+  private static final Point[] ALPHA_OFFSETS = { new Point(-1,1,0), new Point(-1,-1,0), new Point(1,1,0), new Point(1,-1,0) };
+  private static final Point[] BETA_OFFSETS = { new Point(-1,0,0), new Point(0,1,0), new Point(0,-1,0), new Point(1,0,0) };
+  private static final Point[] GAMMA_OFFSETS = { new Point(-1,0,0), new Point(0,0,0), new Point(1,0,0) };
+  private static final Point[] DELTA_OFFSETS = { new Point(0,1,0), new Point(0,-1,0), new Point(0,0,0) };
+
   private final SimulationEnvironment mEnvironment;
   private Point mCoordinates = null;
   private int   mNumTorpedosFired = 0;
@@ -118,65 +132,67 @@ public class Ship
     mCoordinates = xiCoordinates;
   }
 
+  /**
+   * Determine the displacement of the ship by a movement action
+   * @param action movement action
+   * @return displacement of the ship
+   * @throws ModelException if the action is not a movement
+   */
+  static Point getMovement(ShipAction action) throws ModelException
+  {
+    switch(action)
+    {
+      case north:
+        return NORTH;
+      case south:
+        return SOUTH;
+      case east:
+        return EAST;
+      case west:
+        return WEST;
+      default:
+        throw new ModelException("Unknown movement action: " + action);
+    }
+  }
+
+  /**
+   * Determine the launch points of the torpedos of a firing action
+   * @param action firing action
+   * @return launch point of each torpedo, relative to the ship
+   * @throws ModelException if the action is not a firing action
+   */
+  static Point[] getTorpedoOffsets(ShipAction action) throws ModelException
+  {
+    switch(action)
+    {
+      case alpha:
+        return ALPHA_OFFSETS;
+      case beta:
+        return BETA_OFFSETS;
+      case gamma:
+        return GAMMA_OFFSETS;
+      case delta:
+        return DELTA_OFFSETS;
+      default:
+        throw new ModelException("Unknown firing action: " + action);
+    }
+  }
+
   //  Execute a single action
   private void executeAction(ShipAction action) throws ModelException
   {
     if ( action.isMovement() )
     {
-      int deltaX = 0;
-      int deltaY = 0;
-
-      switch(action)
-      {
-        case north:
-          deltaY = -1;
-          break;
-        case south:
-          deltaY = 1;
-          break;
-        case east:
-          deltaX = 1;
-          break;
-        case west:
-          deltaX = -1;
-          break;
-        default:
-          throw new ModelException("Unknown movement action: " + action);
-      }
-
-      setCoordinates(new Point(mCoordinates.getX() + deltaX, mCoordinates.getY() + deltaY, mCoordinates.getZ()));
+      setCoordinates(mCoordinates.displace(getMovement(action)));
 
       mNumMovesEnacted++;
     }
     else if ( action.isTorpedoLaunch() )
     {
       List<Point> torpedoLaunchPoints = new ArrayList<>();
-      switch(action)
+      for(Point offset : getTorpedoOffsets(action))
       {
-        case alpha:
-          torpedoLaunchPoints.add(mCoordinates.displace(new Point(-1,1,0)));
-          torpedoLaunchPoints.add(mCoordinates.displace(new Point(-1,-1,0)));
-          torpedoLaunchPoints.add(mCoordinates.displace(new Point(1,1,0)));
-          torpedoLaunchPoints.add(mCoordinates.displace(new Point(1,-1,0)));
-          break;
-        case beta:
-          torpedoLaunchPoints.add(mCoordinates.displace(new Point(-1,0,0)));
-          torpedoLaunchPoints.add(mCoordinates.displace(new Point(0,1,0)));
-          torpedoLaunchPoints.add(mCoordinates.displace(new Point(0,-1,0)));
-          torpedoLaunchPoints.add(mCoordinates.displace(new Point(1,0,0)));
-          break;
-        case gamma:
-          torpedoLaunchPoints.add(mCoordinates.displace(new Point(-1,0,0)));
-          torpedoLaunchPoints.add(mCoordinates.displace(new Point(0,0,0)));
-          torpedoLaunchPoints.add(mCoordinates.displace(new Point(1,0,0)));
-          break;
-        case delta:
-          torpedoLaunchPoints.add(mCoordinates.displace(new Point(0,1,0)));
-          torpedoLaunchPoints.add(mCoordinates.displace(new Point(0,-1,0)));
-          torpedoLaunchPoints.add(mCoordinates.displace(new Point(0,0,0)));
-          break;
-        default:
-          throw new ModelException("Unknown firing action: " + action);
+        torpedoLaunchPoints.add(mCoordinates.displace(offset));
       }
 
       //  It's very slightly ambiguous what precisely torpedos do in the spec.
@@ -188,15 +204,13 @@ public class Ship
       //  We have them just shooting down (seems more logical).  If they turn out to be quantum
       //  torpedos that can be in multiple places at once we may need to revise this for
       //  solving a more general problem space ;-)
-      int minefieldRemainingDepth = mEnvironment.getMinefield().getBoundingCuboid().getSouthEastBottom().getZ() - mCoordinates.getZ();
-      for(Point torpedoLaunchPoint : torpedoLaunchPoints)
-      {
-        //  The region cleared by a torpedo is the 1X1 column at the launch coordinates
-        //  extending down to the end of the minefield.
-        Cuboid clearedRegion = new Cuboid(torpedoLaunchPoint, torpedoLaunchPoint.displace(new Point(0,0,minefieldRemainingDepth)));
+      //  The region cleared by each torpedo is the 1X1 column at its launch coordinates
+      //  extending down to the end of the minefield.  All those of a volley are cleared together
+      long startNanos = System.nanoTime();
 
-        mEnvironment.getMinefield().clearRegion(clearedRegion);
-      }
+      mEnvironment.getMinefield().clearColumns(torpedoLaunchPoints);
+
+      MarkingMetrics.record(Phase.volley, startNanos);
 
       mNumTorpedosFired++;
     }
@@ -209,9 +223,24 @@ public class Ship
    */
   public void executeTurnOrders(ShipTurnOrders turnOrders) throws ModelException
   {
-    for(ShipAction action : turnOrders.getActions())
+    executeTurnOrders(TurnOrderEncoding.encode(turnOrders));
+  }
+
+  /**
+   * Execute the actions specified for one turn, as encoded by ShipOrders (which is how the
+   * simulation executes them, with no decoding or allocation)
+   * @param encodedOrders actions to take on this turn, in the encoding defined by TurnOrderEncoding
+   * @throws ModelException
+   */
+  public void executeTurnOrders(int encodedOrders) throws ModelException
+  {
+    long startNanos = System.nanoTime();
+
+    for(ShipAction action : TurnOrderEncoding.getActions(encodedOrders))
     {
       executeAction(action);
     }
+
+    MarkingMetrics.record(Phase.turn, startNanos);
   }
 }
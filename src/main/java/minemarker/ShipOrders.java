@@ -1,16 +1,18 @@
 package minemarker;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
- * Represents the orders for a ship to execute during the simulation
+ * Represents the orders for a ship to execute during the simulation.  The orders are
+ * held compiled, with one byte per turn in the encoding defined by TurnOrderEncoding,
+ * so even scripts covering millions of turns are compact
  * @author steve
  *
  */
-public class ShipOrders
+public class ShipOrders implements OrdersSource
 {
-  private final List<ShipTurnOrders> mTurnOrderList = new ArrayList<>();
+  private byte[] mTurnOrders = new byte[16];
+  private int    mNumTurns = 0;
 
   /**
    * Set the orders for a given turn
@@ -22,47 +24,68 @@ public class ShipOrders
    */
   public void setTurnOrders(int turnNumber, ShipTurnOrders orders) throws ScriptException
   {
-    if ( mTurnOrderList.size() > turnNumber )
+    setEncodedTurnOrders(turnNumber, TurnOrderEncoding.encode(orders));
+  }
+
+  /**
+   * @param turnNumber turn to retrieve orders for (0-based)
+   * @return orders for that turn or null if there aren't any
+   */
+  public ShipTurnOrders getOrdersForTurn(int turnNumber)
+  {
+    return TurnOrderEncoding.decode(getEncodedOrdersForTurn(turnNumber));
+  }
+
+  /**
+   * @return number of turns that the entire script will cover
+   */
+  public int getNumTurnsCovered()
+  {
+    return mNumTurns;
+  }
+
+  /**
+   * Set the (encoded) orders for a given turn, as for setTurnOrders()
+   * @param turnNumber turn number orders are being set for (0-based)
+   * @param encodedOrders encoded orders for that turn (TurnOrderEncoding.NONE for none)
+   * @throws ScriptException
+   */
+  void setEncodedTurnOrders(int turnNumber, int encodedOrders) throws ScriptException
+  {
+    if ( turnNumber < mNumTurns )
     {
-      if ( mTurnOrderList.get(turnNumber) != null )
+      if ( mTurnOrders[turnNumber] != TurnOrderEncoding.NONE )
       {
         throw new ScriptException("Attempt to set orders for turn " + turnNumber + " multiple times");
       }
-
-      mTurnOrderList.set(turnNumber, orders);
     }
     else
     {
-      //  We're not using a sparse list here since typically it won't be very sparse
-      //  so fill in the nulls
-      while ( mTurnOrderList.size() < turnNumber )
+      //  Turns skipped over are left with no orders
+      if ( turnNumber >= mTurnOrders.length )
       {
-        mTurnOrderList.add(null);
+        mTurnOrders = Arrays.copyOf(mTurnOrders, Math.max(turnNumber + 1, 2*mTurnOrders.length));
       }
+      mNumTurns = turnNumber + 1;
     }
 
-    mTurnOrderList.add(orders);
+    mTurnOrders[turnNumber] = (byte)encodedOrders;
   }
 
-  /**
-   * @param turnNumber turn to retrieve orders for (0-based)
-   * @return orders for that turn or null if there aren't any
-   */
-  public ShipTurnOrders getOrdersForTurn(int turnNumber)
+  @Override
+  public boolean coversTurn(int turnNumber)
   {
-    if ( turnNumber < mTurnOrderList.size() )
-    {
-      return mTurnOrderList.get(turnNumber);
-    }
-
-    return null;
+    return turnNumber < mNumTurns;
   }
 
-  /**
-   * @return number of turns that the entire script will cover
-   */
-  public int getNumTurnsCovered()
+  @Override
+  public int getEncodedOrdersForTurn(int turnNumber)
   {
-    return mTurnOrderList.size();
+    if ( turnNumber < mNumTurns )
+    {
+      return mTurnOrders[turnNumber];
+    }
+
+    return TurnOrderEncoding.NONE;
   }
 }
@@ -1,10 +1,8 @@
 package minemarker;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 /**
@@ -14,50 +12,31 @@ import java.util.Set;
  * @author steve
  *
  */
-public class SimpleMinefield implements Minefield
+public class SimpleMinefield extends AbstractMinefield
 {
   private final Set<Point>  mMines = new HashSet<>();
-  private Cuboid            mBoundingCuboid = null;
 
-  //  We use a private class to perform projection of the minefield onto the Z=0 plane
-  //  which is useful in generatingn the output format in a single pass
-  private class ZProjection
+  @Override
+  public void addMine(int x, int y, int z)
   {
-    private final Map<Point,Point> mProjectionMap = new HashMap<>();
-
-    ZProjection()
-    {
-      for(Point mine : mMines)
-      {
-        mProjectionMap.put(new Point(mine.getX(), mine.getY(), 0), mine);
-      }
-    }
-
-    Point getMineAt(int x, int y)
-    {
-      return mProjectionMap.get(new Point(x,y,0));
-    }
+    addMine(new Point(x, y, z));
   }
 
   @Override
   public void addMine(Point xiAtCoordinates)
   {
-    mMines.add(xiAtCoordinates);
-    if ( mBoundingCuboid == null || !mBoundingCuboid.contains(xiAtCoordinates))
+    checkChangeable();
+    if ( mMines.add(xiAtCoordinates) )
     {
-      updateBoundingCuboid();
+      mineAdded(xiAtCoordinates.getX(), xiAtCoordinates.getY(), xiAtCoordinates.getZ());
     }
   }
 
-  @Override
-  public Cuboid getBoundingCuboid()
-  {
-    return mBoundingCuboid;
-  }
-
   @Override
   public void clearRegion(Cuboid xiRegion)
   {
+    checkChangeable();
+
     List<Point> toRemove = new ArrayList<>();
 
     for(Point mine : mMines)
@@ -68,135 +47,68 @@ public class SimpleMinefield implements Minefield
       }
     }
 
-    mMines.removeAll(toRemove);
-
-    updateBoundingCuboid();
+    for(Point mine : toRemove)
+    {
+      mMines.remove(mine);
+      mineRemoved(mine.getX(), mine.getY(), mine.getZ());
+    }
   }
 
   @Override
-  public int getNumMines()
+  public void clearColumns(List<Point> xiColumnTops)
   {
-    return mMines.size();
-  }
+    checkChangeable();
 
-  @Override
-  public List<String> toOutputFormat(Point xiCenterOn) throws ModelException
-  {
-    List<String> result = new ArrayList<>();
+    //  A single pass over the mines for all the columns together
+    List<Point> toRemove = new ArrayList<>();
 
-    if ( mMines.isEmpty() )
-    {
-      //  Nothing here but the implicit ship
-      result.add(".");
-    }
-    else
+    for(Point mine : mMines)
     {
-      assert(mBoundingCuboid != null);
-
-      //  First calculate the bounds of the displayed projection to make the ship the center
-      int minMineX = mBoundingCuboid.getNorthWestTop().getX();
-      int maxMineX = mBoundingCuboid.getSouthEastBottom().getX();
-      int radiusX = Math.max(xiCenterOn.getX() - minMineX, maxMineX - xiCenterOn.getX());
-      int minMineY = mBoundingCuboid.getNorthWestTop().getY();
-      int maxMineY = mBoundingCuboid.getSouthEastBottom().getY();
-      int radiusY = Math.max(xiCenterOn.getY() - minMineY, maxMineY - xiCenterOn.getY());
-
-      //  Construct a projection of the minefield onto the Z==0 plane.  Using this we can then easily
-      //  construct the output point by point in the determined display rectangle
-      ZProjection zProjection = new ZProjection();
-
-      //  This is not exactly wildly efficient, but the scale is small so it'll be fine
-      //  form the problem space as defined
-      for(int y = xiCenterOn.getY() - radiusY; y <= xiCenterOn.getY() + radiusY; y++)
+      for(Point columnTop : xiColumnTops)
       {
-        StringBuilder outputLine = new StringBuilder();
-        for(int x = xiCenterOn.getX() - radiusX; x <= xiCenterOn.getX() + radiusX; x++)
+        if ( mine.getX() == columnTop.getX() && mine.getY() == columnTop.getY() && mine.getZ() >= columnTop.getZ() )
         {
-          char outputChar;
-          Point mine = zProjection.getMineAt(x, y);
-          if ( mine == null )
-          {
-            outputChar = '.';
-          }
-          else
-          {
-            int depth = mine.getZ() - xiCenterOn.getZ();
-            if ( depth < 1 )
-            {
-              outputChar = '*';
-            }
-            else if ( depth <= 26 )
-            {
-              outputChar = (char)('a' + (depth-1));
-            }
-            else if ( depth <= 52 )
-            {
-              outputChar = (char)('A' + (depth-27));
-            }
-            else
-            {
-              throw new ModelException("Unexpected model state for output generation - mines deeper than max representation depth");
-            }
-          }
-
-          outputLine.append(outputChar);
+          toRemove.add(mine);
+          break;
         }
-
-        result.add(outputLine.toString());
       }
     }
 
-    return result;
+    for(Point mine : toRemove)
+    {
+      mMines.remove(mine);
+      mineRemoved(mine.getX(), mine.getY(), mine.getZ());
+    }
   }
 
-  //  Update the bounding cuboid from the current list of mines
-  private void updateBoundingCuboid()
+  @Override
+  public int getNumMines()
   {
-    if ( mMines.isEmpty() )
-    {
-      mBoundingCuboid = null;
-    }
-    else
-    {
-      int lowestX = Integer.MAX_VALUE;
-      int lowestY = Integer.MAX_VALUE;
-      int lowestZ = Integer.MAX_VALUE;
-      int highestX = -Integer.MAX_VALUE;
-      int highestY = -Integer.MAX_VALUE;
-      int highestZ = -Integer.MAX_VALUE;
-
-      for(Point mine : mMines)
-      {
-        if ( mine.getX() < lowestX )
-        {
-          lowestX = mine.getX();
-        }
-        if ( mine.getX() > highestX )
-        {
-          highestX = mine.getX();
-        }
+    return mMines.size();
+  }
 
-        if ( mine.getY() < lowestY )
-        {
-          lowestY = mine.getY();
-        }
-        if ( mine.getY() > highestY )
-        {
-          highestY = mine.getY();
-        }
+  @Override
+  public boolean containsMine(int x, int y, int z)
+  {
+    return mMines.contains(new Point(x, y, z));
+  }
 
-        if ( mine.getZ() < lowestZ )
-        {
-          lowestZ = mine.getZ();
-        }
-        if ( mine.getZ() > highestZ )
-        {
-          highestZ = mine.getZ();
-        }
-      }
+  @Override
+  protected int findShallowestMineZ(int x, int y)
+  {
+    int bottomZ = getDeepestZ();
 
-      mBoundingCuboid = new Cuboid(new Point(lowestX, lowestY, lowestZ),
-                                   new Point(highestX, highestY, highestZ));
+    //  The probe points never escape, so once compiled they are normally not allocated at
+    //  all.  This engine is deliberately kept as a plain set of points, as the reference the
+    //  others are tested against, rather than sharing their primitive-keyed structures
+    for(int z = getShallowestZ(); z <= bottomZ; z++)
+    {
+      if ( mMines.contains(new Point(x, y, z)) )
+      {
+        return z;
+      }
     }
+
+    return NO_MINE;
   }
 }
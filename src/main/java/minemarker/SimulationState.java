@@ -1,8 +1,14 @@
 package minemarker;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import minemarker.MarkingMetrics.Phase;
+
 /**
  * Representation of the simulation state at any given step
  * @author steve
@@ -10,8 +16,10 @@ import java.util.List;
  */
 public class SimulationState
 {
+  private static final String         LINE_SEPARATOR = System.lineSeparator();
+
   private final SimulationEnvironment mEnvironment;
-  private final ShipOrders            mOrders;
+  private final OrdersSource          mOrders;
   private int                         mIteration = 0;
   private final int                   mInitialMineCount;
 
@@ -20,7 +28,7 @@ public class SimulationState
    * @param minefield the minefield we will be clearing
    * @param shipOrders the orders the sweeping ship has been given
    */
-  public SimulationState(Minefield minefield, ShipOrders shipOrders)
+  public SimulationState(Minefield minefield, OrdersSource shipOrders)
   {
     //  The ship, starts 'in the middle' of the (x,y-plane of the) minefield
     //  It is unclear what this means for minefields of even size in x or y
@@ -39,49 +47,128 @@ public class SimulationState
    * Execute the simulation and mark it, returning the required full output format as a string
    * @return the required marking output
    * @throws ModelException
+   * @throws ScriptException if the orders are found to be invalid as they are read
+   */
+  public List<String> runAndMark() throws ModelException, ScriptException
+  {
+    StringWriter output = new StringWriter();
+
+    try
+    {
+      runAndMark(output);
+    }
+    catch (IOException e)
+    {
+      //  Cannot happen writing to a StringWriter
+      throw new IllegalStateException(e);
+    }
+
+    //  Every line, including the last, is terminated, so drop the empty string after the final one
+    List<String> result = new ArrayList<>(Arrays.asList(output.toString().split("\\r?\\n", -1)));
+    result.remove(result.size()-1);
+
+    return result;
+  }
+
+  /**
+   * Execute the simulation and mark it, writing the required full output format to a
+   * specified destination as the simulation proceeds.  Nothing is accumulated, so memory
+   * use is independent of the length of the output.  Each line is terminated by the
+   * platform line separator, and the destination is not flushed
+   * @param output destination to write the marking output to
+   * @return the score achieved (0 for a fail)
+   * @throws ModelException
+   * @throws ScriptException if the orders are found to be invalid as they are read, in which
+   * case the output up to that point will already have been written
+   * @throws IOException
    */
-  public List<String> runAndMark() throws ModelException
+  public int runAndMark(Writer output) throws ModelException, ScriptException, IOException
   {
-    List<String> output = new ArrayList<>();
+    //  The minefield as displayed at the end of one step is exactly what is displayed again
+    //  at the start of the next (nothing happens between them), so each rendering is carried
+    //  forward and only the post-step state needs to be rendered on each step.  The same frame
+    //  buffer is reused throughout, so rendering does not allocate
+    long startNanos = System.nanoTime();
+    RenderedFrame currentMinefield = new RenderedFrame();
+    mEnvironment.getMinefield().render(mEnvironment.getShip().getCoordinates(), currentMinefield);
 
     do
     {
+      //  Output time for the step excludes reading the orders, which may be parsed from a stream
+      long outputStartNanos = System.nanoTime();
       //  Output step counter
-      output.add("Step " + (mIteration+1));
-      output.add(""); //  Blank line
+      writeLine(output, "Step " + (mIteration+1));
+      writeLine(output, ""); //  Blank line
       // Output current minefield
-      output.addAll(mEnvironment.getMinefield().toOutputFormat(mEnvironment.getShip().getCoordinates()));
-      output.add(""); //  Blank line
-      ShipTurnOrders turnOrders = mOrders.getOrdersForTurn(mIteration);
+      currentMinefield.writeTo(output, LINE_SEPARATOR);
+      writeLine(output, ""); //  Blank line
+      long outputNanos = System.nanoTime() - outputStartNanos;
+      int turnOrders = mOrders.getEncodedOrdersForTurn(mIteration);
+      outputStartNanos = System.nanoTime();
       //  Output current orders
-      output.add(turnOrders == null ? "" : turnOrders.toString());
-      output.add(""); //  Blank line
+      writeLine(output, TurnOrderEncoding.toString(turnOrders));
+      writeLine(output, ""); //  Blank line
+      outputNanos += System.nanoTime() - outputStartNanos;
 
-      if ( turnOrders != null )
-      {
-        mEnvironment.getShip().executeTurnOrders(turnOrders);
-      }
+      executeStep(turnOrders);
 
-      //  Drop the ship 1 Z-unit
-      mEnvironment.getShip().setCoordinates(mEnvironment.getShip().getCoordinates().displace(new Point(0,0,1)));
       // Output resulting minefield
-      output.addAll(mEnvironment.getMinefield().toOutputFormat(mEnvironment.getShip().getCoordinates()));
-      output.add(""); //  Blank line
-
-      mIteration++;
+      mEnvironment.getMinefield().render(mEnvironment.getShip().getCoordinates(), currentMinefield);
+      outputStartNanos = System.nanoTime();
+      currentMinefield.writeTo(output, LINE_SEPARATOR);
+      writeLine(output, ""); //  Blank line
+      MarkingMetrics.recordNanos(Phase.output, outputNanos + System.nanoTime() - outputStartNanos);
     } while( !terminal() );
 
     int score = calculateScore();
-    if ( score > 0 )
-    {
-      output.add("pass (" + score + ")");
-    }
-    else
+
+    writeLine(output, formatResult(score));
+
+    MarkingMetrics.record(Phase.simulation, startNanos);
+
+    return score;
+  }
+
+  /**
+   * Execute the simulation and score it, without producing any of the step by step
+   * output.  The simulation itself is identical to that performed by runAndMark()
+   * @return the score achieved (0 for a fail)
+   * @throws ModelException
+   * @throws ScriptException if the orders are found to be invalid as they are read
+   */
+  public int runAndScore() throws ModelException, ScriptException
+  {
+    long startNanos = System.nanoTime();
+
+    do
     {
-      output.add("fail (0)");
-    }
+      executeStep(mOrders.getEncodedOrdersForTurn(mIteration));
+    } while( !terminal() );
+
+    int score = calculateScore();
+
+    MarkingMetrics.record(Phase.simulation, startNanos);
+
+    return score;
+  }
+
+  /**
+   * Format a score as the final line of the marking output
+   * @param score score achieved
+   * @return final result line
+   */
+  public static String formatResult(int score)
+  {
+    return (score > 0 ? "pass (" + score + ")" : "fail (0)");
+  }
 
-    return output;
+  /**
+   * @return number of steps executed so far (on completion, the turn the simulation
+   * terminated after plus one)
+   */
+  public int getNumSteps()
+  {
+    return mIteration;
   }
 
   /**
@@ -93,21 +180,39 @@ public class SimulationState
     return mEnvironment.getMinefield().toOutputFormat(mEnvironment.getShip().getCoordinates());
   }
 
-  private boolean terminal()
+  //  Execute one step of the simulation with the specified (encoded) orders
+  private void executeStep(int turnOrders) throws ModelException
+  {
+    mEnvironment.getShip().executeTurnOrders(turnOrders);
+
+    //  Drop the ship 1 Z-unit
+    mEnvironment.getShip().setCoordinates(mEnvironment.getShip().getCoordinates().displace(new Point(0,0,1)));
+
+    mIteration++;
+  }
+
+  private static void writeLine(Writer output, String line) throws IOException
+  {
+    output.write(line);
+    output.write(LINE_SEPARATOR);
+  }
+
+  private boolean terminal() throws ScriptException
   {
     return mEnvironment.getMinefield().getNumMines() == 0 ||
-           mEnvironment.getMinefield().getBoundingCuboid().getNorthWestTop().getZ() <= mEnvironment.getShip().getCoordinates().getZ() ||
-           mIteration >= mOrders.getNumTurnsCovered();
+           mEnvironment.getMinefield().getShallowestZ() <= mEnvironment.getShip().getCoordinates().getZ() ||
+           !mOrders.coversTurn(mIteration);
   }
 
-  private int calculateScore()
+  private int calculateScore() throws ScriptException
   {
     if ( mEnvironment.getMinefield().getNumMines() > 0 )
     {
       return 0;
     }
 
-    if ( mIteration < mOrders.getNumTurnsCovered() )
+    //  Whether the script ran out is determined by peeking at the turn after the last one executed
+    if ( mOrders.coversTurn(mIteration) )
     {
       return 1;
     }
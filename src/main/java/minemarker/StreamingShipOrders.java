@@ -0,0 +1,89 @@
+package minemarker;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Ship orders read lazily from a script as the simulation consumes them, so that
+ * arbitrarily long scripts (including ones piped in from other tools) can be executed
+ * without holding them in memory.  Only the orders for the most recently read turn are
+ * retained, which suffices since the simulation only asks about the turn it is executing
+ * and (to determine whether the script has run out) the one after it.  Each line is
+ * validated as it is read, so an invalid script is only detected when the simulation
+ * reaches the offending line
+ * @author steve
+ *
+ */
+public class StreamingShipOrders implements OrdersSource, Closeable
+{
+  private final BufferedReader mInput;
+  private int                  mTurnNumber = -1;
+  private int                  mTurnOrders = TurnOrderEncoding.NONE;
+  private boolean              mExhausted = false;
+
+  /**
+   * Construct a source of orders read from a script in the ship script file format
+   * @param input script to read orders from
+   */
+  public StreamingShipOrders(Reader input)
+  {
+    mInput = (input instanceof BufferedReader ? (BufferedReader)input : new BufferedReader(input));
+  }
+
+  @Override
+  public boolean coversTurn(int turnNumber) throws ScriptException
+  {
+    readTo(turnNumber);
+
+    return (mTurnNumber == turnNumber);
+  }
+
+  @Override
+  public int getEncodedOrdersForTurn(int turnNumber) throws ScriptException
+  {
+    readTo(turnNumber);
+
+    return (mTurnNumber == turnNumber ? mTurnOrders : TurnOrderEncoding.NONE);
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    mInput.close();
+  }
+
+  //  Read (and validate) lines until that for the specified turn has been read, or the script runs out
+  private void readTo(int turnNumber) throws ScriptException
+  {
+    if ( turnNumber < mTurnNumber )
+    {
+      throw new IllegalArgumentException("Orders for turn " + turnNumber + " are no longer available having read to turn " + mTurnNumber);
+    }
+
+    while ( mTurnNumber < turnNumber && !mExhausted )
+    {
+      String line;
+
+      try
+      {
+        line = mInput.readLine();
+      }
+      catch (IOException e)
+      {
+        throw new ScriptException("Failed to read script at line " + (mTurnNumber+2) + ": " + e.getMessage(), e);
+      }
+
+      if ( line == null )
+      {
+        mExhausted = true;
+      }
+      else
+      {
+        mTurnNumber++;
+        mTurnOrders = ScriptFileParser.compileTurnOrders(line, mTurnNumber+1);
+      }
+    }
+  }
+}
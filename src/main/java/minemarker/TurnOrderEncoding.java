@@ -0,0 +1,201 @@
+package minemarker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import minemarker.Ship.ShipAction;
+
+/**
+ * Compact encoding of the orders for one turn in a single byte.  The low 3 bits hold
+ * the movement (if any), the next 3 bits the torpedo volley (if any), and a further bit
+ * records that the volley is ordered before the movement.  An encoding of 0 (NONE)
+ * represents a turn with no orders.  Decoding to actions or to the output format is by
+ * table lookup, so neither allocates
+ * @author steve
+ *
+ */
+public final class TurnOrderEncoding
+{
+  /**
+   * Encoding of a turn with no orders
+   */
+  public static final int              NONE = 0;
+
+  private static final int             MOVE_MASK = 0x07;
+  private static final int             VOLLEY_SHIFT = 3;
+  private static final int             VOLLEY_MASK = 0x07 << VOLLEY_SHIFT;
+  private static final int             VOLLEY_FIRST = 0x40;
+  private static final int             NUM_ENCODINGS = 0x80;
+
+  private static final ShipAction[]    NO_ACTIONS = new ShipAction[0];
+
+  //  Field value for each action within its (movement or volley) field
+  private static final int[]           FIELD_VALUES = new int[ShipAction.values().length];
+  //  Actions in order, and output format, indexed by encoding
+  private static final ShipAction[][]  ACTIONS = new ShipAction[NUM_ENCODINGS][];
+  private static final String[]        STRINGS = new String[NUM_ENCODINGS];
+
+  static
+  {
+    List<ShipAction> moves = new ArrayList<>();
+    List<ShipAction> volleys = new ArrayList<>();
+
+    for(ShipAction action : ShipAction.values())
+    {
+      List<ShipAction> field = (action.isMovement() ? moves : volleys);
+
+      field.add(action);
+      FIELD_VALUES[action.ordinal()] = field.size();
+    }
+
+    for(int code = 0; code < NUM_ENCODINGS; code++)
+    {
+      int move = code & MOVE_MASK;
+      int volley = (code & VOLLEY_MASK) >>> VOLLEY_SHIFT;
+      boolean volleyFirst = (code & VOLLEY_FIRST) != 0;
+
+      //  Only canonical encodings get table entries - the order flag is only ever set
+      //  when there are both a movement and a volley
+      if ( move <= moves.size() && volley <= volleys.size() && !(volleyFirst && (move == 0 || volley == 0)) )
+      {
+        List<ShipAction> actions = new ArrayList<>();
+
+        if ( move != 0 )
+        {
+          actions.add(moves.get(move-1));
+        }
+        if ( volley != 0 )
+        {
+          actions.add(volleyFirst ? 0 : actions.size(), volleys.get(volley-1));
+        }
+
+        ACTIONS[code] = actions.toArray(NO_ACTIONS);
+
+        StringBuilder string = new StringBuilder();
+        for(ShipAction action : actions)
+        {
+          if ( string.length() > 0 )
+          {
+            string.append(" ");
+          }
+          string.append(action);
+        }
+        STRINGS[code] = string.toString();
+      }
+    }
+  }
+
+  private TurnOrderEncoding()
+  {
+  }
+
+  /**
+   * Add an action to encoded turn orders, subject to the same rules as
+   * ShipTurnOrders.AddAction()
+   * @param code encoded orders to add to
+   * @param action action to add
+   * @return encoded orders with the action added
+   * @throws ScriptException thrown if the added action is illegal
+   */
+  public static int addAction(int code, ShipAction action) throws ScriptException
+  {
+    int move = code & MOVE_MASK;
+    int volley = code & VOLLEY_MASK;
+
+    if ( move != 0 && volley != 0 )
+    {
+      throw new ScriptException("Too many actions in one turn");
+    }
+
+    if ( action.isMovement() )
+    {
+      if ( move != 0 )
+      {
+        throw new ScriptException("Only a single movement action per turn is allowed");
+      }
+
+      return code | FIELD_VALUES[action.ordinal()] | (volley != 0 ? VOLLEY_FIRST : 0);
+    }
+
+    if ( volley != 0 )
+    {
+      throw new ScriptException("Only a single firing action per turn is allowed");
+    }
+
+    return code | (FIELD_VALUES[action.ordinal()] << VOLLEY_SHIFT);
+  }
+
+  /**
+   * @param turnOrders orders to encode (may be null for none)
+   * @return encoding of the orders
+   */
+  public static int encode(ShipTurnOrders turnOrders)
+  {
+    int code = NONE;
+
+    if ( turnOrders != null )
+    {
+      try
+      {
+        for(ShipAction action : turnOrders.getActions())
+        {
+          code = addAction(code, action);
+        }
+      }
+      catch (ScriptException e)
+      {
+        //  Cannot happen since ShipTurnOrders applies the same rules as its actions are added
+        throw new IllegalStateException(e);
+      }
+    }
+
+    return code;
+  }
+
+  /**
+   * @param code encoded orders
+   * @return the orders, or null for NONE
+   */
+  public static ShipTurnOrders decode(int code)
+  {
+    if ( code == NONE )
+    {
+      return null;
+    }
+
+    ShipTurnOrders result = new ShipTurnOrders();
+
+    try
+    {
+      for(ShipAction action : ACTIONS[code])
+      {
+        result.AddAction(action);
+      }
+    }
+    catch (ScriptException e)
+    {
+      //  Cannot happen since encodings only ever represent legal orders
+      throw new IllegalStateException(e);
+    }
+
+    return result;
+  }
+
+  /**
+   * @param code encoded orders
+   * @return the (ordered) actions.  The returned array is shared, so must not be modified
+   */
+  public static ShipAction[] getActions(int code)
+  {
+    return ACTIONS[code];
+  }
+
+  /**
+   * @param code encoded orders
+   * @return the orders in output format (as ShipTurnOrders.toString(), or an empty string for NONE)
+   */
+  public static String toString(int code)
+  {
+    return STRINGS[code];
+  }
+}
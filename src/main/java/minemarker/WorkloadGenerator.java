@@ -0,0 +1,280 @@
+package minemarker;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generator of synthetic minefield files and ship scripts, in exactly the formats the
+ * parsers accept, for load testing and benchmarking.  Generation is deterministic - the
+ * same seed and parameters always produce the same bytes (java.util.Random being fully
+ * specified), and the minefield and script are generated from independent streams, so
+ * either can be regenerated alone.  Output is written a row (or line) at a time, so files
+ * of any size can be generated in constant memory (bar one row of the minefield), and
+ * rather than drawing a random number per cell the gap to the next mine is drawn, so
+ * sparse minefields are generated at close to the speed they can be written
+ * @author steve
+ *
+ */
+public class WorkloadGenerator
+{
+  /**
+   * Filename which specifies that output be written to the standard output
+   */
+  public static final String STDOUT_FILENAME = "-";
+  /**
+   * Greatest depth a minefield file can specify
+   */
+  public static final int    MAX_DEPTH = 52;
+  /**
+   * Probability of each turn of a script including a torpedo volley, unless otherwise specified
+   */
+  public static final double DEFAULT_VOLLEY_PROBABILITY = 0.75;
+  /**
+   * Probability of each turn of a script including a movement, unless otherwise specified
+   */
+  public static final double DEFAULT_MOVE_PROBABILITY = 0.5;
+
+  /**
+   * Distribution of the depths of generated mines
+   * @author steve
+   *
+   */
+  public enum DepthDistribution
+  {
+    /**
+     * Every depth up to the maximum equally likely
+     */
+    uniform,
+    /**
+     * Shallower depths more likely (the shallower of two uniform depths)
+     */
+    shallow,
+    /**
+     * Deeper depths more likely (the deeper of two uniform depths)
+     */
+    deep
+  }
+
+  private static final int      OUTPUT_BUFFER_SIZE = 1 << 16;
+  //  Mixed into the seed for the script, so that it is independent of the minefield
+  private static final long     SCRIPT_SEED_MIX = 0x5DEECE66DL;
+
+  //  Minefield file character for each depth (index 0 is an empty cell)
+  private static final byte[]   DEPTH_CHARS = ".abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[]   NEWLINE = { '\n' };
+  private static final byte[]   SEPARATOR = { ' ' };
+  private static final byte[][] MOVES = toBytes("north", "south", "east", "west");
+  private static final byte[][] VOLLEYS = toBytes("alpha", "beta", "gamma", "delta");
+
+  private final long            mSeed;
+
+  /**
+   * Construct a generator
+   * @param seed seed from which everything generated is derived
+   */
+  public WorkloadGenerator(long seed)
+  {
+    mSeed = seed;
+  }
+
+  /**
+   * Generate a minefield file
+   * @param filename file to write (or STDOUT_FILENAME)
+   * @param width number of cells in each row
+   * @param height number of rows
+   * @param density probability of each cell holding a mine
+   * @param maxDepth greatest depth of any mine (1 to MAX_DEPTH)
+   * @param depths distribution of the depths of the mines
+   * @return number of mines generated
+   * @throws IOException
+   */
+  public long writeMinefield(String filename, int width, int height, double density, int maxDepth, DepthDistribution depths) throws IOException
+  {
+    try (OutputStream output = openOutput(filename))
+    {
+      return writeMinefield(output, width, height, density, maxDepth, depths);
+    }
+  }
+
+  /**
+   * Generate a minefield file.  The minefield always has at least one mine (as the parser
+   * requires), so if the density is so low that there would otherwise be none the last
+   * cell holds one
+   * @param output destination to write the file content to (which is not closed or flushed)
+   * @param width number of cells in each row
+   * @param height number of rows
+   * @param density probability of each cell holding a mine
+   * @param maxDepth greatest depth of any mine (1 to MAX_DEPTH)
+   * @param depths distribution of the depths of the mines
+   * @return number of mines generated
+   * @throws IOException
+   */
+  public long writeMinefield(OutputStream output, int width, int height, double density, int maxDepth, DepthDistribution depths) throws IOException
+  {
+    if ( width < 1 || width == Integer.MAX_VALUE || height < 1 || !(density >= 0 && density <= 1) || maxDepth < 1 || maxDepth > MAX_DEPTH )
+    {
+      throw new IllegalArgumentException("Invalid minefield parameters: " + width + "x" + height + ", density " + density + ", maximum depth " + maxDepth);
+    }
+
+    Random random = new Random(mSeed);
+    byte[] row = new byte[width + 1];
+    long numMines = 0;
+    //  Offset of the next mine from the start of the current row
+    long nextMine = nextGap(random, density);
+
+    row[width] = '\n';
+    for(int y = 0; y < height; y++)
+    {
+      Arrays.fill(row, 0, width, DEPTH_CHARS[0]);
+
+      while ( nextMine < width )
+      {
+        row[(int)nextMine] = DEPTH_CHARS[nextDepth(random, maxDepth, depths)];
+        numMines++;
+        nextMine += 1 + nextGap(random, density);
+      }
+      nextMine -= width;
+
+      if ( y == height - 1 && numMines == 0 )
+      {
+        row[width - 1] = DEPTH_CHARS[nextDepth(random, maxDepth, depths)];
+        numMines++;
+      }
+
+      output.write(row);
+    }
+
+    return numMines;
+  }
+
+  /**
+   * Generate a ship script file
+   * @param filename file to write (or STDOUT_FILENAME)
+   * @param numTurns number of turns (lines)
+   * @param volleyProbability probability of each turn including a torpedo volley
+   * @param moveProbability probability of each turn including a movement
+   * @throws IOException
+   */
+  public void writeScript(String filename, long numTurns, double volleyProbability, double moveProbability) throws IOException
+  {
+    try (OutputStream output = openOutput(filename))
+    {
+      writeScript(output, numTurns, volleyProbability, moveProbability);
+    }
+  }
+
+  /**
+   * Generate a ship script file.  Each turn has each of a random volley and a random movement
+   * with the specified probabilities, in either order
+   * @param output destination to write the file content to (which is not closed or flushed)
+   * @param numTurns number of turns (lines)
+   * @param volleyProbability probability of each turn including a torpedo volley
+   * @param moveProbability probability of each turn including a movement
+   * @throws IOException
+   */
+  public void writeScript(OutputStream output, long numTurns, double volleyProbability, double moveProbability) throws IOException
+  {
+    if ( numTurns < 0 || !(volleyProbability >= 0 && volleyProbability <= 1) || !(moveProbability >= 0 && moveProbability <= 1) )
+    {
+      throw new IllegalArgumentException("Invalid script parameters: " + numTurns + " turns, volley probability " + volleyProbability + ", move probability " + moveProbability);
+    }
+
+    Random random = new Random(mSeed ^ SCRIPT_SEED_MIX);
+
+    for(long turn = 0; turn < numTurns; turn++)
+    {
+      byte[] volley = (random.nextDouble() < volleyProbability ? VOLLEYS[random.nextInt(VOLLEYS.length)] : null);
+      byte[] move = (random.nextDouble() < moveProbability ? MOVES[random.nextInt(MOVES.length)] : null);
+
+      byte[] first = volley;
+      byte[] second = move;
+
+      if ( volley != null && move != null && random.nextBoolean() )
+      {
+        first = move;
+        second = volley;
+      }
+
+      if ( first != null )
+      {
+        output.write(first);
+      }
+      if ( first != null && second != null )
+      {
+        output.write(SEPARATOR);
+      }
+      if ( second != null )
+      {
+        output.write(second);
+      }
+      output.write(NEWLINE);
+    }
+  }
+
+  //  Number of empty cells before the next mine, which is geometrically distributed
+  private static long nextGap(Random random, double density)
+  {
+    if ( density >= 1 )
+    {
+      return 0;
+    }
+    if ( density <= 0 )
+    {
+      return Long.MAX_VALUE/2;
+    }
+
+    return (long)Math.min(Math.log(1 - random.nextDouble())/Math.log(1 - density), Long.MAX_VALUE/2);
+  }
+
+  private static int nextDepth(Random random, int maxDepth, DepthDistribution depths)
+  {
+    int depth = 1 + random.nextInt(maxDepth);
+
+    switch(depths)
+    {
+      case shallow:
+        return Math.min(depth, 1 + random.nextInt(maxDepth));
+      case deep:
+        return Math.max(depth, 1 + random.nextInt(maxDepth));
+      default:
+        return depth;
+    }
+  }
+
+  //  Open a file to generate into, buffered as output is written in small pieces
+  private static OutputStream openOutput(String filename) throws IOException
+  {
+    if ( filename.equals(STDOUT_FILENAME) )
+    {
+      //  Not to be closed, so wrapped such that closing just flushes
+      return new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), OUTPUT_BUFFER_SIZE)
+      {
+        @Override
+        public void close() throws IOException
+        {
+          flush();
+        }
+      };
+    }
+
+    return new BufferedOutputStream(new FileOutputStream(filename), OUTPUT_BUFFER_SIZE);
+  }
+
+  private static byte[][] toBytes(String... strings)
+  {
+    byte[][] result = new byte[strings.length][];
+
+    for(int index = 0; index < strings.length; index++)
+    {
+      result[index] = strings[index].getBytes(StandardCharsets.US_ASCII);
+    }
+
+    return result;
+  }
+}
@@ -0,0 +1,240 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedList;
+import java.util.Random;
+
+import minemarker.AnalyticalScorer;
+import minemarker.MinefieldFileParseException;
+import minemarker.MinefieldFileParser;
+import minemarker.ModelException;
+import minemarker.ScriptException;
+import minemarker.ScriptFileParser;
+import minemarker.SimulationState;
+import minemarker.StreamingShipOrders;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Tests that the analytical scorer gives the same score, after the same number of steps,
+ * as stepping the simulation, for the full-system test data and for random minefields
+ * and scripts.  With the orders streamed, an invalid line is appended to each script, which
+ * must be reported by both or neither, since neither may read further than it needs to
+ * @author steve
+ *
+ */
+@RunWith(Parameterized.class)
+public class AnalyticalScorerTest extends Assert
+{
+  private static final String[] MOVES = { "north", "south", "east", "west" };
+  private static final String[] VOLLEYS = { "alpha", "beta", "gamma", "delta" };
+
+  /**
+   * @return Iterable set of test cases
+   * @throws IOException
+   */
+  @Parameters(name="{0}")
+  public static Iterable<? extends Object> data() throws IOException
+  {
+    LinkedList<Object[]> lTests = new LinkedList<>();
+
+    for(int lCase = 1; lCase <= 7; lCase++)
+    {
+      lTests.add(new Object[]
+      {
+        "Case " + lCase,
+        new String(Files.readAllBytes(Paths.get("src/test/data/minefield" + lCase + ".txt")), StandardCharsets.UTF_8),
+        new String(Files.readAllBytes(Paths.get("src/test/data/script" + lCase + ".txt")), StandardCharsets.UTF_8)
+      });
+    }
+
+    //  Terminates (all mines cleared) before the script's second line
+    lTests.add(new Object[] { "Cleared early", "z\n", "gamma\nnorth\n" });
+
+    Random lRandom = new Random(4321);
+    for(int lCase = 1; lCase <= 200; lCase++)
+    {
+      lTests.add(new Object[]
+      {
+        "Random " + lCase,
+        randomMinefield(lRandom),
+        randomScript(lRandom)
+      });
+    }
+
+    return lTests;
+  }
+
+  /**
+   * Name for the test case
+   */
+  @Parameter(value = 0) public String mTestName;
+  /**
+   * Minefield file content
+   */
+  @Parameter(value = 1) public String mMinefield;
+  /**
+   * Script file content
+   */
+  @Parameter(value = 2) public String mScript;
+
+  /**
+   * Score the case both analytically and by stepping the simulation, and check they agree
+   */
+  @Test
+  public void test()
+  {
+    File minefieldFile = null;
+
+    try
+    {
+      minefieldFile = File.createTempFile("minefield", ".txt");
+      Files.write(minefieldFile.toPath(), mMinefield.getBytes(StandardCharsets.UTF_8));
+
+      SimulationState simulation = new SimulationState(MinefieldFileParser.parse(minefieldFile.getPath()), ScriptFileParser.parseString(mScript));
+      AnalyticalScorer scorer = new AnalyticalScorer(MinefieldFileParser.parsePackedMines(minefieldFile.getPath()), ScriptFileParser.parseString(mScript));
+
+      assertEquals(simulation.runAndScore(), scorer.score());
+      assertEquals(simulation.getNumSteps(), scorer.getNumSteps());
+    }
+    catch (IOException | MinefieldFileParseException | ModelException | ScriptException e)
+    {
+      e.printStackTrace();
+      fail("Unexpected exception");
+    }
+    finally
+    {
+      if ( minefieldFile != null )
+      {
+        minefieldFile.delete();
+      }
+    }
+  }
+
+  /**
+   * Score the case both ways with the orders streamed, followed by an invalid line, and
+   * check they agree, including on whether the invalid line is reached
+   */
+  @Test
+  public void testStreamed()
+  {
+    File minefieldFile = null;
+
+    try
+    {
+      minefieldFile = File.createTempFile("minefield", ".txt");
+      Files.write(minefieldFile.toPath(), mMinefield.getBytes(StandardCharsets.UTF_8));
+
+      String stepped;
+      String analytic;
+
+      try (StreamingShipOrders orders = new StreamingShipOrders(new StringReader(mScript + "bogus\n")))
+      {
+        SimulationState simulation = new SimulationState(MinefieldFileParser.parse(minefieldFile.getPath()), orders);
+
+        stepped = simulation.runAndScore() + " after " + simulation.getNumSteps();
+      }
+      catch (ScriptException e)
+      {
+        stepped = "invalid";
+      }
+
+      try (StreamingShipOrders orders = new StreamingShipOrders(new StringReader(mScript + "bogus\n")))
+      {
+        AnalyticalScorer scorer = new AnalyticalScorer(MinefieldFileParser.parsePackedMines(minefieldFile.getPath()), orders);
+
+        analytic = scorer.score() + " after " + scorer.getNumSteps();
+      }
+      catch (ScriptException e)
+      {
+        analytic = "invalid";
+      }
+
+      assertEquals(stepped, analytic);
+    }
+    catch (IOException | MinefieldFileParseException | ModelException e)
+    {
+      e.printStackTrace();
+      fail("Unexpected exception");
+    }
+    finally
+    {
+      if ( minefieldFile != null )
+      {
+        minefieldFile.delete();
+      }
+    }
+  }
+
+  //  Small minefield with at least one mine, often tiny and shallow so that scripts can clear it
+  private static String randomMinefield(Random random)
+  {
+    int maxSize = (random.nextBoolean() ? 3 : 9);
+    int width = 1 + random.nextInt(maxSize);
+    int height = 1 + random.nextInt(maxSize);
+    int maxDepth = 1 + random.nextInt(random.nextBoolean() ? 8 : 52);
+    StringBuilder result = new StringBuilder();
+    boolean anyMines = false;
+
+    for(int y = 0; y < height; y++)
+    {
+      for(int x = 0; x < width; x++)
+      {
+        boolean lastCell = (y == height - 1 && x == width - 1);
+
+        if ( random.nextInt(4) == 0 || (lastCell && !anyMines) )
+        {
+          int depth = 1 + random.nextInt(maxDepth);
+
+          result.append((char)(depth <= 26 ? 'a' + depth - 1 : 'A' + depth - 27));
+          anyMines = true;
+        }
+        else
+        {
+          result.append('.');
+        }
+      }
+      result.append('\n');
+    }
+
+    return result.toString();
+  }
+
+  //  Script of random turns, each with an optional volley and movement in either order
+  private static String randomScript(Random random)
+  {
+    int numTurns = random.nextInt(20);
+    StringBuilder result = new StringBuilder();
+
+    for(int turn = 0; turn < numTurns; turn++)
+    {
+      String volley = (random.nextInt(4) == 0 ? null : VOLLEYS[random.nextInt(VOLLEYS.length)]);
+      String move = (random.nextInt(2) == 0 ? null : MOVES[random.nextInt(MOVES.length)]);
+
+      if ( volley != null && move != null )
+      {
+        result.append(random.nextBoolean() ? volley + " " + move : move + " " + volley);
+      }
+      else if ( volley != null )
+      {
+        result.append(volley);
+      }
+      else if ( move != null )
+      {
+        result.append(move);
+      }
+      result.append('\n');
+    }
+
+    return result.toString();
+  }
+}
@@ -0,0 +1,130 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import minemarker.BatchException;
+import minemarker.BatchJob;
+import minemarker.BatchMarker;
+import minemarker.FileHelper;
+import minemarker.MinefieldEngine;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Tests for batch marking, which marks the full-system test data as a single batch
+ * and checks each job's output is as it would be marked on its own, and that results
+ * are reported in job order however many threads mark them.  Each job may be repeated,
+ * in which case the jobs with the same minefield share a single parse of it.  Each batch
+ * is marked twice by the same marker, which must report the same results both times
+ * @author steve
+ *
+ */
+@RunWith(Parameterized.class)
+public class BatchMarkerTest extends Assert
+{
+  /**
+   * @return Iterable set of test cases
+   */
+  @Parameters(name="{0} threads, {1} of each job")
+  public static Iterable<? extends Object> data()
+  {
+    LinkedList<Object[]> lTests = new LinkedList<>();
+
+    lTests.add(new Object[] { 1, 1 });
+    lTests.add(new Object[] { 3, 1 });
+    lTests.add(new Object[] { 16, 1 });
+    lTests.add(new Object[] { 1, 3 });
+    lTests.add(new Object[] { 16, 3 });
+
+    return lTests;
+  }
+
+  /**
+   * Number of worker threads to mark with
+   */
+  @Parameter(value = 0) public int mNumThreads;
+  /**
+   * Number of times each job of the test data is repeated in the batch
+   */
+  @Parameter(value = 1) public int mNumRepeats;
+
+  /**
+   * Mark the test data directory as a batch and check the results
+   */
+  @Test
+  public void test()
+  {
+    File outputDirectory = null;
+
+    try
+    {
+      outputDirectory = Files.createTempDirectory("batch").toFile();
+
+      List<BatchJob> jobs = new ArrayList<>();
+
+      for(BatchJob job : BatchMarker.loadJobs("src/test/data"))
+      {
+        for(int repeat = 0; repeat < mNumRepeats; repeat++)
+        {
+          jobs.add(new BatchJob(job.getMinefieldFilename(), job.getScriptFilename(), job.getOutputName() + (repeat == 0 ? "" : "." + repeat)));
+        }
+      }
+
+      BatchMarker marker = new BatchMarker(MinefieldEngine.auto, mNumThreads, outputDirectory.getPath());
+      StringWriter results = new StringWriter();
+
+      marker.run(jobs, results);
+
+      String[] resultLines = results.toString().split("\\r?\\n");
+
+      assertEquals(jobs.size() + 1, resultLines.length);
+      for(int jobIndex = 0; jobIndex < jobs.size(); jobIndex++)
+      {
+        BatchJob job = jobs.get(jobIndex);
+        List<String> checkLines = FileHelper.readLines(new File("src/test/data", jobs.get(jobIndex - jobIndex % mNumRepeats).getOutputName()).getPath());
+        List<String> outputLines = FileHelper.readLines(new File(outputDirectory, job.getOutputName()).getPath());
+
+        assertEquals(checkLines, outputLines);
+        assertEquals(job + ": " + checkLines.get(checkLines.size()-1), resultLines[jobIndex]);
+      }
+
+      assertEquals(0, marker.getNumErrors());
+      assertEquals(jobs.size(), marker.getNumPassed() + marker.getNumFailed());
+      assertEquals("Marked " + jobs.size() + " jobs: " + marker.getNumPassed() + " passed, " + marker.getNumFailed() + " failed, 0 errors",
+                   resultLines[jobs.size()]);
+
+      //  Marking the batch again reports just the same results, not those of both runs
+      StringWriter rerunResults = new StringWriter();
+
+      marker.run(jobs, rerunResults);
+      assertEquals(results.toString(), rerunResults.toString());
+      assertEquals(jobs.size(), marker.getNumPassed() + marker.getNumFailed());
+    }
+    catch (IOException | BatchException | InterruptedException e)
+    {
+      e.printStackTrace();
+      fail("Unexpected exception");
+    }
+    finally
+    {
+      if ( outputDirectory != null )
+      {
+        for(File output : outputDirectory.listFiles())
+        {
+          output.delete();
+        }
+        outputDirectory.delete();
+      }
+    }
+  }
+}
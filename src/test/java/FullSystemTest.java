@@ -4,6 +4,7 @@ import java.util.List;
 
 import minemarker.FileHelper;
 import minemarker.Minefield;
+import minemarker.MinefieldEngine;
 import minemarker.MinefieldFileParseException;
 import minemarker.MinefieldFileParser;
 import minemarker.ModelException;
@@ -11,6 +12,7 @@ import minemarker.ScriptException;
 import minemarker.ScriptFileParser;
 import minemarker.ShipOrders;
 import minemarker.SimulationState;
+import minemarker.StreamingShipOrders;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -31,7 +33,7 @@ public class FullSystemTest extends Assert
   /**
    * @return Iterable set of test cases
    */
-  @Parameters(name="{1}")
+  @Parameters(name="{1} ({3})")
   public static Iterable<? extends Object> data()
   {
     LinkedList<Object[]> lTests = new LinkedList<>();
@@ -85,7 +87,17 @@ public class FullSystemTest extends Assert
       "src/test/data/output7.txt"
     });
 
-    return lTests;
+    //  Run every case with each of the minefield storage engines
+    LinkedList<Object[]> lEngineTests = new LinkedList<>();
+    for(Object[] lTest : lTests)
+    {
+      for(MinefieldEngine lEngine : MinefieldEngine.values())
+      {
+        lEngineTests.add(new Object[] { lTest[0], lTest[1], lTest[2], lEngine });
+      }
+    }
+
+    return lEngineTests;
   }
 
   /**
@@ -100,6 +112,10 @@ public class FullSystemTest extends Assert
    * String specifying the expected output file
    */
   @Parameter(value = 2) public String mExpectedOutputFile;
+  /**
+   * Minefield storage engine to use
+   */
+  @Parameter(value = 3) public MinefieldEngine mEngine;
 
 
   /**
@@ -112,7 +128,7 @@ public class FullSystemTest extends Assert
   {
     try
     {
-      Minefield minefield = MinefieldFileParser.parse(mMinefieldSpecFile);
+      Minefield minefield = MinefieldFileParser.parse(mMinefieldSpecFile, mEngine);
       ShipOrders orders = ScriptFileParser.parse(mScriptSpecFile);
       SimulationState simulator = new SimulationState(minefield, orders);
 
@@ -127,6 +143,30 @@ public class FullSystemTest extends Assert
       {
         assertEquals(checkLines.get(lineNum++), outputLine );
       }
+
+      //  Score-only marking of the same inputs must reach the same result
+      SimulationState scoringSimulator = new SimulationState(MinefieldFileParser.parse(mMinefieldSpecFile, mEngine),
+                                                             ScriptFileParser.parse(mScriptSpecFile));
+
+      assertEquals(checkLines.get(checkLines.size()-1), SimulationState.formatResult(scoringSimulator.runAndScore()));
+
+      //  Marking against forks of a shared minefield must produce identical output for each
+      Minefield sharedMinefield = MinefieldFileParser.parse(mMinefieldSpecFile, mEngine).snapshot();
+
+      for(int forkIndex = 0; forkIndex < 2; forkIndex++)
+      {
+        SimulationState forkSimulator = new SimulationState(sharedMinefield.fork(), ScriptFileParser.parse(mScriptSpecFile));
+
+        assertEquals(simulationResult, forkSimulator.runAndMark());
+      }
+
+      //  Marking with the script read as the simulation proceeds must produce identical output
+      try (StreamingShipOrders streamedOrders = ScriptFileParser.stream(mScriptSpecFile))
+      {
+        SimulationState streamingSimulator = new SimulationState(MinefieldFileParser.parse(mMinefieldSpecFile, mEngine), streamedOrders);
+
+        assertEquals(simulationResult, streamingSimulator.runAndMark());
+      }
     }
     catch (MinefieldFileParseException | ModelException | ScriptException | IOException e)
     {
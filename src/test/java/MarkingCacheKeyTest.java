@@ -0,0 +1,122 @@
+import java.util.LinkedList;
+
+import minemarker.MarkingCache;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Tests for the keys of the marking result cache, which must be the same for content
+ * that is parsed the same, and differ otherwise
+ * @author steve
+ *
+ */
+@RunWith(Parameterized.class)
+public class MarkingCacheKeyTest extends Assert
+{
+  /**
+   * @return Iterable set of test cases
+   */
+  @Parameters(name="{0}")
+  public static Iterable<? extends Object> data()
+  {
+    LinkedList<Object[]> lTests = new LinkedList<>();
+
+    lTests.add(new Object[]
+    {
+      "Identical",
+      ".a.\n...", "north\nalpha\n",
+      ".a.\n...", "north\nalpha\n",
+      true
+    });
+    lTests.add(new Object[]
+    {
+      "CRLF line endings",
+      ".a.\n...", "north\nalpha\n",
+      ".a.\r\n...", "north\r\nalpha\r\n",
+      true
+    });
+    lTests.add(new Object[]
+    {
+      "CR line endings",
+      ".a.\n...", "north\nalpha\n",
+      ".a.\r...", "north\ralpha\r",
+      true
+    });
+    lTests.add(new Object[]
+    {
+      "Unterminated last line",
+      ".a.\n...\n", "north\nalpha\n",
+      ".a.\n...", "north\nalpha",
+      true
+    });
+    lTests.add(new Object[]
+    {
+      "Trailing blank line",
+      ".a.\n...", "north\nalpha\n",
+      ".a.\n...", "north\nalpha\n\n",
+      false
+    });
+    lTests.add(new Object[]
+    {
+      "Different minefield",
+      ".a.\n...", "north\nalpha\n",
+      ".b.\n...", "north\nalpha\n",
+      false
+    });
+    lTests.add(new Object[]
+    {
+      "Content moved between minefield and script",
+      ".a.\n...", "north\nalpha\n",
+      ".a.", "\n...north\nalpha\n",
+      false
+    });
+
+    return lTests;
+  }
+
+  /**
+   * Name for the test case
+   */
+  @Parameter(value = 0) public String mTestName;
+  /**
+   * First minefield content
+   */
+  @Parameter(value = 1) public String mMinefield1;
+  /**
+   * First script content
+   */
+  @Parameter(value = 2) public String mScript1;
+  /**
+   * Second minefield content
+   */
+  @Parameter(value = 3) public String mMinefield2;
+  /**
+   * Second script content
+   */
+  @Parameter(value = 4) public String mScript2;
+  /**
+   * Whether the two should have the same key
+   */
+  @Parameter(value = 5) public boolean mShouldMatch;
+
+  /**
+   * Compare the keys of the two jobs
+   */
+  @Test
+  public void test()
+  {
+    String key1 = MarkingCache.key(mMinefield1.getBytes(), mScript1.getBytes(), false);
+    String key2 = MarkingCache.key(mMinefield2.getBytes(), mScript2.getBytes(), false);
+
+    assertEquals(mShouldMatch, key1.equals(key2));
+
+    //  Score only results are never interchangeable with full ones
+    assertNotEquals(key1, MarkingCache.key(mMinefield1.getBytes(), mScript1.getBytes(), true));
+  }
+}
@@ -0,0 +1,152 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import minemarker.FileHelper;
+import minemarker.MarkingCache;
+import minemarker.MarkingResult;
+import minemarker.MinefieldEngine;
+import minemarker.MinefieldFileParseException;
+import minemarker.ModelException;
+import minemarker.ScriptException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Tests for the marking result cache, which marks the full-system test data twice
+ * through a cache and checks the results are always as marked without it, and that
+ * the second pass is served from the cache as far as its bounds allow
+ * @author steve
+ *
+ */
+@RunWith(Parameterized.class)
+public class MarkingCacheTest extends Assert
+{
+  private static final int NUM_CASES = 7;
+
+  /**
+   * @return Iterable set of test cases
+   */
+  @Parameters(name="{0}")
+  public static Iterable<? extends Object> data()
+  {
+    LinkedList<Object[]> lTests = new LinkedList<>();
+
+    lTests.add(new Object[]
+    {
+      "Everything fits in memory",
+      1L << 20, false,
+      NUM_CASES, 0, false
+    });
+    lTests.add(new Object[]
+    {
+      "Nothing fits in memory",
+      1L, false,
+      0, 0, false
+    });
+    lTests.add(new Object[]
+    {
+      "Some things fit in memory",
+      3000L, false,
+      -1, 0, true
+    });
+    lTests.add(new Object[]
+    {
+      "Nothing fits in memory but everything on disk",
+      1L, true,
+      NUM_CASES, NUM_CASES, false
+    });
+
+    return lTests;
+  }
+
+  /**
+   * Name for the test case
+   */
+  @Parameter(value = 0) public String mTestName;
+  /**
+   * Bound on the memory used by the cache
+   */
+  @Parameter(value = 1) public long mMaxMemoryBytes;
+  /**
+   * Whether to also cache on disk
+   */
+  @Parameter(value = 2) public boolean mUseDisk;
+  /**
+   * Expected number of cache hits (or -1 if it depends on the sizes of the outputs)
+   */
+  @Parameter(value = 3) public int mExpectedHits;
+  /**
+   * Expected number of cache hits from disk
+   */
+  @Parameter(value = 4) public int mExpectedDiskHits;
+  /**
+   * Whether anything is expected to be evicted from memory
+   */
+  @Parameter(value = 5) public boolean mExpectEvictions;
+
+  /**
+   * Mark the test data through the cache and check the results and statistics
+   */
+  @Test
+  public void test()
+  {
+    File directory = null;
+
+    try
+    {
+      directory = (mUseDisk ? Files.createTempDirectory("cache").toFile() : null);
+
+      MarkingCache cache = new MarkingCache(mMaxMemoryBytes, directory == null ? null : directory.getPath());
+
+      for(int pass = 0; pass < 2; pass++)
+      {
+        for(int testCase = 1; testCase <= NUM_CASES; testCase++)
+        {
+          MarkingResult result = cache.mark(Files.readAllBytes(Paths.get("src/test/data/minefield" + testCase + ".txt")),
+                                            Files.readAllBytes(Paths.get("src/test/data/script" + testCase + ".txt")),
+                                            false,
+                                            MinefieldEngine.auto);
+          List<String> checkLines = FileHelper.readLines("src/test/data/output" + testCase + ".txt");
+
+          assertEquals(checkLines, Arrays.asList(result.getOutput().split("\\r?\\n")));
+        }
+      }
+
+      assertEquals(2*NUM_CASES, cache.getNumHits() + cache.getNumMisses());
+      if ( mExpectedHits != -1 )
+      {
+        assertEquals(mExpectedHits, cache.getNumHits());
+      }
+      assertEquals(mExpectedDiskHits, cache.getNumDiskHits());
+      assertEquals(mExpectEvictions, cache.getNumEvictions() > 0);
+      assertTrue(cache.getMemoryBytes() <= mMaxMemoryBytes);
+    }
+    catch (IOException | MinefieldFileParseException | ScriptException | ModelException e)
+    {
+      e.printStackTrace();
+      fail("Unexpected exception");
+    }
+    finally
+    {
+      if ( directory != null )
+      {
+        for(File result : directory.listFiles())
+        {
+          result.delete();
+        }
+        directory.delete();
+      }
+    }
+  }
+}
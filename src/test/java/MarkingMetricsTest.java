@@ -0,0 +1,183 @@
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import minemarker.MarkingMetrics;
+import minemarker.MarkingMetrics.Phase;
+import minemarker.MinefieldEngine;
+import minemarker.MinefieldFileParseException;
+import minemarker.MinefieldFileParser;
+import minemarker.ModelException;
+import minemarker.ScriptException;
+import minemarker.ScriptFileParser;
+import minemarker.SimulationState;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Tests that marking records each of its phases in the metrics the expected number of
+ * times, and that the metrics are published via JMX.  The metrics are process-wide, so
+ * only the changes made by marking each case are checked
+ * @author steve
+ *
+ */
+@RunWith(Parameterized.class)
+public class MarkingMetricsTest extends Assert
+{
+  /**
+   * @return Iterable set of test cases
+   * @throws IOException
+   */
+  @Parameters(name="{0}")
+  public static Iterable<? extends Object> data() throws IOException
+  {
+    LinkedList<Object[]> lTests = new LinkedList<>();
+
+    for(int lCase = 1; lCase <= 7; lCase++)
+    {
+      lTests.add(new Object[]
+      {
+        "Case " + lCase,
+        Files.readAllBytes(Paths.get("src/test/data/minefield" + lCase + ".txt")),
+        new String(Files.readAllBytes(Paths.get("src/test/data/script" + lCase + ".txt")), StandardCharsets.UTF_8)
+      });
+    }
+
+    return lTests;
+  }
+
+  /**
+   * Name for the test case
+   */
+  @Parameter(value = 0) public String mTestName;
+  /**
+   * Minefield file content
+   */
+  @Parameter(value = 1) public byte[] mMinefield;
+  /**
+   * Script file content
+   */
+  @Parameter(value = 2) public String mScript;
+
+  /**
+   * Mark the case, and check the number of times each phase was recorded
+   */
+  @Test
+  public void testCounts()
+  {
+    try
+    {
+      MarkingMetrics metrics = MarkingMetrics.getInstance();
+      Map<Phase, Long> before = counts(metrics);
+
+      SimulationState simulation = new SimulationState(MinefieldFileParser.parseBytes(mMinefield, MinefieldEngine.auto),
+                                                       ScriptFileParser.parse(new StringReader(mScript)));
+      simulation.runAndMark(new StringWriter());
+
+      int numSteps = simulation.getNumSteps();
+      Map<Phase, Long> after = counts(metrics);
+
+      assertEquals(1, after.get(Phase.parseMinefield) - before.get(Phase.parseMinefield));
+      assertEquals(1, after.get(Phase.parseScript) - before.get(Phase.parseScript));
+      assertEquals(1, after.get(Phase.simulation) - before.get(Phase.simulation));
+      assertEquals(numSteps, after.get(Phase.turn) - before.get(Phase.turn));
+      assertEquals(numVolleys(numSteps), after.get(Phase.volley) - before.get(Phase.volley));
+      //  The initial state is rendered, and then the state after each step
+      assertEquals(numSteps + 1, after.get(Phase.render) - before.get(Phase.render));
+      assertEquals(numSteps, after.get(Phase.output) - before.get(Phase.output));
+
+      for(Phase phase : Phase.values())
+      {
+        assertTrue(metrics.getQuantileNanos(phase, 0.5) <= metrics.getQuantileNanos(phase, 0.99));
+        assertTrue(metrics.getQuantileNanos(phase, 0.99) <= metrics.getMaxNanos(phase));
+        assertTrue(metrics.getMaxNanos(phase) <= metrics.getTotalNanos(phase));
+      }
+    }
+    catch (IOException | MinefieldFileParseException | ModelException | ScriptException e)
+    {
+      e.printStackTrace();
+      fail("Unexpected exception");
+    }
+  }
+
+  /**
+   * Check the metrics published via JMX are those recorded, and that the summary covers
+   * each phase recorded
+   */
+  @Test
+  public void testPublished()
+  {
+    try
+    {
+      MarkingMetrics metrics = MarkingMetrics.getInstance();
+
+      MinefieldFileParser.parseBytes(mMinefield, MinefieldEngine.auto);
+      metrics.register();
+      metrics.register();
+
+      ObjectName name = new ObjectName(MarkingMetrics.OBJECT_NAME);
+      StringWriter summary = new StringWriter();
+
+      metrics.writeSummary(summary);
+      for(Phase phase : Phase.values())
+      {
+        assertEquals(metrics.getCount(phase), ManagementFactory.getPlatformMBeanServer().getAttribute(name, phase + "Count"));
+        assertEquals(metrics.getMaxNanos(phase), ManagementFactory.getPlatformMBeanServer().getAttribute(name, phase + "MaxNanos"));
+        assertEquals(metrics.getCount(phase) > 0, summary.toString().contains(phase + " "));
+      }
+    }
+    catch (IOException | MinefieldFileParseException | JMException e)
+    {
+      e.printStackTrace();
+      fail("Unexpected exception");
+    }
+  }
+
+  private static Map<Phase, Long> counts(MarkingMetrics metrics)
+  {
+    Map<Phase, Long> result = new EnumMap<>(Phase.class);
+
+    for(Phase phase : Phase.values())
+    {
+      result.put(phase, metrics.getCount(phase));
+    }
+
+    return result;
+  }
+
+  //  Number of torpedo volleys in the first numTurns turns of the script
+  private long numVolleys(int numTurns)
+  {
+    String[] lines = mScript.split("\\r?\\n", -1);
+    long result = 0;
+
+    for(int turn = 0; turn < numTurns && turn < lines.length; turn++)
+    {
+      for(String action : lines[turn].trim().split("\\s+"))
+      {
+        if ( action.matches("alpha|beta|gamma|delta") )
+        {
+          result++;
+        }
+      }
+    }
+
+    return result;
+  }
+}
@@ -0,0 +1,298 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import minemarker.FileHelper;
+import minemarker.MarkingCache;
+import minemarker.MarkingResult;
+import minemarker.MarkingServer;
+import minemarker.MinefieldEngine;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Tests for the marking server, which posts the full-system test data to a server
+ * and checks the responses match the commandline output, that jobs larger than the
+ * server's limit are rejected, and that stopping the server waits for jobs in progress
+ * @author steve
+ *
+ */
+@RunWith(Parameterized.class)
+public class MarkingServerTest extends Assert
+{
+  /**
+   * @return Iterable set of test cases
+   */
+  @Parameters(name="{0} (score only {1})")
+  public static Iterable<? extends Object> data()
+  {
+    LinkedList<Object[]> lTests = new LinkedList<>();
+
+    for(int lCase = 1; lCase <= 7; lCase++)
+    {
+      lTests.add(new Object[] { lCase, false });
+      lTests.add(new Object[] { lCase, true });
+    }
+
+    return lTests;
+  }
+
+  /**
+   * Number of the test data case to post
+   */
+  @Parameter(value = 0) public int mCase;
+  /**
+   * Whether to request only the final result
+   */
+  @Parameter(value = 1) public boolean mScoreOnly;
+
+  /**
+   * Post a job to a server and check the response
+   */
+  @Test
+  public void test()
+  {
+    try
+    {
+      MarkingServer server = new MarkingServer(0, 2, MinefieldEngine.auto);
+
+      server.start();
+      try
+      {
+        HttpURLConnection connection = post(server, jobBody(), false);
+
+        assertEquals(200, connection.getResponseCode());
+        assertNotNull(connection.getHeaderField(MarkingServer.PARSE_TIME_HEADER));
+        assertNotNull(connection.getHeaderField(MarkingServer.SIMULATION_TIME_HEADER));
+        checkResponse(connection);
+      }
+      finally
+      {
+        assertTrue(server.stop(10, TimeUnit.SECONDS));
+      }
+    }
+    catch (IOException | InterruptedException e)
+    {
+      e.printStackTrace();
+      fail("Unexpected exception");
+    }
+  }
+
+  /**
+   * Post a job to servers limited to exactly its size, and to one byte less, and check
+   * the first marks it and the second rejects it, both when the size of the job is given
+   * up front and when it is only known once the job has been read (chunked)
+   */
+  @Test
+  public void testTooLarge()
+  {
+    try
+    {
+      String body = jobBody();
+
+      for(int excess = 0; excess <= 1; excess++)
+      {
+        for(boolean chunked : new boolean[] { false, true })
+        {
+          MarkingServer server = new MarkingServer(0, 2, MinefieldEngine.auto, null, body.length() - excess);
+
+          server.start();
+          try
+          {
+            HttpURLConnection connection = post(server, body, chunked);
+
+            if ( excess == 0 )
+            {
+              assertEquals(200, connection.getResponseCode());
+              checkResponse(connection);
+            }
+            else
+            {
+              assertEquals(413, connection.getResponseCode());
+            }
+          }
+          finally
+          {
+            assertTrue(server.stop(10, TimeUnit.SECONDS));
+          }
+        }
+      }
+    }
+    catch (IOException | InterruptedException e)
+    {
+      e.printStackTrace();
+      fail("Unexpected exception");
+    }
+  }
+
+  /**
+   * Stop a server while a job is in progress (held up in the cache lookup until after
+   * stopping has begun), and check that the job still completes before the server stops
+   */
+  @Test
+  public void testStop()
+  {
+    try
+    {
+      final CountDownLatch started = new CountDownLatch(1);
+      final CountDownLatch release = new CountDownLatch(1);
+      MarkingCache cache = new MarkingCache(1024*1024, null)
+      {
+        @Override
+        public MarkingResult get(String key) throws IOException
+        {
+          started.countDown();
+          try
+          {
+            release.await();
+          }
+          catch (InterruptedException e)
+          {
+            Thread.currentThread().interrupt();
+          }
+          return super.get(key);
+        }
+      };
+      final MarkingServer server = new MarkingServer(0, 2, MinefieldEngine.auto, cache);
+      final String body = jobBody();
+      final AtomicReference<HttpURLConnection> connection = new AtomicReference<>();
+      final AtomicReference<Exception> failure = new AtomicReference<>();
+      Thread client = new Thread()
+      {
+        @Override
+        public void run()
+        {
+          try
+          {
+            HttpURLConnection posted = post(server, body, false);
+
+            posted.getResponseCode();
+            connection.set(posted);
+          }
+          catch (IOException e)
+          {
+            failure.set(e);
+          }
+        }
+      };
+
+      server.start();
+      client.start();
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+
+      //  Only let the job continue once the server has had time to begin stopping
+      new Thread()
+      {
+        @Override
+        public void run()
+        {
+          try
+          {
+            Thread.sleep(200);
+          }
+          catch (InterruptedException e)
+          {
+            Thread.currentThread().interrupt();
+          }
+          release.countDown();
+        }
+      }.start();
+
+      assertTrue(server.stop(10, TimeUnit.SECONDS));
+      assertEquals(0, release.getCount());
+
+      client.join(10000);
+      assertNull(failure.get());
+      assertNotNull(connection.get());
+      assertEquals(200, connection.get().getResponseCode());
+      checkResponse(connection.get());
+    }
+    catch (IOException | InterruptedException e)
+    {
+      e.printStackTrace();
+      fail("Unexpected exception");
+    }
+  }
+
+  //  Form encoded body of the job for this case
+  private String jobBody() throws IOException
+  {
+    return "minefield=" + encodeFile("src/test/data/minefield" + mCase + ".txt") +
+           "&script=" + encodeFile("src/test/data/script" + mCase + ".txt") +
+           (mScoreOnly ? "&scoreonly=true" : "");
+  }
+
+  //  Check the response to the job for this case matches the commandline output
+  private void checkResponse(HttpURLConnection connection) throws IOException
+  {
+    List<String> checkLines = FileHelper.readLines("src/test/data/output" + mCase + ".txt");
+    List<String> responseLines = Arrays.asList(readResponse(connection).split("\\r?\\n"));
+
+    if ( mScoreOnly )
+    {
+      checkLines = checkLines.subList(checkLines.size()-1, checkLines.size());
+    }
+    assertEquals(checkLines, responseLines);
+  }
+
+  private static HttpURLConnection post(MarkingServer server, String body, boolean chunked) throws IOException
+  {
+    HttpURLConnection connection = (HttpURLConnection)new URL("http://localhost:" + server.getPort() + MarkingServer.MARK_PATH).openConnection();
+
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    if ( chunked )
+    {
+      connection.setChunkedStreamingMode(1024);
+    }
+    connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+    try (OutputStream output = connection.getOutputStream())
+    {
+      output.write(body.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    return connection;
+  }
+
+  private static String encodeFile(String filename) throws IOException
+  {
+    return URLEncoder.encode(new String(Files.readAllBytes(Paths.get(filename)), StandardCharsets.UTF_8), "UTF-8");
+  }
+
+  private static String readResponse(HttpURLConnection connection) throws IOException
+  {
+    ByteArrayOutputStream response = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+
+    try (InputStream input = connection.getInputStream())
+    {
+      int numRead;
+
+      while ( (numRead = input.read(buffer)) != -1 )
+      {
+        response.write(buffer, 0, numRead);
+      }
+    }
+
+    return new String(response.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,56 @@
+import java.util.List;
+
+import minemarker.Cuboid;
+import minemarker.Minefield;
+import minemarker.ModelException;
+import minemarker.Point;
+
+import org.junit.Assert;
+
+
+/**
+ * Assertions shared by the tests comparing minefield implementations (and forks) with
+ * a reference implementation
+ * @author steve
+ *
+ */
+public class MinefieldAssert extends Assert
+{
+  /**
+   * Check that a minefield is equivalent to a reference one - that it has the same number
+   * of mines, bounds and shallowest and deepest depths, and renders identically
+   * @param reference minefield to compare against
+   * @param minefield minefield to check
+   * @param shipZ depth of the ship to render from (clamped to above the shallowest mine)
+   * @throws ModelException
+   */
+  public static void assertEquivalent(Minefield reference, Minefield minefield, int shipZ) throws ModelException
+  {
+    assertEquals(reference.getNumMines(), minefield.getNumMines());
+
+    Cuboid referenceExtent = reference.getBoundingCuboid();
+    Cuboid extent = minefield.getBoundingCuboid();
+
+    if ( referenceExtent == null )
+    {
+      assertNull(extent);
+      assertEquals(Integer.MAX_VALUE, minefield.getShallowestZ());
+      assertEquals(Integer.MIN_VALUE, minefield.getDeepestZ());
+      return;
+    }
+
+    assertNotNull(extent);
+    assertEquals(referenceExtent.getNorthWestTop(), extent.getNorthWestTop());
+    assertEquals(referenceExtent.getSouthEastBottom(), extent.getSouthEastBottom());
+    assertEquals(referenceExtent.getNorthWestTop().getZ(), minefield.getShallowestZ());
+    assertEquals(referenceExtent.getSouthEastBottom().getZ(), minefield.getDeepestZ());
+
+    Point center = new Point((extent.getNorthWestTop().getX() + extent.getSouthEastBottom().getX())/2,
+                             (extent.getNorthWestTop().getY() + extent.getSouthEastBottom().getY())/2,
+                             Math.min(shipZ, extent.getNorthWestTop().getZ() - 1));
+    List<String> referenceOutput = reference.toOutputFormat(center);
+    List<String> output = minefield.toOutputFormat(center);
+
+    assertEquals(referenceOutput, output);
+  }
+}
@@ -0,0 +1,211 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.LinkedList;
+
+import minemarker.Cuboid;
+import minemarker.Minefield;
+import minemarker.MinefieldEngine;
+import minemarker.MinefieldFileCache;
+import minemarker.MinefieldFileParseException;
+import minemarker.MinefieldFileParser;
+import minemarker.ModelException;
+import minemarker.Point;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Tests for the cache of parsed minefields, which loads the full-system test minefields
+ * through a cache into each storage engine, and checks that whether they are parsed or
+ * loaded from the cache the result is the same as parsing them without one, including
+ * when a cached specification is rewritten without its size or modification time changing
+ * @author steve
+ *
+ */
+@RunWith(Parameterized.class)
+public class MinefieldFileCacheTest extends Assert
+{
+  /**
+   * @return Iterable set of test cases
+   */
+  @Parameters(name="{0} ({1})")
+  public static Iterable<? extends Object> data()
+  {
+    LinkedList<Object[]> lTests = new LinkedList<>();
+
+    for(int lCase = 1; lCase <= 7; lCase++)
+    {
+      for(MinefieldEngine lEngine : MinefieldEngine.values())
+      {
+        lTests.add(new Object[] { lCase, lEngine });
+      }
+    }
+
+    return lTests;
+  }
+
+  /**
+   * Number of the test data case to load
+   */
+  @Parameter(value = 0) public int mCase;
+  /**
+   * Storage engine to load into
+   */
+  @Parameter(value = 1) public MinefieldEngine mEngine;
+
+  /**
+   * Load the minefield through a cache (parsing it, loading it from the cache, and
+   * then parsing it again once the cached copy is damaged) and check each result
+   */
+  @Test
+  public void test()
+  {
+    File directory = null;
+
+    try
+    {
+      directory = Files.createTempDirectory("fieldcache").toFile();
+
+      String filename = "src/test/data/minefield" + mCase + ".txt";
+      MinefieldFileCache cache = new MinefieldFileCache(directory.getPath());
+      Minefield expected = MinefieldFileParser.parse(filename, mEngine);
+
+      assertSameMines(expected, cache.parse(filename, mEngine));
+      assertEquals(0, cache.getNumHits());
+      assertEquals(1, cache.getNumMisses());
+
+      assertSameMines(expected, cache.parse(filename, mEngine));
+      assertEquals(1, cache.getNumHits());
+      assertEquals(1, cache.getNumMisses());
+
+      //  A truncated cached copy is ignored, and replaced
+      File[] cachedFiles = directory.listFiles();
+      assertEquals(1, cachedFiles.length);
+      try (RandomAccessFile cachedFile = new RandomAccessFile(cachedFiles[0], "rw"))
+      {
+        cachedFile.setLength(cachedFile.length() - 1);
+      }
+
+      assertSameMines(expected, cache.parse(filename, mEngine));
+      assertEquals(1, cache.getNumHits());
+      assertEquals(2, cache.getNumMisses());
+
+      assertSameMines(expected, cache.parse(filename, mEngine));
+      assertEquals(2, cache.getNumHits());
+      assertEquals(2, cache.getNumMisses());
+      assertEquals("Minefield cache: 2 hits, 2 misses", cache.getStatistics());
+    }
+    catch (IOException | MinefieldFileParseException | ModelException e)
+    {
+      e.printStackTrace();
+      fail("Unexpected exception");
+    }
+    finally
+    {
+      if ( directory != null )
+      {
+        for(File cachedFile : directory.listFiles())
+        {
+          cachedFile.delete();
+        }
+        directory.delete();
+      }
+    }
+  }
+
+  /**
+   * Cache a copy of the minefield, then rewrite the copy with the depth of every mine changed, at
+   * the same size and with the same modification time (as a rewrite within the resolution
+   * of the file system's timestamps would leave it), and check the change is still seen
+   */
+  @Test
+  public void testRewritten()
+  {
+    File directory = null;
+
+    try
+    {
+      directory = Files.createTempDirectory("fieldcache").toFile();
+
+      File copy = new File(directory, "minefield.txt");
+      byte[] content = Files.readAllBytes(new File("src/test/data/minefield" + mCase + ".txt").toPath());
+      MinefieldFileCache cache = new MinefieldFileCache(new File(directory, "cache").getPath());
+
+      assertTrue(new File(directory, "cache").mkdir());
+      Files.write(copy.toPath(), content);
+      assertSameMines(MinefieldFileParser.parse(copy.getPath(), mEngine), cache.parse(copy.getPath(), mEngine));
+
+      long lastModified = copy.lastModified();
+      for(int index = 0; index < content.length; index++)
+      {
+        if ( content[index] == 'a' )
+        {
+          content[index] = 'Z';
+        }
+        else if ( content[index] == 'A' )
+        {
+          content[index] = 'z';
+        }
+        else if ( (content[index] > 'a' && content[index] <= 'z') || (content[index] > 'A' && content[index] <= 'Z') )
+        {
+          content[index]--;
+        }
+      }
+      Files.write(copy.toPath(), content);
+      assertTrue(copy.setLastModified(lastModified));
+
+      assertSameMines(MinefieldFileParser.parse(copy.getPath(), mEngine), cache.parse(copy.getPath(), mEngine));
+      assertEquals(0, cache.getNumHits());
+      assertEquals(2, cache.getNumMisses());
+
+      assertSameMines(MinefieldFileParser.parse(copy.getPath(), mEngine), cache.parse(copy.getPath(), mEngine));
+      assertEquals(1, cache.getNumHits());
+      assertEquals(2, cache.getNumMisses());
+    }
+    catch (IOException | MinefieldFileParseException | ModelException e)
+    {
+      e.printStackTrace();
+      fail("Unexpected exception");
+    }
+    finally
+    {
+      if ( directory != null )
+      {
+        deleteAll(directory);
+      }
+    }
+  }
+
+  private static void deleteAll(File file)
+  {
+    File[] children = file.listFiles();
+
+    if ( children != null )
+    {
+      for(File child : children)
+      {
+        deleteAll(child);
+      }
+    }
+    file.delete();
+  }
+
+  //  Check two minefields have the same mines, as far as can be observed
+  private static void assertSameMines(Minefield expected, Minefield actual) throws ModelException
+  {
+    Cuboid extent = expected.getBoundingCuboid();
+    Point center = new Point(extent.getSouthEastBottom().getX()/2, extent.getSouthEastBottom().getY()/2, 0);
+
+    assertEquals(expected.getNumMines(), actual.getNumMines());
+    assertEquals(extent.getNorthWestTop(), actual.getBoundingCuboid().getNorthWestTop());
+    assertEquals(extent.getSouthEastBottom(), actual.getBoundingCuboid().getSouthEastBottom());
+    assertEquals(expected.toOutputFormat(center), actual.toOutputFormat(center));
+  }
+}
@@ -0,0 +1,296 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import minemarker.Cuboid;
+import minemarker.Minefield;
+import minemarker.MinefieldFileParseException;
+import minemarker.MinefieldFileParser;
+import minemarker.ModelException;
+import minemarker.PackedPoint;
+import minemarker.Point;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Tests for loading minefield specifications from files, which are scanned at the
+ * byte level rather than read as lines of text, so need to be checked for agreement
+ * with the line-based rules for line termination and error reporting, and for the
+ * mines of large files (which are packed in concurrently scanned chunks) to come out in
+ * the order they are specified
+ * @author steve
+ *
+ */
+@RunWith(Parameterized.class)
+public class MinefieldFileLoadTest extends Assert
+{
+  /**
+   * @return Iterable set of test cases
+   */
+  @Parameters(name="{0}")
+  public static Iterable<? extends Object> data()
+  {
+    LinkedList<Object[]> lTests = new LinkedList<>();
+
+    lTests.add(new Object[]
+    {
+      "Unterminated last line",
+      ".e.\n..a\nA..",
+      Arrays.asList(".e.", "..a", "A.."),
+      null
+    });
+    lTests.add(new Object[]
+    {
+      "Terminated last line",
+      ".e.\n..a\nA..\n",
+      Arrays.asList(".e.", "..a", "A.."),
+      null
+    });
+    lTests.add(new Object[]
+    {
+      "CRLF line endings",
+      ".e.\r\n..a\r\nA..\r\n",
+      Arrays.asList(".e.", "..a", "A.."),
+      null
+    });
+    lTests.add(new Object[]
+    {
+      "CR line endings",
+      ".e.\r..a\rA..\r",
+      Arrays.asList(".e.", "..a", "A.."),
+      null
+    });
+    lTests.add(new Object[]
+    {
+      "Empty file",
+      "",
+      null,
+      "No minefield specified!"
+    });
+    lTests.add(new Object[]
+    {
+      "Blank first line",
+      "\n.a.",
+      null,
+      "Minefield specification contains blank lines"
+    });
+    lTests.add(new Object[]
+    {
+      "Trailing blank line",
+      ".a.\n\n",
+      null,
+      "Minefield specification contains lines with an inconsistent width"
+    });
+    lTests.add(new Object[]
+    {
+      "Illegal character",
+      ".e.\n.?a\n?..",
+      null,
+      "Minefield specification contains illegal character '?' in line 2: .?a"
+    });
+    lTests.add(new Object[]
+    {
+      "Inconsistent width before illegal character",
+      ".e.\n..?a",
+      null,
+      "Minefield specification contains lines with an inconsistent width"
+    });
+    //  How a non-ASCII character is read back depends on the default character set
+    String lNonAscii = new String("\u00e9".getBytes(), Charset.defaultCharset());
+    lTests.add(new Object[]
+    {
+      "Non-ASCII character",
+      ".e.\n.\u00e9a",
+      null,
+      "Minefield specification contains illegal character '" + lNonAscii + "' in line 2: ." + lNonAscii + "a"
+    });
+    lTests.add(new Object[]
+    {
+      "No mines",
+      "...\n...",
+      null,
+      "Illegal minefield specification defines no mines"
+    });
+    //  Files of several MB are validated in concurrently scanned chunks, so errors must be
+    //  found (and reported with the right line number) whichever chunk they fall in
+    List<String> lLargeField = largeField(1001, 3001);
+    lTests.add(new Object[]
+    {
+      "Large file",
+      join(lLargeField, "\n"),
+      lLargeField,
+      null
+    });
+    lTests.add(new Object[]
+    {
+      "Large file with CRLF line endings",
+      join(lLargeField, "\r\n"),
+      lLargeField,
+      null
+    });
+    List<String> lLargeIllegal = largeField(1001, 3001);
+    lLargeIllegal.set(2499, "?" + lLargeIllegal.get(2499).substring(1));
+    lTests.add(new Object[]
+    {
+      "Illegal character late in large file",
+      join(lLargeIllegal, "\n"),
+      null,
+      "Minefield specification contains illegal character '?' in line 2500: " + lLargeIllegal.get(2499)
+    });
+    List<String> lLargeInconsistent = largeField(1001, 3001);
+    for(int lLine = 1500; lLine < lLargeInconsistent.size(); lLine++)
+    {
+      lLargeInconsistent.set(lLine, lLargeInconsistent.get(lLine).substring(1));
+    }
+    lLargeInconsistent.set(2700, "?" + lLargeInconsistent.get(2700).substring(1));
+    lTests.add(new Object[]
+    {
+      "Inconsistent width in large file",
+      join(lLargeInconsistent, "\n"),
+      null,
+      "Minefield specification contains lines with an inconsistent width"
+    });
+
+    return lTests;
+  }
+
+  //  Field of the specified size with mines in opposite corners (so that it is displayed
+  //  exactly as specified) and scattered throughout
+  private static List<String> largeField(int width, int height)
+  {
+    List<String> result = new ArrayList<>();
+    Random random = new Random(width*height);
+
+    for(int y = 0; y < height; y++)
+    {
+      char[] line = new char[width];
+
+      for(int x = 0; x < width; x++)
+      {
+        line[x] = (random.nextInt(50) == 0 ? (char)('a' + random.nextInt(26)) : '.');
+      }
+      line[0] = (y == 0 ? 'a' : line[0]);
+      line[width-1] = (y == height-1 ? 'a' : line[width-1]);
+      result.add(new String(line));
+    }
+
+    return result;
+  }
+
+  //  Packed coordinates of the mines of a field, in the order they are specified
+  private static long[] packMines(List<String> lines)
+  {
+    List<Long> mines = new ArrayList<>();
+
+    for(int y = 0; y < lines.size(); y++)
+    {
+      for(int x = 0; x < lines.get(y).length(); x++)
+      {
+        char mineChar = lines.get(y).charAt(x);
+
+        if ( mineChar >= 'a' && mineChar <= 'z' )
+        {
+          mines.add(PackedPoint.pack(x, y, mineChar - 'a' + 1));
+        }
+        else if ( mineChar >= 'A' && mineChar <= 'Z' )
+        {
+          mines.add(PackedPoint.pack(x, y, mineChar - 'A' + 27));
+        }
+      }
+    }
+
+    long[] result = new long[mines.size()];
+    for(int index = 0; index < result.length; index++)
+    {
+      result[index] = mines.get(index);
+    }
+
+    return result;
+  }
+
+  private static String join(List<String> lines, String separator)
+  {
+    StringBuilder result = new StringBuilder();
+
+    for(String line : lines)
+    {
+      result.append(line).append(separator);
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Name for the test case
+   */
+  @Parameter(value = 0) public String mTestName;
+  /**
+   * Content of the minefield file
+   */
+  @Parameter(value = 1) public String mFileContent;
+  /**
+   * Expected output format of the loaded minefield, or null if it should fail to load
+   */
+  @Parameter(value = 2) public List<String> mExpectedOutput;
+  /**
+   * Expected parse exception message, or null if it should load successfully
+   */
+  @Parameter(value = 3) public String mExpectedError;
+
+  /**
+   * Load the minefield from a file and check the result
+   */
+  @Test
+  public void test()
+  {
+    File file = null;
+
+    try
+    {
+      file = File.createTempFile("minefield", ".txt");
+
+      try (OutputStream output = new FileOutputStream(file))
+      {
+        output.write(mFileContent.getBytes());
+      }
+
+      Minefield minefield = MinefieldFileParser.parse(file.getPath());
+      Cuboid extent = minefield.getBoundingCuboid();
+
+      assertNull("Expected exception: " + mExpectedError, mExpectedError);
+      assertEquals(mExpectedOutput, minefield.toOutputFormat(new Point(extent.getSouthEastBottom().getX()/2,extent.getSouthEastBottom().getY()/2,0)));
+
+      //  Chunks are packed concurrently, but the mines must still come out in file order
+      assertArrayEquals(packMines(mExpectedOutput), MinefieldFileParser.parsePackedMines(file.getPath()));
+    }
+    catch (MinefieldFileParseException e)
+    {
+      assertEquals(mExpectedError, e.getMessage());
+    }
+    catch (IOException | ModelException e)
+    {
+      e.printStackTrace();
+      fail("Unexpected exception");
+    }
+    finally
+    {
+      if ( file != null )
+      {
+        file.delete();
+      }
+    }
+  }
+}
@@ -0,0 +1,193 @@
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import minemarker.ColumnIndexedMinefield;
+import minemarker.Cuboid;
+import minemarker.LayeredBitmapMinefield;
+import minemarker.Minefield;
+import minemarker.ModelException;
+import minemarker.PackedMinefield;
+import minemarker.Point;
+import minemarker.SimpleMinefield;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Tests that forks of each minefield implementation behave identically to the reference
+ * SimpleMinefield implementation under a random sequence of operations, without the
+ * minefield they were forked from (or other forks of it) being affected
+ * @author steve
+ *
+ */
+@RunWith(Parameterized.class)
+public class MinefieldForkTest extends Assert
+{
+  /**
+   * @return Iterable set of test cases
+   */
+  @Parameters(name="{0}")
+  public static Iterable<? extends Object> data()
+  {
+    LinkedList<Object[]> lTests = new LinkedList<>();
+
+    lTests.add(new Object[]
+    {
+      "Simple",
+      SimpleMinefield.class
+    });
+    lTests.add(new Object[]
+    {
+      "Column indexed",
+      ColumnIndexedMinefield.class
+    });
+    lTests.add(new Object[]
+    {
+      "Packed",
+      PackedMinefield.class
+    });
+    lTests.add(new Object[]
+    {
+      "Layered bitmap",
+      LayeredBitmapMinefield.class
+    });
+
+    return lTests;
+  }
+
+  /**
+   * Name for the test case
+   */
+  @Parameter(value = 0) public String mTestName;
+  /**
+   * Minefield implementation to fork
+   */
+  @Parameter(value = 1) public Class<? extends Minefield> mImplementation;
+
+  /**
+   * Populate a reference minefield and one of the implementation under test identically,
+   * fork the latter, then apply a random sequence of changes to the reference and the
+   * fork (forking the fork itself part way through), checking they agree after every step
+   */
+  @Test
+  public void test()
+  {
+    try
+    {
+      Random random = new Random(1234);
+
+      for(int trial = 0; trial < 20; trial++)
+      {
+        Minefield reference = new SimpleMinefield();
+        Minefield original = new SimpleMinefield();
+        Minefield base = mImplementation.newInstance();
+        int xSize = 1 + random.nextInt(15);
+        int ySize = 1 + random.nextInt(15);
+
+        for(int y = 0; y < ySize; y++)
+        {
+          for(int x = 0; x < xSize; x++)
+          {
+            if ( random.nextInt(3) == 0 )
+            {
+              int numMines = (random.nextInt(4) == 0 ? 3 : 1);
+
+              for(int mineIndex = 0; mineIndex < numMines; mineIndex++)
+              {
+                Point mine = new Point(x, y, 1 + random.nextInt(52));
+                reference.addMine(mine);
+                original.addMine(mine);
+                base.addMine(mine);
+              }
+            }
+          }
+        }
+
+        //  Some mines are cleared from the base before it is forked, so that forks must cope
+        //  with it having columns whose shallowest mine is yet to be re-established
+        Point firstColumn = new Point(random.nextInt(xSize), random.nextInt(ySize), 0);
+        Cuboid firstRegion = new Cuboid(firstColumn, firstColumn.displace(new Point(0, 0, 60)));
+        reference.clearRegion(firstRegion);
+        original.clearRegion(firstRegion);
+        base.clearRegion(firstRegion);
+
+        Minefield minefield = base.fork();
+        Minefield untouchedFork = base.fork();
+
+        try
+        {
+          base.addMine(0, 0, 1);
+          fail("Expected exception");
+        }
+        catch (IllegalStateException e)
+        {
+          //  Expected - the base has been snapshotted
+        }
+
+        MinefieldAssert.assertEquivalent(reference, minefield, 0);
+
+        for(int step = 0; reference.getNumMines() > 0; step++)
+        {
+          int shipZ = random.nextInt(10);
+          Point northWestTop = new Point(random.nextInt(xSize), random.nextInt(ySize), shipZ);
+          Cuboid region;
+
+          if ( step == 5 )
+          {
+            //  Subsequent changes are to a fork of the fork
+            minefield = minefield.fork();
+          }
+
+          //  Mines are only added early on, so that the field is eventually cleared
+          switch(random.nextInt(step < 20 ? 4 : 3))
+          {
+            case 0:
+              //  Torpedo column
+              region = new Cuboid(northWestTop, northWestTop.displace(new Point(0, 0, 60)));
+              reference.clearRegion(region);
+              minefield.clearRegion(region);
+              break;
+            case 1:
+              region = new Cuboid(northWestTop, northWestTop.displace(new Point(random.nextInt(xSize), random.nextInt(ySize), random.nextInt(60))));
+              reference.clearRegion(region);
+              minefield.clearRegion(region);
+              break;
+            case 2:
+              //  Torpedo volley
+              List<Point> columnTops = new ArrayList<>();
+              for(int torpedo = 0; torpedo < 4; torpedo++)
+              {
+                columnTops.add(new Point(random.nextInt(xSize), random.nextInt(ySize), shipZ));
+              }
+              reference.clearColumns(columnTops);
+              minefield.clearColumns(columnTops);
+              break;
+            default:
+              //  Mines may be added to a fork, including ones previously cleared
+              Point mine = new Point(random.nextInt(xSize), random.nextInt(ySize), 1 + random.nextInt(52));
+              reference.addMine(mine);
+              minefield.addMine(mine);
+              break;
+          }
+
+          MinefieldAssert.assertEquivalent(reference, minefield, shipZ);
+        }
+
+        MinefieldAssert.assertEquivalent(original, base, 0);
+        MinefieldAssert.assertEquivalent(original, untouchedFork, 0);
+      }
+    }
+    catch (InstantiationException | IllegalAccessException | ModelException e)
+    {
+      e.printStackTrace();
+      fail("Unexpected exception");
+    }
+  }
+}
@@ -0,0 +1,152 @@
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import minemarker.ColumnIndexedMinefield;
+import minemarker.Cuboid;
+import minemarker.LayeredBitmapMinefield;
+import minemarker.Minefield;
+import minemarker.ModelException;
+import minemarker.PackedMinefield;
+import minemarker.Point;
+import minemarker.SimpleMinefield;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Tests that alternative minefield implementations behave identically to the
+ * reference SimpleMinefield implementation under a random sequence of operations
+ * @author steve
+ *
+ */
+@RunWith(Parameterized.class)
+public class MinefieldImplementationTest extends Assert
+{
+  /**
+   * @return Iterable set of test cases
+   */
+  @Parameters(name="{0}")
+  public static Iterable<? extends Object> data()
+  {
+    LinkedList<Object[]> lTests = new LinkedList<>();
+
+    lTests.add(new Object[]
+    {
+      "Column indexed",
+      ColumnIndexedMinefield.class
+    });
+    lTests.add(new Object[]
+    {
+      "Packed",
+      PackedMinefield.class
+    });
+    lTests.add(new Object[]
+    {
+      "Layered bitmap",
+      LayeredBitmapMinefield.class
+    });
+
+    return lTests;
+  }
+
+  /**
+   * Name for the test case
+   */
+  @Parameter(value = 0) public String mTestName;
+  /**
+   * Minefield implementation under test
+   */
+  @Parameter(value = 1) public Class<? extends Minefield> mImplementation;
+
+  /**
+   * Populate a reference minefield and one of the implementation under test identically,
+   * then apply a random sequence of column and region clears to both, checking they agree
+   * after every step
+   */
+  @Test
+  public void test()
+  {
+    try
+    {
+      Random random = new Random(1234);
+
+      for(int trial = 0; trial < 20; trial++)
+      {
+        Minefield reference = new SimpleMinefield();
+        Minefield minefield = mImplementation.newInstance();
+        int xSize = 1 + random.nextInt(15);
+        int ySize = 1 + random.nextInt(15);
+        //  The field is placed anywhere around the origin, so coordinates may be negative
+        Point origin = new Point(random.nextInt(41) - 20, random.nextInt(41) - 20, 0);
+
+        //  The input format only allows one mine per column, but the model does not, so
+        //  occasionally stack a few to check the shallowest one is the one that is projected
+        for(int y = 0; y < ySize; y++)
+        {
+          for(int x = 0; x < xSize; x++)
+          {
+            if ( random.nextInt(3) == 0 )
+            {
+              int numMines = (random.nextInt(4) == 0 ? 3 : 1);
+
+              for(int mineIndex = 0; mineIndex < numMines; mineIndex++)
+              {
+                Point mine = new Point(x, y, 1 + random.nextInt(52)).displace(origin);
+                reference.addMine(mine);
+                minefield.addMine(mine);
+              }
+            }
+          }
+        }
+
+        MinefieldAssert.assertEquivalent(reference, minefield, 0);
+
+        while ( reference.getNumMines() > 0 )
+        {
+          int shipZ = random.nextInt(10);
+          Point northWestTop = new Point(random.nextInt(xSize), random.nextInt(ySize), shipZ).displace(origin);
+          Cuboid region;
+
+          switch(random.nextInt(3))
+          {
+            case 0:
+              //  Torpedo column
+              region = new Cuboid(northWestTop, northWestTop.displace(new Point(0, 0, 60)));
+              reference.clearRegion(region);
+              minefield.clearRegion(region);
+              break;
+            case 1:
+              region = new Cuboid(northWestTop, northWestTop.displace(new Point(random.nextInt(xSize), random.nextInt(ySize), random.nextInt(60))));
+              reference.clearRegion(region);
+              minefield.clearRegion(region);
+              break;
+            default:
+              //  Torpedo volley
+              List<Point> columnTops = new ArrayList<>();
+              for(int torpedo = 0; torpedo < 4; torpedo++)
+              {
+                columnTops.add(new Point(random.nextInt(xSize), random.nextInt(ySize), shipZ).displace(origin));
+              }
+              reference.clearColumns(columnTops);
+              minefield.clearColumns(columnTops);
+              break;
+          }
+
+          MinefieldAssert.assertEquivalent(reference, minefield, shipZ);
+        }
+      }
+    }
+    catch (InstantiationException | IllegalAccessException | ModelException e)
+    {
+      e.printStackTrace();
+      fail("Unexpected exception");
+    }
+  }
+}
@@ -0,0 +1,179 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+
+import minemarker.ColumnIndexedMinefield;
+import minemarker.Cuboid;
+import minemarker.LayeredBitmapMinefield;
+import minemarker.Minefield;
+import minemarker.ModelException;
+import minemarker.PackedMinefield;
+import minemarker.Point;
+import minemarker.SimpleMinefield;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Tests that each minefield implementation projects the shallowest mine of each column,
+ * against hand-written renderings of columns holding several mines, as the shallowest
+ * is cleared (so the next one down must be found again) and mines are added, both in a
+ * minefield and in forks of it
+ * @author steve
+ *
+ */
+@RunWith(Parameterized.class)
+public class MinefieldProjectionTest extends Assert
+{
+  //  The ship is above the middle of the 3x3 extent of the mines
+  private static final Point SHIP = new Point(1, 1, 0);
+
+  /**
+   * @return Iterable set of test cases
+   */
+  @Parameters(name="{0}")
+  public static Iterable<? extends Object> data()
+  {
+    LinkedList<Object[]> lTests = new LinkedList<>();
+
+    lTests.add(new Object[]
+    {
+      "Simple",
+      SimpleMinefield.class
+    });
+    lTests.add(new Object[]
+    {
+      "Column indexed",
+      ColumnIndexedMinefield.class
+    });
+    lTests.add(new Object[]
+    {
+      "Packed",
+      PackedMinefield.class
+    });
+    lTests.add(new Object[]
+    {
+      "Layered bitmap",
+      LayeredBitmapMinefield.class
+    });
+
+    return lTests;
+  }
+
+  /**
+   * Name for the test case
+   */
+  @Parameter(value = 0) public String mTestName;
+  /**
+   * Minefield implementation under test
+   */
+  @Parameter(value = 1) public Class<? extends Minefield> mImplementation;
+
+  /**
+   * Clear the mines of a stacked column one at a time, adding others, and check the
+   * rendering after each change
+   */
+  @Test
+  public void testStacked()
+  {
+    try
+    {
+      Minefield minefield = createMinefield();
+
+      checkRendering("b../.c./..d", minefield);
+
+      //  Mines added to a column whose shallowest mine has just been cleared (so before
+      //  the next one down has been found) must still be considered
+      minefield.clearRegion(new Cuboid(new Point(1, 1, 3), new Point(1, 1, 3)));
+      minefield.addMine(1, 1, 7);
+      checkRendering("b../.e./..d", minefield);
+
+      minefield.clearRegion(new Cuboid(new Point(1, 1, 5), new Point(1, 1, 5)));
+      checkRendering("b../.g./..d", minefield);
+
+      //  A torpedo column clears everything below its top
+      minefield.clearColumns(Collections.singletonList(new Point(1, 1, 6)));
+      checkRendering("b../.../..d", minefield);
+
+      minefield.addMine(1, 1, 1);
+      checkRendering("b../.a./..d", minefield);
+
+      minefield.clearColumns(Collections.singletonList(new Point(0, 0, 0)));
+      checkRendering(".../.a./..d", minefield);
+
+      //  A mine shallower than the one projected replaces it straight away
+      minefield.addMine(2, 2, 2);
+      checkRendering(".../.a./..b", minefield);
+    }
+    catch (InstantiationException | IllegalAccessException | ModelException e)
+    {
+      e.printStackTrace();
+      fail("Unexpected exception");
+    }
+  }
+
+  /**
+   * Clear the mines of a stacked column in a fork, and in a fork of that, and check the
+   * rendering of each, and that the minefields forked from are unaffected
+   */
+  @Test
+  public void testForked()
+  {
+    try
+    {
+      Minefield minefield = createMinefield();
+
+      checkRendering("b../.c./..d", minefield);
+
+      Minefield fork = minefield.fork();
+
+      fork.clearRegion(new Cuboid(new Point(1, 1, 3), new Point(1, 1, 3)));
+      checkRendering("b../.e./..d", fork);
+      checkRendering("b../.c./..d", minefield);
+
+      //  Once a column is emptied in a fork, its mines in the base must no longer show
+      fork.clearColumns(Collections.singletonList(new Point(1, 1, 0)));
+      checkRendering("b../.../..d", fork);
+      checkRendering("b../.c./..d", minefield);
+
+      Minefield secondFork = fork.fork();
+
+      checkRendering("b../.../..d", secondFork);
+      secondFork.addMine(1, 1, 8);
+      secondFork.clearRegion(new Cuboid(new Point(2, 2, 0), new Point(2, 2, 10)));
+      checkRendering("b../.h./...", secondFork);
+      checkRendering("b../.../..d", fork);
+      checkRendering("b../.c./..d", minefield);
+    }
+    catch (InstantiationException | IllegalAccessException | ModelException e)
+    {
+      e.printStackTrace();
+      fail("Unexpected exception");
+    }
+  }
+
+  //  Minefield with three mines stacked in the middle column, between two others
+  private Minefield createMinefield() throws InstantiationException, IllegalAccessException
+  {
+    Minefield result = mImplementation.newInstance();
+
+    result.addMine(0, 0, 2);
+    result.addMine(1, 1, 9);
+    result.addMine(1, 1, 3);
+    result.addMine(1, 1, 5);
+    result.addMine(2, 2, 4);
+
+    return result;
+  }
+
+  //  Check the rendering of a minefield, given as its lines separated by /
+  private static void checkRendering(String expected, Minefield minefield) throws ModelException
+  {
+    assertEquals(Arrays.asList(expected.split("/")), minefield.toOutputFormat(SHIP));
+  }
+}
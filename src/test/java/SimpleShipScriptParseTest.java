@@ -41,6 +41,59 @@ public class SimpleShipScriptParseTest extends Assert
 
        3, false
     });
+    lTests.add(new Object[]
+    {
+       "Mixed whitespace between and after actions",
+
+       "gamma \t east" + "\n" +
+       "west  " + "\n" +
+       "\n" +
+       "\n" +
+       "delta",
+
+       5, false
+    });
+    lTests.add(new Object[]
+    {
+       "Leading whitespace",
+
+       "north" + "\n" +
+       " alpha",
+
+       2, true
+    });
+    lTests.add(new Object[]
+    {
+       "Unknown action",
+
+       "north alphas",
+
+       1, true
+    });
+    lTests.add(new Object[]
+    {
+       "Two movements",
+
+       "north south",
+
+       1, true
+    });
+    lTests.add(new Object[]
+    {
+       "Two volleys",
+
+       "beta gamma",
+
+       1, true
+    });
+    lTests.add(new Object[]
+    {
+       "Three actions",
+
+       "beta north east",
+
+       1, true
+    });
 
     return lTests;
   }
@@ -72,6 +125,8 @@ public class SimpleShipScriptParseTest extends Assert
     {
       ShipOrders orders = ScriptFileParser.parseString(mScript);
 
+      assertFalse("Expected exception", mShouldExcept);
+
       assertEquals(mNumTurns, orders.getNumTurnsCovered());
 
       //  Check the actions for each turn are as expected
@@ -0,0 +1,172 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedList;
+
+import minemarker.Minefield;
+import minemarker.MinefieldEngine;
+import minemarker.MinefieldFileParseException;
+import minemarker.MinefieldFileParser;
+import minemarker.ScriptException;
+import minemarker.ScriptFileParser;
+import minemarker.ShipOrders;
+import minemarker.WorkloadGenerator;
+import minemarker.WorkloadGenerator.DepthDistribution;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Tests for the synthetic workload generator, which check that what it generates parses
+ * as specified, and that the same seed always generates the same files
+ * @author steve
+ *
+ */
+@RunWith(Parameterized.class)
+public class WorkloadGeneratorTest extends Assert
+{
+  /**
+   * @return Iterable set of test cases
+   */
+  @Parameters(name="{0}")
+  public static Iterable<? extends Object> data()
+  {
+    LinkedList<Object[]> lTests = new LinkedList<>();
+
+    lTests.add(new Object[] { "Single cell", 1, 1, 0.0, 1, DepthDistribution.uniform, 1 });
+    lTests.add(new Object[] { "Sparse", 300, 200, 0.001, 52, DepthDistribution.uniform, 0 });
+    lTests.add(new Object[] { "Empty", 50, 50, 0.0, 52, DepthDistribution.uniform, 10 });
+    lTests.add(new Object[] { "Full", 40, 30, 1.0, 10, DepthDistribution.deep, 52 });
+    lTests.add(new Object[] { "Shallow", 101, 101, 0.2, 30, DepthDistribution.shallow, 1000 });
+    lTests.add(new Object[] { "Wide", 5000, 3, 0.5, 52, DepthDistribution.uniform, 100000 });
+
+    return lTests;
+  }
+
+  /**
+   * Name for the test case
+   */
+  @Parameter(value = 0) public String            mTestName;
+  /**
+   * Width of the minefield
+   */
+  @Parameter(value = 1) public int               mWidth;
+  /**
+   * Height of the minefield
+   */
+  @Parameter(value = 2) public int               mHeight;
+  /**
+   * Probability of each cell holding a mine
+   */
+  @Parameter(value = 3) public double            mDensity;
+  /**
+   * Greatest depth of any mine
+   */
+  @Parameter(value = 4) public int               mMaxDepth;
+  /**
+   * Distribution of the depths of the mines
+   */
+  @Parameter(value = 5) public DepthDistribution mDepths;
+  /**
+   * Number of turns of the script
+   */
+  @Parameter(value = 6) public int               mNumTurns;
+
+  /**
+   * Generate a minefield, and check it parses with the specified dimensions and number of
+   * mines, and that generating it again gives the same file (and with another seed not)
+   */
+  @Test
+  public void testMinefield()
+  {
+    try
+    {
+      byte[] content = generateMinefield(1);
+      long numMines = new WorkloadGenerator(1).writeMinefield(new ByteArrayOutputStream(), mWidth, mHeight, mDensity, mMaxDepth, mDepths);
+      Minefield minefield = MinefieldFileParser.parseBytes(content, MinefieldEngine.auto);
+
+      assertEquals((long)mHeight*(mWidth + 1), content.length);
+      assertEquals(numMines, minefield.getNumMines());
+      assertTrue(minefield.getShallowestZ() >= 1);
+      assertTrue(minefield.getDeepestZ() <= mMaxDepth);
+
+      if ( mDensity == 0 )
+      {
+        assertEquals(1, numMines);
+      }
+      else if ( mDensity == 1 )
+      {
+        assertEquals((long)mWidth*mHeight, numMines);
+      }
+      else
+      {
+        //  Well within the range of the binomial distribution for these sizes
+        double expected = mDensity*mWidth*mHeight;
+        assertEquals(expected, numMines, 5*Math.sqrt(expected) + 1);
+      }
+
+      assertArrayEquals(content, generateMinefield(1));
+      if ( mWidth*mHeight > 1 && mDensity > 0 && mDensity < 1 )
+      {
+        assertFalse(Arrays.equals(content, generateMinefield(2)));
+      }
+    }
+    catch (IOException | MinefieldFileParseException e)
+    {
+      e.printStackTrace();
+      fail("Unexpected exception");
+    }
+  }
+
+  /**
+   * Generate a script, and check it parses with the specified number of turns, and that
+   * generating it again gives the same file
+   */
+  @Test
+  public void testScript()
+  {
+    try
+    {
+      byte[] content = generateScript(1);
+      ShipOrders orders = ScriptFileParser.parse(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.US_ASCII));
+
+      assertEquals(mNumTurns, orders.getNumTurnsCovered());
+      assertArrayEquals(content, generateScript(1));
+      if ( mNumTurns > 10 )
+      {
+        assertFalse(Arrays.equals(content, generateScript(2)));
+      }
+    }
+    catch (IOException | ScriptException e)
+    {
+      e.printStackTrace();
+      fail("Unexpected exception");
+    }
+  }
+
+  private byte[] generateMinefield(long seed) throws IOException
+  {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    new WorkloadGenerator(seed).writeMinefield(output, mWidth, mHeight, mDensity, mMaxDepth, mDepths);
+
+    return output.toByteArray();
+  }
+
+  private byte[] generateScript(long seed) throws IOException
+  {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    new WorkloadGenerator(seed).writeScript(output, mNumTurns, WorkloadGenerator.DEFAULT_VOLLEY_PROBABILITY, WorkloadGenerator.DEFAULT_MOVE_PROBABILITY);
+
+    return output.toByteArray();
+  }
+}
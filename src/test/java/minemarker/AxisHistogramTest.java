@@ -0,0 +1,229 @@
+package minemarker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Tests that an axis histogram, and an overlay of one, track the extent of the values
+ * occupied exactly as a brute-force multiset of the same values does, through a sequence
+ * of additions and removals.  Each sequence is applied to a plain histogram, and split at
+ * every point between a base and an overlay of it.  Values beyond the range a histogram
+ * covers must be rejected
+ * @author steve
+ *
+ */
+@RunWith(Parameterized.class)
+public class AxisHistogramTest extends Assert
+{
+  //  Bound on the range of values covered by the histograms under test
+  private static final int MAX_RANGE = 1 << 20;
+
+  /**
+   * @return Iterable set of test cases
+   */
+  @Parameters(name="{0}")
+  public static Iterable<? extends Object> data()
+  {
+    LinkedList<Object[]> lTests = new LinkedList<>();
+
+    //  Each operation is + to add or - to remove, followed by the value, or ! followed by a
+    //  value that cannot be added because it is beyond the range covered
+    lTests.add(new Object[] { "Remove min", "+1 +5 +9 -1" });
+    lTests.add(new Object[] { "Remove max", "+1 +5 +9 -9" });
+    lTests.add(new Object[] { "Remove only", "+7 -7" });
+    lTests.add(new Object[] { "Remove duplicate", "+4 +4 +7 -4 -4 +2 +2 -7 -2" });
+    lTests.add(new Object[] { "Empty and refill", "+2 +3 -2 -3 +10 +8 -10 +12 -8 -12 +3" });
+    lTests.add(new Object[] { "Negative values", "+-5 +0 +5 --5 +-7 -5 -0 --7" });
+    lTests.add(new Object[] { "Limits of the range", "+-524288 +524287 +0 --524288 -524287 +524287" });
+    lTests.add(new Object[] { "Beyond the range", "+0 +1048575 !-1 !1048576 -1048575 !-2147483648 +5 -0" });
+    lTests.add(new Object[] { "Extreme values", "+2147483647 +2147483646 !-2147483648 -2147483647 -2147483646 +2147483647" });
+    lTests.add(new Object[] { "Interior removals", "+1 +2 +3 +4 +5 -3 -2 -4 -1 -5 +3" });
+
+    Random lRandom = new Random(2002);
+    for(int lCase = 1; lCase <= 20; lCase++)
+    {
+      lTests.add(new Object[] { "Random " + lCase, randomOperations(lRandom) });
+    }
+
+    return lTests;
+  }
+
+  /**
+   * Name for the test case
+   */
+  @Parameter(value = 0) public String mTestName;
+  /**
+   * Operations to apply, in order, separated by spaces
+   */
+  @Parameter(value = 1) public String mOperations;
+
+  /**
+   * Apply the operations to a histogram, checking it against the multiset after each
+   */
+  @Test
+  public void testHistogram()
+  {
+    AxisHistogram histogram = new AxisHistogram("x", MAX_RANGE);
+    TreeMap<Integer,Integer> expected = new TreeMap<>();
+
+    for(String operation : mOperations.split(" "))
+    {
+      apply(histogram, expected, operation);
+    }
+  }
+
+  /**
+   * Apply the operations up to each point to a base histogram and the rest to an overlay of
+   * it, checking the overlay against the multiset after each, and that the base is unchanged.
+   * Then empty and refill an overlay of that overlay, checking the first is unchanged
+   */
+  @Test
+  public void testOverlay()
+  {
+    String[] operations = mOperations.split(" ");
+
+    //  The range is bounded separately for each histogram's own counts (an overlay only
+    //  holding counts for the values it has changed), so is only checked for plain ones
+    if ( mOperations.contains("!") )
+    {
+      return;
+    }
+
+    for(int split = 0; split <= operations.length; split++)
+    {
+      AxisHistogram base = new AxisHistogram("x", MAX_RANGE);
+      TreeMap<Integer,Integer> expected = new TreeMap<>();
+
+      for(String operation : Arrays.copyOfRange(operations, 0, split))
+      {
+        apply(base, expected, operation);
+      }
+
+      TreeMap<Integer,Integer> expectedBase = new TreeMap<>(expected);
+      AxisHistogram overlay = new AxisHistogram(base);
+
+      checkExtent(overlay, expected);
+      for(String operation : Arrays.copyOfRange(operations, split, operations.length))
+      {
+        apply(overlay, expected, operation);
+      }
+      checkExtent(base, expectedBase);
+
+      AxisHistogram secondOverlay = new AxisHistogram(overlay);
+      TreeMap<Integer,Integer> expectedSecond = new TreeMap<>(expected);
+
+      for(Map.Entry<Integer,Integer> entry : expected.entrySet())
+      {
+        for(int count = 0; count < entry.getValue(); count++)
+        {
+          apply(secondOverlay, expectedSecond, "-" + entry.getKey());
+        }
+      }
+      for(String operation : operations)
+      {
+        if ( operation.startsWith("+") )
+        {
+          apply(secondOverlay, expectedSecond, operation);
+        }
+      }
+      checkExtent(overlay, expected);
+    }
+  }
+
+  //  Apply an operation to both the histogram and the multiset, checking they then agree
+  private static void apply(AxisHistogram histogram, TreeMap<Integer,Integer> expected, String operation)
+  {
+    int value = Integer.parseInt(operation.substring(1));
+    Integer count = expected.get(value);
+
+    if ( operation.startsWith("!") )
+    {
+      try
+      {
+        histogram.add(value);
+        fail("Value beyond the range added");
+      }
+      catch (IllegalArgumentException e)
+      {
+        //  Expected
+      }
+    }
+    else if ( operation.startsWith("+") )
+    {
+      assertEquals(count == null, histogram.add(value));
+      expected.put(value, (count == null ? 1 : count + 1));
+    }
+    else
+    {
+      assertEquals(count == 1, histogram.remove(value));
+      if ( count == 1 )
+      {
+        expected.remove(value);
+      }
+      else
+      {
+        expected.put(value, count - 1);
+      }
+    }
+
+    checkExtent(histogram, expected);
+  }
+
+  private static void checkExtent(AxisHistogram histogram, TreeMap<Integer,Integer> expected)
+  {
+    assertEquals(expected.isEmpty(), histogram.isEmpty());
+    if ( !expected.isEmpty() )
+    {
+      assertEquals((int)expected.firstKey(), histogram.getMin());
+      assertEquals((int)expected.lastKey(), histogram.getMax());
+    }
+    else
+    {
+      assertEquals(Integer.MAX_VALUE, histogram.getMin());
+      assertEquals(Integer.MIN_VALUE, histogram.getMax());
+    }
+  }
+
+  //  Random additions and removals over a small range of values, so that values recur
+  private static String randomOperations(Random random)
+  {
+    List<Integer> present = new ArrayList<>();
+    int numOperations = 1 + random.nextInt(60);
+    StringBuilder result = new StringBuilder();
+
+    for(int index = 0; index < numOperations; index++)
+    {
+      if ( index > 0 )
+      {
+        result.append(' ');
+      }
+
+      if ( !present.isEmpty() && random.nextInt(5) < 2 )
+      {
+        result.append('-').append(present.remove(random.nextInt(present.size())));
+      }
+      else
+      {
+        int value = random.nextInt(10) - 3;
+
+        present.add(value);
+        result.append('+').append(value);
+      }
+    }
+
+    return result.toString();
+  }
+}
@@ -0,0 +1,195 @@
+package minemarker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Tests that a bounding cuboid tracker, and an overlay of one, report the same bounds
+ * and shallowest and deepest depths as a brute-force scan of the mines added and not
+ * removed, through a sequence of additions and removals.  Each sequence is applied to a
+ * plain tracker, and split at every point between a base and an overlay of it
+ * @author steve
+ *
+ */
+@RunWith(Parameterized.class)
+public class BoundingCuboidTrackerTest extends Assert
+{
+  /**
+   * @return Iterable set of test cases
+   */
+  @Parameters(name="{0}")
+  public static Iterable<? extends Object> data()
+  {
+    LinkedList<Object[]> lTests = new LinkedList<>();
+
+    //  Each operation is + to add or - to remove, followed by the mine's coordinates
+    lTests.add(new Object[] { "Remove extremes", "+0,0,1 +5,5,5 +2,3,4 -0,0,1 -5,5,5" });
+    lTests.add(new Object[] { "Remove one of duplicates", "+1,1,1 +1,1,1 +3,3,3 -1,1,1 -3,3,3 -1,1,1" });
+    lTests.add(new Object[] { "Shared coordinates", "+0,4,2 +4,0,2 +4,4,9 -4,4,9 -0,4,2" });
+    lTests.add(new Object[] { "Empty and refill", "+1,2,3 +4,5,6 -1,2,3 -4,5,6 +7,8,9 +-1,-2,-3 -7,8,9" });
+    lTests.add(new Object[] { "Negative coordinates", "+-3,-4,-5 +3,4,5 +0,0,0 --3,-4,-5 -3,4,5" });
+    lTests.add(new Object[] { "Single mine", "+2,2,2 -2,2,2 +2,2,2" });
+
+    Random lRandom = new Random(2020);
+    for(int lCase = 1; lCase <= 20; lCase++)
+    {
+      lTests.add(new Object[] { "Random " + lCase, randomOperations(lRandom) });
+    }
+
+    return lTests;
+  }
+
+  /**
+   * Name for the test case
+   */
+  @Parameter(value = 0) public String mTestName;
+  /**
+   * Operations to apply, in order, separated by spaces
+   */
+  @Parameter(value = 1) public String mOperations;
+
+  /**
+   * Apply the operations to a tracker, checking it against the mines after each
+   */
+  @Test
+  public void testTracker()
+  {
+    BoundingCuboidTracker tracker = new BoundingCuboidTracker();
+    List<Point> mines = new ArrayList<>();
+
+    checkBounds(tracker, mines);
+    for(String operation : mOperations.split(" "))
+    {
+      apply(tracker, mines, operation);
+    }
+  }
+
+  /**
+   * Apply the operations up to each point to a base tracker and the rest to an overlay of
+   * it, checking the overlay against the mines after each, and that the base is unchanged
+   */
+  @Test
+  public void testOverlay()
+  {
+    String[] operations = mOperations.split(" ");
+
+    for(int split = 0; split <= operations.length; split++)
+    {
+      BoundingCuboidTracker base = new BoundingCuboidTracker();
+      List<Point> mines = new ArrayList<>();
+
+      for(String operation : Arrays.copyOfRange(operations, 0, split))
+      {
+        apply(base, mines, operation);
+      }
+
+      List<Point> baseMines = new ArrayList<>(mines);
+      BoundingCuboidTracker overlay = new BoundingCuboidTracker(base);
+
+      checkBounds(overlay, mines);
+      for(String operation : Arrays.copyOfRange(operations, split, operations.length))
+      {
+        apply(overlay, mines, operation);
+      }
+      checkBounds(base, baseMines);
+    }
+  }
+
+  //  Apply an operation to both the tracker and the list of mines, checking they then agree
+  private static void apply(BoundingCuboidTracker tracker, List<Point> mines, String operation)
+  {
+    String[] coordinates = operation.substring(1).split(",");
+    Point mine = new Point(Integer.parseInt(coordinates[0]), Integer.parseInt(coordinates[1]), Integer.parseInt(coordinates[2]));
+
+    if ( operation.startsWith("+") )
+    {
+      tracker.add(mine.getX(), mine.getY(), mine.getZ());
+      mines.add(mine);
+    }
+    else
+    {
+      assertTrue(mines.remove(mine));
+      tracker.remove(mine.getX(), mine.getY(), mine.getZ());
+    }
+
+    checkBounds(tracker, mines);
+  }
+
+  //  Check the tracker against the extent of the mines, found by scanning them all
+  private static void checkBounds(BoundingCuboidTracker tracker, List<Point> mines)
+  {
+    if ( mines.isEmpty() )
+    {
+      assertNull(tracker.getBoundingCuboid());
+      assertEquals(Integer.MAX_VALUE, tracker.getShallowestZ());
+      assertEquals(Integer.MIN_VALUE, tracker.getDeepestZ());
+      return;
+    }
+
+    int minX = Integer.MAX_VALUE;
+    int minY = Integer.MAX_VALUE;
+    int minZ = Integer.MAX_VALUE;
+    int maxX = Integer.MIN_VALUE;
+    int maxY = Integer.MIN_VALUE;
+    int maxZ = Integer.MIN_VALUE;
+
+    for(Point mine : mines)
+    {
+      minX = Math.min(minX, mine.getX());
+      minY = Math.min(minY, mine.getY());
+      minZ = Math.min(minZ, mine.getZ());
+      maxX = Math.max(maxX, mine.getX());
+      maxY = Math.max(maxY, mine.getY());
+      maxZ = Math.max(maxZ, mine.getZ());
+    }
+
+    Cuboid bounds = tracker.getBoundingCuboid();
+
+    assertNotNull(bounds);
+    assertEquals(new Point(minX, minY, minZ), bounds.getNorthWestTop());
+    assertEquals(new Point(maxX, maxY, maxZ), bounds.getSouthEastBottom());
+    assertEquals(minZ, tracker.getShallowestZ());
+    assertEquals(maxZ, tracker.getDeepestZ());
+  }
+
+  //  Random additions and removals over a small range, so that coordinates recur
+  private static String randomOperations(Random random)
+  {
+    List<String> present = new ArrayList<>();
+    int numOperations = 1 + random.nextInt(60);
+    StringBuilder result = new StringBuilder();
+
+    for(int index = 0; index < numOperations; index++)
+    {
+      if ( index > 0 )
+      {
+        result.append(' ');
+      }
+
+      if ( !present.isEmpty() && random.nextInt(5) < 2 )
+      {
+        result.append('-').append(present.remove(random.nextInt(present.size())));
+      }
+      else
+      {
+        String mine = (random.nextInt(8) - 2) + "," + (random.nextInt(8) - 2) + "," + (1 + random.nextInt(10));
+
+        present.add(mine);
+        result.append('+').append(mine);
+      }
+    }
+
+    return result.toString();
+  }
+}
@@ -0,0 +1,105 @@
+package minemarker;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Tests that a height map returns exactly the values set for each column, and EMPTY for
+ * every other, as values are set either side of tile boundaries, at negative coordinates,
+ * far enough apart to grow the tile directory in each direction, and including the extreme
+ * values AbstractMinefield uses as markers (STALE and CLEARED)
+ * @author steve
+ *
+ */
+@RunWith(Parameterized.class)
+public class HeightMapTest extends Assert
+{
+  /**
+   * @return Iterable set of test cases
+   */
+  @Parameters(name="{0}")
+  public static Iterable<? extends Object> data()
+  {
+    LinkedList<Object[]> lTests = new LinkedList<>();
+
+    //  Each column is x,y=value (tiles are 64 columns square)
+    lTests.add(new Object[] { "Tile boundaries", "63,0=1 64,0=2 0,63=3 0,64=4 63,63=5 64,64=6 127,127=7 128,128=8" });
+    lTests.add(new Object[] { "Negative coordinates", "-1,-1=1 0,0=2 -64,-64=3 -65,-65=4 -1,0=5 0,-1=6 -64,63=7" });
+    lTests.add(new Object[] { "Grow left and up", "500,500=1 0,0=2 -500,-500=3 499,-500=4" });
+    lTests.add(new Object[] { "Grow right and down", "-500,-500=1 0,0=2 500,500=3 -499,500=4" });
+    lTests.add(new Object[] { "Marker values", "0,0=-2147483648 1,0=-2147483647 2,0=0 3,0=2147483646 0,0=5 1,0=-2147483648" });
+    lTests.add(new Object[] { "Overwrite and unset", "5,5=1 5,5=2 5,5=2147483647 70,70=3 70,70=2147483647 5,5=4" });
+    lTests.add(new Object[] { "Unset outside the map", "10,10=2147483647 -1000,1000=2147483647 10,10=1 -1000,1000=2147483647" });
+
+    Random lRandom = new Random(4004);
+    for(int lCase = 1; lCase <= 10; lCase++)
+    {
+      StringBuilder lColumns = new StringBuilder();
+      int lRange = (lCase <= 5 ? 100 : 10000);
+
+      for(int lColumn = 0; lColumn < 200; lColumn++)
+      {
+        lColumns.append(lColumn == 0 ? "" : " ")
+                .append(lRandom.nextInt(2*lRange) - lRange).append(',').append(lRandom.nextInt(2*lRange) - lRange)
+                .append('=').append(lRandom.nextInt(4) == 0 ? HeightMap.EMPTY : lRandom.nextInt(60));
+      }
+      lTests.add(new Object[] { "Random " + lCase, lColumns.toString() });
+    }
+
+    return lTests;
+  }
+
+  /**
+   * Name for the test case
+   */
+  @Parameter(value = 0) public String mTestName;
+  /**
+   * Values to set, in order, separated by spaces
+   */
+  @Parameter(value = 1) public String mColumns;
+
+  /**
+   * Set each value in turn, checking every column set so far (and its neighbours) after each
+   */
+  @Test
+  public void test()
+  {
+    HeightMap heightMap = new HeightMap();
+    Map<Point, Integer> expected = new HashMap<>();
+
+    assertEquals(HeightMap.EMPTY, heightMap.get(0, 0));
+
+    for(String column : mColumns.split(" "))
+    {
+      String[] coordinates = column.substring(0, column.indexOf('=')).split(",");
+      Point point = new Point(Integer.parseInt(coordinates[0]), Integer.parseInt(coordinates[1]), 0);
+      int value = Integer.parseInt(column.substring(column.indexOf('=') + 1));
+
+      heightMap.set(point.getX(), point.getY(), value);
+      expected.put(point, value);
+
+      for(Point set : expected.keySet())
+      {
+        for(int dy = -1; dy <= 1; dy++)
+        {
+          for(int dx = -1; dx <= 1; dx++)
+          {
+            Integer expectedValue = expected.get(new Point(set.getX() + dx, set.getY() + dy, 0));
+
+            assertEquals((expectedValue == null ? HeightMap.EMPTY : (int)expectedValue), heightMap.get(set.getX() + dx, set.getY() + dy));
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,272 @@
+package minemarker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Tests that a LongHashMap behaves exactly as a HashMap of the same keys, for pools of
+ * keys including zero (the value that marks free slots), negative and extreme values and
+ * column keys as ColumnIndexedMinefield builds them, through random puts and removals,
+ * resizing, and removals from probe runs that wrap around the end of the table
+ * @author steve
+ *
+ */
+@RunWith(Parameterized.class)
+public class LongHashMapTest extends Assert
+{
+  private static final int POOL_SIZE = 3000;
+
+  /**
+   * @return Iterable set of test cases
+   */
+  @Parameters(name="{0}")
+  public static Iterable<? extends Object> data()
+  {
+    LinkedList<Object[]> lTests = new LinkedList<>();
+    long[] lSmall = new long[POOL_SIZE];
+    long[] lNegative = new long[POOL_SIZE];
+    long[] lExtreme = new long[POOL_SIZE];
+    List<Long> lColumns = new ArrayList<>();
+
+    for(int lIndex = 0; lIndex < POOL_SIZE; lIndex++)
+    {
+      lSmall[lIndex] = lIndex;
+      lNegative[lIndex] = -lIndex;
+    }
+
+    //  The extremes of the range, keys either side of zero, and keys differing only in
+    //  their high bits
+    for(int lIndex = 0; lIndex < POOL_SIZE/4; lIndex++)
+    {
+      lExtreme[4*lIndex] = Long.MIN_VALUE + lIndex;
+      lExtreme[4*lIndex + 1] = Long.MAX_VALUE - lIndex;
+      lExtreme[4*lIndex + 2] = lIndex - POOL_SIZE/8;
+      lExtreme[4*lIndex + 3] = ((long)(lIndex + 1) << 40);
+    }
+
+    for(int lX = -25; lX <= 25; lX++)
+    {
+      for(int lY = -25; lY <= 25; lY++)
+      {
+        lColumns.add(((long)lX << 32) | (lY & 0xFFFFFFFFL));
+      }
+    }
+
+    lTests.add(new Object[] { "Small keys", lSmall });
+    lTests.add(new Object[] { "Negative keys", lNegative });
+    lTests.add(new Object[] { "Extreme keys", lExtreme });
+    lTests.add(new Object[] { "Column keys", toArray(lColumns) });
+
+    return lTests;
+  }
+
+  /**
+   * Name for the test case
+   */
+  @Parameter(value = 0) public String mTestName;
+  /**
+   * Distinct keys to draw from
+   */
+  @Parameter(value = 1) public long[] mKeys;
+
+  /**
+   * Apply random puts and removals of a few keys of the pool (always including zero),
+   * checking the map against a HashMap as they are applied
+   */
+  @Test
+  public void testRandom()
+  {
+    Random random = new Random(7007);
+
+    for(int trial = 0; trial < 50; trial++)
+    {
+      LongHashMap<String> map = new LongHashMap<>();
+      Map<Long, String> expected = new HashMap<>();
+      //  Few enough keys that they collide, and that the map both grows and empties
+      int numKeys = 1 + random.nextInt(trial < 25 ? 12 : 200);
+      long[] keys = new long[numKeys];
+
+      for(int index = 0; index < numKeys; index++)
+      {
+        keys[index] = mKeys[random.nextInt(mKeys.length)];
+      }
+      //  Zero (which marks free slots) is in every pool, so is always among the keys
+      keys[0] = 0;
+
+      for(int operation = 0; operation < 20*numKeys; operation++)
+      {
+        long key = keys[random.nextInt(numKeys)];
+
+        if ( random.nextBoolean() )
+        {
+          String value = "value " + operation;
+
+          assertEquals(expected.put(key, value), map.put(key, value));
+        }
+        else
+        {
+          assertEquals(expected.remove(key), map.remove(key));
+        }
+
+        assertEquals(expected.get(key), map.get(key));
+        if ( operation % 16 == 0 )
+        {
+          checkContents(map, expected, keys);
+        }
+      }
+      checkContents(map, expected, keys);
+    }
+  }
+
+  /**
+   * Put every key of the pool, growing the table from its minimum size, then remove them
+   * all, checking the map against a HashMap along the way
+   */
+  @Test
+  public void testResize()
+  {
+    LongHashMap<String> map = new LongHashMap<>();
+    Map<Long, String> expected = new HashMap<>();
+    int initialCapacity = map.capacity();
+
+    for(int index = 0; index < mKeys.length; index++)
+    {
+      assertNull(map.put(mKeys[index], "first " + index));
+      assertEquals("first " + index, map.put(mKeys[index], "second " + index));
+      expected.put(mKeys[index], "second " + index);
+      assertEquals(expected.size(), map.size());
+      assertTrue(2*map.size() <= map.capacity());
+    }
+
+    assertTrue(map.capacity() > initialCapacity);
+    checkContents(map, expected, mKeys);
+
+    for(int index = mKeys.length - 1; index >= 0; index -= 2)
+    {
+      assertEquals("second " + index, map.remove(mKeys[index]));
+      assertNull(map.remove(mKeys[index]));
+      expected.remove(mKeys[index]);
+    }
+    checkContents(map, expected, mKeys);
+
+    for(int index = mKeys.length - 2; index >= 0; index -= 2)
+    {
+      assertEquals("second " + index, map.remove(mKeys[index]));
+      expected.remove(mKeys[index]);
+    }
+    checkContents(map, expected, mKeys);
+    assertEquals(0, map.size());
+  }
+
+  /**
+   * Build a probe run that wraps from the last slot of the table to the first, from keys
+   * of the pool whose home slots are the last and the first, then remove each key of it in
+   * turn, checking the rest keep their values
+   */
+  @Test
+  public void testWrappedRun()
+  {
+    LongHashMap<String> probe = new LongHashMap<>();
+    int lastSlot = probe.capacity() - 1;
+    List<Long> homedLast = new ArrayList<>();
+    List<Long> homedFirst = new ArrayList<>();
+
+    for(long key : mKeys)
+    {
+      if ( key != 0 )
+      {
+        if ( probe.slotFor(key) == lastSlot && homedLast.size() < 3 )
+        {
+          homedLast.add(key);
+        }
+        else if ( probe.slotFor(key) == 0 && homedFirst.size() < 2 )
+        {
+          homedFirst.add(key);
+        }
+      }
+    }
+
+    assertEquals(3, homedLast.size());
+    assertEquals(2, homedFirst.size());
+
+    //  Three keys homed on the last slot fill it and then the first two, pushing those
+    //  homed on the first slot to the third and fourth
+    long[] run = { homedLast.get(0), homedLast.get(1), homedLast.get(2), homedFirst.get(0), homedFirst.get(1) };
+
+    for(int removed = 0; removed < run.length; removed++)
+    {
+      LongHashMap<String> map = new LongHashMap<>();
+      Map<Long, String> expected = new HashMap<>();
+
+      for(long key : run)
+      {
+        map.put(key, "value " + key);
+        expected.put(key, "value " + key);
+      }
+      assertEquals(probe.capacity(), map.capacity());
+
+      assertEquals("value " + run[removed], map.remove(run[removed]));
+      expected.remove(run[removed]);
+      checkContents(map, expected, run);
+
+      //  And the rest removed in turn from there, wrapping around
+      for(int index = 1; index < run.length; index++)
+      {
+        long key = run[(removed + index) % run.length];
+
+        assertEquals("value " + key, map.remove(key));
+        expected.remove(key);
+        checkContents(map, expected, run);
+      }
+    }
+  }
+
+  //  Check the map holds exactly the expected entries, looking up each of the candidates
+  private static void checkContents(LongHashMap<String> map, Map<Long, String> expected, long[] candidates)
+  {
+    assertEquals(expected.size(), map.size());
+
+    for(long key : candidates)
+    {
+      assertEquals(expected.get(key), map.get(key));
+    }
+
+    long[] keys = map.keys();
+    long[] expectedKeys = toArray(expected.keySet());
+
+    Arrays.sort(keys);
+    Arrays.sort(expectedKeys);
+    assertArrayEquals(expectedKeys, keys);
+  }
+
+  private static long[] toArray(Iterable<Long> keys)
+  {
+    List<Long> list = new ArrayList<>();
+
+    for(Long key : keys)
+    {
+      list.add(key);
+    }
+
+    long[] result = new long[list.size()];
+    for(int index = 0; index < result.length; index++)
+    {
+      result[index] = list.get(index);
+    }
+
+    return result;
+  }
+}
@@ -0,0 +1,295 @@
+package minemarker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Tests that a LongHashSet behaves exactly as a HashSet of the same keys, for pools of
+ * keys including zero (the value that marks free slots), negative and extreme values and
+ * packed coordinates, through random additions and removals, resizing, and removals from
+ * probe runs that wrap around the end of the table, and that it cannot be sized for more
+ * keys than it can hold
+ * @author steve
+ *
+ */
+@RunWith(Parameterized.class)
+public class LongHashSetTest extends Assert
+{
+  private static final int POOL_SIZE = 3000;
+
+  /**
+   * @return Iterable set of test cases
+   */
+  @Parameters(name="{0}")
+  public static Iterable<? extends Object> data()
+  {
+    LinkedList<Object[]> lTests = new LinkedList<>();
+    long[] lSmall = new long[POOL_SIZE];
+    long[] lNegative = new long[POOL_SIZE];
+    long[] lExtreme = new long[POOL_SIZE];
+    List<Long> lPacked = new ArrayList<>();
+
+    for(int lIndex = 0; lIndex < POOL_SIZE; lIndex++)
+    {
+      lSmall[lIndex] = lIndex;
+      lNegative[lIndex] = -lIndex;
+    }
+
+    //  The extremes of the range, keys either side of zero, and keys differing only in
+    //  their high bits
+    for(int lIndex = 0; lIndex < POOL_SIZE/4; lIndex++)
+    {
+      lExtreme[4*lIndex] = Long.MIN_VALUE + lIndex;
+      lExtreme[4*lIndex + 1] = Long.MAX_VALUE - lIndex;
+      lExtreme[4*lIndex + 2] = lIndex - POOL_SIZE/8;
+      lExtreme[4*lIndex + 3] = ((long)(lIndex + 1) << 40);
+    }
+
+    for(int lX = -7; lX <= 7; lX++)
+    {
+      for(int lY = -7; lY <= 7; lY++)
+      {
+        for(int lZ = -6; lZ <= 6; lZ++)
+        {
+          lPacked.add(PackedPoint.pack(lX, lY, lZ));
+        }
+      }
+    }
+
+    lTests.add(new Object[] { "Small keys", lSmall });
+    lTests.add(new Object[] { "Negative keys", lNegative });
+    lTests.add(new Object[] { "Extreme keys", lExtreme });
+    lTests.add(new Object[] { "Packed points", toArray(lPacked) });
+
+    return lTests;
+  }
+
+  /**
+   * Name for the test case
+   */
+  @Parameter(value = 0) public String mTestName;
+  /**
+   * Distinct keys to draw from
+   */
+  @Parameter(value = 1) public long[] mKeys;
+
+  /**
+   * Apply random additions and removals of a few keys of the pool (always including zero),
+   * checking the set against a HashSet as they are applied
+   */
+  @Test
+  public void testRandom()
+  {
+    Random random = new Random(3003);
+
+    for(int trial = 0; trial < 50; trial++)
+    {
+      LongHashSet set = new LongHashSet();
+      Set<Long> expected = new HashSet<>();
+      //  Few enough keys that they collide, and that the set both grows and empties
+      int numKeys = 1 + random.nextInt(trial < 25 ? 12 : 200);
+      long[] keys = new long[numKeys];
+
+      for(int index = 0; index < numKeys; index++)
+      {
+        keys[index] = mKeys[random.nextInt(mKeys.length)];
+      }
+      //  Zero (which marks free slots) is in every pool, so is always among the keys
+      keys[0] = 0;
+
+      for(int operation = 0; operation < 20*numKeys; operation++)
+      {
+        long key = keys[random.nextInt(numKeys)];
+
+        if ( random.nextBoolean() )
+        {
+          assertEquals(expected.add(key), set.add(key));
+        }
+        else
+        {
+          assertEquals(expected.remove(key), set.remove(key));
+        }
+
+        assertEquals(expected.contains(key), set.contains(key));
+        if ( operation % 16 == 0 )
+        {
+          checkContents(set, expected, keys);
+        }
+      }
+      checkContents(set, expected, keys);
+    }
+  }
+
+  /**
+   * Add every key of the pool, growing the table from its minimum size, then remove them
+   * all, checking the set against a HashSet along the way
+   */
+  @Test
+  public void testResize()
+  {
+    LongHashSet set = new LongHashSet();
+    Set<Long> expected = new HashSet<>();
+    int initialCapacity = set.capacity();
+
+    for(int index = 0; index < mKeys.length; index++)
+    {
+      assertTrue(set.add(mKeys[index]));
+      assertFalse(set.add(mKeys[index]));
+      expected.add(mKeys[index]);
+      assertEquals(expected.size(), set.size());
+      assertTrue(2*set.size() <= set.capacity());
+    }
+
+    assertTrue(set.capacity() > initialCapacity);
+    checkContents(set, expected, mKeys);
+
+    for(int index = mKeys.length - 1; index >= 0; index -= 2)
+    {
+      assertTrue(set.remove(mKeys[index]));
+      assertFalse(set.remove(mKeys[index]));
+      expected.remove(mKeys[index]);
+    }
+    checkContents(set, expected, mKeys);
+
+    for(int index = mKeys.length - 2; index >= 0; index -= 2)
+    {
+      assertTrue(set.remove(mKeys[index]));
+      expected.remove(mKeys[index]);
+    }
+    checkContents(set, expected, mKeys);
+    assertEquals(0, set.size());
+  }
+
+  /**
+   * Build a probe run that wraps from the last slot of the table to the first, from keys
+   * of the pool whose home slots are the last and the first, then remove each key of it in
+   * turn, checking the rest remain reachable
+   */
+  @Test
+  public void testWrappedRun()
+  {
+    LongHashSet probe = new LongHashSet();
+    int lastSlot = probe.capacity() - 1;
+    List<Long> homedLast = new ArrayList<>();
+    List<Long> homedFirst = new ArrayList<>();
+
+    for(long key : mKeys)
+    {
+      if ( key != 0 )
+      {
+        if ( probe.slotFor(key) == lastSlot && homedLast.size() < 3 )
+        {
+          homedLast.add(key);
+        }
+        else if ( probe.slotFor(key) == 0 && homedFirst.size() < 2 )
+        {
+          homedFirst.add(key);
+        }
+      }
+    }
+
+    assertEquals(3, homedLast.size());
+    assertEquals(2, homedFirst.size());
+
+    //  Three keys homed on the last slot fill it and then the first two, pushing those
+    //  homed on the first slot to the third and fourth
+    long[] run = { homedLast.get(0), homedLast.get(1), homedLast.get(2), homedFirst.get(0), homedFirst.get(1) };
+
+    for(int removed = 0; removed < run.length; removed++)
+    {
+      LongHashSet set = new LongHashSet();
+      Set<Long> expected = new HashSet<>();
+
+      for(long key : run)
+      {
+        set.add(key);
+        expected.add(key);
+      }
+      assertEquals(probe.capacity(), set.capacity());
+
+      assertTrue(set.remove(run[removed]));
+      expected.remove(run[removed]);
+      checkContents(set, expected, run);
+
+      //  And the rest removed in turn from there, wrapping around
+      for(int index = 1; index < run.length; index++)
+      {
+        long key = run[(removed + index) % run.length];
+
+        assertTrue(set.remove(key));
+        expected.remove(key);
+        checkContents(set, expected, run);
+      }
+    }
+  }
+
+  /**
+   * Check a set cannot be sized for more keys than a table can hold at half load (sizing
+   * for them used to overflow, and never finish)
+   */
+  @Test(timeout = 10000)
+  public void testTooLarge()
+  {
+    for(int expectedSize : new int[] { (1 << 29) + 1, Integer.MAX_VALUE })
+    {
+      try
+      {
+        new LongHashSet(expectedSize);
+        fail("Set sized for " + expectedSize + " keys");
+      }
+      catch (IllegalArgumentException e)
+      {
+        //  Expected
+      }
+    }
+  }
+
+  //  Check the set holds exactly the expected keys, testing each of the candidates
+  private static void checkContents(LongHashSet set, Set<Long> expected, long[] candidates)
+  {
+    assertEquals(expected.size(), set.size());
+
+    for(long key : candidates)
+    {
+      assertEquals(expected.contains(key), set.contains(key));
+    }
+
+    long[] contents = set.keys();
+    long[] expectedContents = toArray(expected);
+
+    Arrays.sort(contents);
+    Arrays.sort(expectedContents);
+    assertArrayEquals(expectedContents, contents);
+  }
+
+  private static long[] toArray(Iterable<Long> keys)
+  {
+    List<Long> list = new ArrayList<>();
+
+    for(Long key : keys)
+    {
+      list.add(key);
+    }
+
+    long[] result = new long[list.size()];
+    for(int index = 0; index < result.length; index++)
+    {
+      result[index] = list.get(index);
+    }
+
+    return result;
+  }
+}
@@ -0,0 +1,108 @@
+package minemarker;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedList;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Tests that populating a packed minefield allocates nothing per mine.  Its storage, the
+ * projection and the bounds all grow with the extent of the field rather than with each
+ * mine, so once a field has been populated and cleared, populating it again must not
+ * allocate at all
+ * @author steve
+ *
+ */
+@RunWith(Parameterized.class)
+public class PackedMinefieldAllocationTest extends Assert
+{
+  /**
+   * @return Iterable set of test cases
+   */
+  @Parameters(name="{0}")
+  public static Iterable<? extends Object> data()
+  {
+    LinkedList<Object[]> lTests = new LinkedList<>();
+
+    lTests.add(new Object[] { "Grid", 0, 0, 300, 300, 1 });
+    lTests.add(new Object[] { "Negative coordinates", -500, -200, 200, 200, 1 });
+    lTests.add(new Object[] { "Stacked columns", 10, 10, 50, 50, 20 });
+
+    return lTests;
+  }
+
+  /**
+   * Name for the test case
+   */
+  @Parameter(value = 0) public String mTestName;
+  /**
+   * x-coordinate of the west edge of the field
+   */
+  @Parameter(value = 1) public int    mWest;
+  /**
+   * y-coordinate of the north edge of the field
+   */
+  @Parameter(value = 2) public int    mNorth;
+  /**
+   * Width of the field
+   */
+  @Parameter(value = 3) public int    mWidth;
+  /**
+   * Height of the field
+   */
+  @Parameter(value = 4) public int    mHeight;
+  /**
+   * Number of mines in each column
+   */
+  @Parameter(value = 5) public int    mDepth;
+
+  /**
+   * Populate a field, clear it, then populate it again, checking the second population
+   * allocated nothing
+   */
+  @Test
+  public void test()
+  {
+    Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+
+    Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+    PackedMinefield minefield = new PackedMinefield(mWidth*mHeight*mDepth);
+
+    populate(minefield);
+    minefield.clearRegion(minefield.getBoundingCuboid());
+    assertEquals(0, minefield.getNumMines());
+
+    //  Measuring itself may allocate a little, but nothing in proportion to the mines
+    long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+    populate(minefield);
+    long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+    assertEquals(mWidth*mHeight*mDepth, minefield.getNumMines());
+    assertTrue("Allocated " + allocated + " bytes populating the field", allocated < 1024);
+  }
+
+  private void populate(PackedMinefield minefield)
+  {
+    for(int y = mNorth; y < mNorth + mHeight; y++)
+    {
+      for(int x = mWest; x < mWest + mWidth; x++)
+      {
+        for(int z = 1; z <= mDepth; z++)
+        {
+          minefield.addMine(x, y, z + (x & 7));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package minemarker;
+
+import java.util.LinkedList;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Tests that packing coordinates round-trips every packable point (zero, negative and at
+ * the limits of the range), that points beyond the range are reported as unpackable and
+ * truncated as documented, and that packing keeps the points of each column together
+ * @author steve
+ *
+ */
+@RunWith(Parameterized.class)
+public class PackedPointTest extends Assert
+{
+  //  The documented ranges, 26 bits for x and y and 12 for z, all signed
+  private static final int MIN_XY = -(1 << 25);
+  private static final int MAX_XY = (1 << 25) - 1;
+  private static final int MIN_Z = -(1 << 11);
+  private static final int MAX_Z = (1 << 11) - 1;
+
+  /**
+   * @return Iterable set of test cases
+   */
+  @Parameters(name="{0}")
+  public static Iterable<? extends Object> data()
+  {
+    LinkedList<Object[]> lTests = new LinkedList<>();
+
+    lTests.add(new Object[] { "Origin", 0, 0, 0, true });
+    lTests.add(new Object[] { "Typical", 50, 60, 26, true });
+    lTests.add(new Object[] { "Negative", -1, -1, -1, true });
+    lTests.add(new Object[] { "Mixed signs", -5, 7, -3, true });
+    lTests.add(new Object[] { "Negative y", 3, -1, 4, true });
+    lTests.add(new Object[] { "Minimum", MIN_XY, MIN_XY, MIN_Z, true });
+    lTests.add(new Object[] { "Maximum", MAX_XY, MAX_XY, MAX_Z, true });
+    lTests.add(new Object[] { "Minimum x, maximum y and z", MIN_XY, MAX_XY, MAX_Z, true });
+    lTests.add(new Object[] { "Maximum x, minimum y and z", MAX_XY, MIN_XY, MIN_Z, true });
+    lTests.add(new Object[] { "x too large", MAX_XY + 1, 0, 0, false });
+    lTests.add(new Object[] { "x too small", MIN_XY - 1, 0, 0, false });
+    lTests.add(new Object[] { "y too large", 0, MAX_XY + 1, 0, false });
+    lTests.add(new Object[] { "y too small", 0, MIN_XY - 1, 0, false });
+    lTests.add(new Object[] { "z too large", 0, 0, MAX_Z + 1, false });
+    lTests.add(new Object[] { "z too small", 0, 0, MIN_Z - 1, false });
+    lTests.add(new Object[] { "Far out of range", Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, false });
+
+    return lTests;
+  }
+
+  /**
+   * Name for the test case
+   */
+  @Parameter(value = 0) public String  mTestName;
+  /**
+   * x coordinate
+   */
+  @Parameter(value = 1) public int     mX;
+  /**
+   * y coordinate
+   */
+  @Parameter(value = 2) public int     mY;
+  /**
+   * z coordinate
+   */
+  @Parameter(value = 3) public int     mZ;
+  /**
+   * Whether the coordinates are within the representable range
+   */
+  @Parameter(value = 4) public boolean mPackable;
+
+  /**
+   * Check the range constants are those documented
+   */
+  @Test
+  public void testRange()
+  {
+    assertEquals(MIN_XY, PackedPoint.MIN_XY);
+    assertEquals(MAX_XY, PackedPoint.MAX_XY);
+    assertEquals(MIN_Z, PackedPoint.MIN_Z);
+    assertEquals(MAX_Z, PackedPoint.MAX_Z);
+  }
+
+  /**
+   * Pack the coordinates, and check they unpack to the same coordinates if packable, and
+   * otherwise to the coordinates truncated to the number of bits for each (sign extended)
+   */
+  @Test
+  public void testRoundTrip()
+  {
+    long packed = PackedPoint.pack(mX, mY, mZ);
+
+    assertEquals(mPackable, PackedPoint.isPackable(mX, mY, mZ));
+    assertEquals(truncate(mX, 26), PackedPoint.getX(packed));
+    assertEquals(truncate(mY, 26), PackedPoint.getY(packed));
+    assertEquals(truncate(mZ, 12), PackedPoint.getZ(packed));
+    assertEquals(new Point(truncate(mX, 26), truncate(mY, 26), truncate(mZ, 12)), PackedPoint.toPoint(packed));
+
+    if ( mPackable )
+    {
+      assertEquals(mX, PackedPoint.getX(packed));
+      assertEquals(mY, PackedPoint.getY(packed));
+      assertEquals(mZ, PackedPoint.getZ(packed));
+    }
+  }
+
+  /**
+   * Check that the packed points of a packable column are contiguous once sorted - each
+   * column occupies its own block of values starting from its depth 0 (as AnalyticalScorer
+   * relies on) - that x is the most significant coordinate, and that packing distinguishes
+   * neighbouring points
+   */
+  @Test
+  public void testOrdering()
+  {
+    if ( !mPackable )
+    {
+      return;
+    }
+
+    long columnStart = PackedPoint.pack(mX, mY, 0);
+    long packed = PackedPoint.pack(mX, mY, mZ);
+
+    assertEquals(0, columnStart & (MAX_Z - MIN_Z));
+    assertEquals(columnStart + (mZ >= 0 ? mZ : (MAX_Z - MIN_Z + 1) + mZ), packed);
+    if ( mX < MAX_XY )
+    {
+      assertTrue(packed < PackedPoint.pack(mX + 1, MIN_XY, MIN_Z));
+      assertTrue(packed < PackedPoint.pack(mX + 1, 0, 0));
+    }
+
+    for(int delta = -1; delta <= 1; delta += 2)
+    {
+      if ( PackedPoint.isPackable(mX + delta, mY, mZ) )
+      {
+        assertNotEquals(packed, PackedPoint.pack(mX + delta, mY, mZ));
+      }
+      if ( PackedPoint.isPackable(mX, mY + delta, mZ) )
+      {
+        assertNotEquals(packed, PackedPoint.pack(mX, mY + delta, mZ));
+      }
+      if ( PackedPoint.isPackable(mX, mY, mZ + delta) )
+      {
+        assertNotEquals(packed, PackedPoint.pack(mX, mY, mZ + delta));
+      }
+    }
+  }
+
+  //  Value of the low bits of a coordinate, sign extended
+  private static int truncate(int value, int bits)
+  {
+    return (value << (32 - bits)) >> (32 - bits);
+  }
+}